@@ -0,0 +1,157 @@
+package ch.epfl.javions;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * This class runs the benchmarks of the decode hot paths with the GC profiler. It prints the time and the allocations
+ * of each benchmark next to those of the stored baseline, and writes the full results of JMH in the results
+ * directory.
+ * <p>
+ * Usage: {@code BenchmarkRunner [--baseline] [regex]}, where the regex selects the benchmarks to run (all by default)
+ * and {@code --baseline} stores the results as the new baseline.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public final class BenchmarkRunner {
+    private static final Path RESULTS_DIRECTORY = Path.of("bench", "results");
+    private static final Path BASELINE_FILE = RESULTS_DIRECTORY.resolve("baseline.tsv");
+    private static final String BASELINE_OPTION = "--baseline";
+    private static final String ALLOCATION_RATE = "gc.alloc.rate";
+    private static final String NORMALIZED_ALLOCATION_RATE = "gc.alloc.rate.norm";
+    private static final String SECONDARY_PREFIX = "\u00b7";
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * This method runs the benchmarks and compares them to the baseline.
+     *
+     * @param args the options of the runner
+     * @throws RunnerException if a benchmark could not be run
+     * @throws IOException     if the results could not be written
+     */
+    public static void main(String[] args) throws RunnerException, IOException {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        boolean storeBaseline = arguments.remove(BASELINE_OPTION);
+        String include = arguments.isEmpty() ? "ch\\.epfl\\.javions\\..*Benchmark" : arguments.get(0);
+
+        Files.createDirectories(RESULTS_DIRECTORY);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULTS_DIRECTORY.resolve("results_" + timestamp + ".json").toString())
+                .build()).run();
+
+        Map<String, Double> baseline = readBaseline();
+        Map<String, Double> nanosPerOperation = new TreeMap<>();
+
+        System.out.printf("%n%-80s %14s %14s %12s %12s %10s%n",
+                "Benchmark", "ns/op", "ops/s", "B/op", "MB/s", "baseline");
+        for (RunResult result : results) {
+            String name = name(result);
+            double nanos = toNanos(result.getPrimaryResult().getScore(), result.getPrimaryResult().getScoreUnit());
+            nanosPerOperation.put(name, nanos);
+
+            Double baselineNanos = baseline.get(name);
+            System.out.printf("%-80s %14.3f %14.1f %12.1f %12.1f %10s%n",
+                    name, nanos, NANOS_PER_SECOND / nanos,
+                    secondaryScore(result, NORMALIZED_ALLOCATION_RATE),
+                    secondaryScore(result, ALLOCATION_RATE),
+                    baselineNanos == null ? "-" : "%+.1f%%".formatted(100 * (nanos / baselineNanos - 1)));
+        }
+
+        if (storeBaseline) writeBaseline(nanosPerOperation);
+    }
+
+    /**
+     * This method returns the name of the benchmark of a result, followed by its parameters.
+     *
+     * @param result the result of the benchmark
+     * @return the name of the benchmark
+     */
+    private static String name(RunResult result) {
+        StringJoiner parameters = new StringJoiner(",", "[", "]");
+        for (String key : result.getParams().getParamsKeys())
+            parameters.add(key + "=" + result.getParams().getParam(key));
+        return result.getParams().getBenchmark() + (parameters.length() > 2 ? parameters : "");
+    }
+
+    /**
+     * This method converts the score of a benchmark measuring the average time of an operation in nanoseconds.
+     *
+     * @param score the score
+     * @param unit  the unit of the score, such as ms/op
+     * @return the score in nanoseconds per operation
+     */
+    private static double toNanos(double score, String unit) {
+        return switch (unit) {
+            case "s/op" -> score * 1e9;
+            case "ms/op" -> score * 1e6;
+            case "us/op" -> score * 1e3;
+            case "ns/op" -> score;
+            default -> throw new IllegalArgumentException(unit);
+        };
+    }
+
+    /**
+     * This method returns the score of a secondary result of the GC profiler.
+     *
+     * @param result the result of the benchmark
+     * @param label  the label of the secondary result
+     * @return the score of the secondary result, or NaN if there is none
+     */
+    private static double secondaryScore(RunResult result, String label) {
+        for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+            // Older versions of JMH prefix the labels of the profilers with a middle dot
+            if (secondary.getKey().equals(label) || secondary.getKey().equals(SECONDARY_PREFIX + label))
+                return secondary.getValue().getScore();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * This method reads the stored baseline.
+     *
+     * @return the time of an operation of each benchmark of the baseline, in nanoseconds
+     * @throws IOException if the baseline could not be read
+     */
+    private static Map<String, Double> readBaseline() throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        if (!Files.exists(BASELINE_FILE)) return baseline;
+
+        for (String line : Files.readAllLines(BASELINE_FILE)) {
+            String[] fields = line.split("\t");
+            baseline.put(fields[0], Double.parseDouble(fields[1]));
+        }
+        return baseline;
+    }
+
+    /**
+     * This method stores the given results as the baseline.
+     *
+     * @param nanosPerOperation the time of an operation of each benchmark, in nanoseconds
+     * @throws IOException if the baseline could not be written
+     */
+    private static void writeBaseline(Map<String, Double> nanosPerOperation) throws IOException {
+        List<String> lines = new ArrayList<>();
+        nanosPerOperation.forEach((name, nanos) -> lines.add(name + "\t" + nanos));
+        Files.write(BASELINE_FILE, lines);
+        System.out.println("Baseline stored in " + BASELINE_FILE);
+    }
+}
@@ -0,0 +1,30 @@
+package ch.epfl.javions;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the extraction of the fields of a message from its {@link ByteString}.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteStringBenchmark {
+    private final ByteString bytes = ByteString.ofHexadecimalString("8D4D2228234994B7284820323B81");
+
+    @Benchmark
+    public long payload() {
+        return bytes.bytesInRange(4, 11);
+    }
+
+    @Benchmark
+    public long icaoAddress() {
+        return bytes.bytesInRange(1, 4);
+    }
+}
@@ -0,0 +1,51 @@
+package ch.epfl.javions;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the CRC of a message of 112 bits, given in each of the forms accepted by {@link Crc24}.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Crc24Benchmark {
+    private static final String MESSAGE = "8D4D2228234994B7284820323B81";
+
+    private final Crc24 crc24 = new Crc24(Crc24.GENERATOR);
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private long high;
+    private long low;
+
+    @Setup
+    public void setUp() {
+        bytes = HexFormat.of().parseHex(MESSAGE);
+        buffer = ByteBuffer.wrap(bytes);
+        high = buffer.getLong(0) >>> 16;
+        low = buffer.getLong(6);
+    }
+
+    @Benchmark
+    public int crcOfBytes() {
+        return crc24.crc(bytes);
+    }
+
+    @Benchmark
+    public int crcOfLongs() {
+        return crc24.crc(high, low);
+    }
+
+    @Benchmark
+    public int crcOfByteBuffer() {
+        return crc24.crc(buffer);
+    }
+}
@@ -0,0 +1,75 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.ByteString;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the decoding of the airborne velocity messages, by building the record and by giving the fields to a
+ * visitor, for the two kinds of speed and for an invalid message.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AirborneVelocityMessageBenchmark {
+    @Param({
+            // Ground speed
+            "8D485020994409940838175B284F",
+            // Air speed
+            "8DA05F219B06B6AF189400CBC33F",
+            // Unknown heading
+            "8D4077399B13FFFFF8400A50C602"})
+    public String message;
+
+    private RawMessage rawMessage;
+    private long payload;
+    private int icaoAddress;
+    private MessageParser.Visitor visitor;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        rawMessage = new RawMessage(0, ByteString.ofHexadecimalString(message));
+        payload = rawMessage.payload();
+        icaoAddress = rawMessage.icaoAddress().value();
+        visitor = new BlackholeVisitor(blackhole);
+    }
+
+    @Benchmark
+    public AirborneVelocityMessage of() {
+        return AirborneVelocityMessage.of(rawMessage);
+    }
+
+    @Benchmark
+    public boolean decode() {
+        return AirborneVelocityMessage.decode(0, icaoAddress, payload, visitor);
+    }
+
+    /**
+     * A visitor giving the velocity fields to the blackhole, so that none of them is optimized away.
+     */
+    private record BlackholeVisitor(Blackhole blackhole) implements MessageParser.Visitor {
+        @Override
+        public void identification(long timeStampNs, int icaoAddress, int category, CallSign callSign) {
+        }
+
+        @Override
+        public void position(long timeStampNs, int icaoAddress, double altitude, int parity, double x, double y) {
+        }
+
+        @Override
+        public void velocity(long timeStampNs, int icaoAddress, double speed, double trackOrHeading,
+                             double verticalRate, double gnssBaroDifference) {
+            blackhole.consume(speed);
+            blackhole.consume(trackOrHeading);
+            blackhole.consume(verticalRate);
+            blackhole.consume(gnssBaroDifference);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.aircraft.IcaoAddress;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the update of the state of an aircraft by a stream of messages of every type, the positions
+ * alternating between even and odd ones so that they are decoded.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AircraftStateAccumulatorBenchmark {
+    private static final int MESSAGE_COUNT = 1 << 10;
+    private static final long MESSAGE_INTERVAL_NS = 100_000_000L;
+
+    private final Message[] messages = new Message[MESSAGE_COUNT];
+    private AircraftStateAccumulator<BlackholeStateSetter> accumulator;
+    private int next = 0;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        IcaoAddress icaoAddress = new IcaoAddress("4B1814");
+        for (int i = 0; i < MESSAGE_COUNT; ++i) {
+            long timeStampNs = i * MESSAGE_INTERVAL_NS;
+            messages[i] = switch (i % 4) {
+                case 0 -> new AircraftIdentificationMessage(timeStampNs, icaoAddress, 0xA3, new CallSign("SWR83A"));
+                case 1 -> new AirbornePositionMessage(timeStampNs, icaoAddress, 10_000, 0,
+                        Math.scalb(111600, -17), Math.scalb(94445, -17));
+                case 2 -> new AirbornePositionMessage(timeStampNs, icaoAddress, 10_000, 1,
+                        Math.scalb(108865, -17), Math.scalb(77558, -17));
+                default -> new AirborneVelocityMessage(timeStampNs, icaoAddress, 230, 1.5);
+            };
+        }
+        accumulator = new AircraftStateAccumulator<>(new BlackholeStateSetter(blackhole));
+    }
+
+    @Benchmark
+    public void update() {
+        accumulator.update(messages[next]);
+        next = (next + 1) & (MESSAGE_COUNT - 1);
+    }
+
+    /**
+     * A state setter giving every value to the blackhole, so that none of them is optimized away.
+     */
+    private record BlackholeStateSetter(Blackhole blackhole) implements AircraftStateSetter {
+        @Override
+        public void setLastMessageTimeStampNs(long timeStampNs) {
+            blackhole.consume(timeStampNs);
+        }
+
+        @Override
+        public void setCategory(int category) {
+            blackhole.consume(category);
+        }
+
+        @Override
+        public void setCallSign(CallSign callSign) {
+            blackhole.consume(callSign);
+        }
+
+        @Override
+        public void setPosition(GeoPos position) {
+            blackhole.consume(position);
+        }
+
+        @Override
+        public void setAltitude(double altitude) {
+            blackhole.consume(altitude);
+        }
+
+        @Override
+        public void setVelocity(double velocity) {
+            blackhole.consume(velocity);
+        }
+
+        @Override
+        public void setTrackOrHeading(double trackOrHeading) {
+            blackhole.consume(trackOrHeading);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.aircraft.IcaoAddress;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark of the update of the states of many aircraft by several threads at once, while another thread drains the
+ * changes as the GUI does once per frame.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AircraftStateEngineBenchmark {
+    private static final int AIRCRAFT_PER_THREAD = 256;
+    private static final int MESSAGE_COUNT = 1 << 12;
+    private static final long MESSAGE_INTERVAL_NS = 10_000_000L;
+
+    @Param({"1", "16"})
+    public int shardCount;
+
+    private AircraftStateEngine engine;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        engine = new AircraftStateEngine(shardCount, null);
+    }
+
+    /**
+     * The messages applied by a thread, of aircraft of its own.
+     */
+    @State(Scope.Thread)
+    public static class Messages {
+        private final Message[] messages = new Message[MESSAGE_COUNT];
+        private int next = 0;
+
+        @Setup
+        public void setUp(AircraftStateEngineBenchmark benchmark) {
+            int firstAircraft = benchmark.nextThread.getAndIncrement() * AIRCRAFT_PER_THREAD;
+            for (int i = 0; i < MESSAGE_COUNT; ++i) {
+                IcaoAddress icaoAddress = IcaoAddress.ofInt(firstAircraft + i % AIRCRAFT_PER_THREAD);
+                messages[i] = new AirborneVelocityMessage(i * MESSAGE_INTERVAL_NS, icaoAddress, 230, 1.5);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("engine")
+    @GroupThreads(3)
+    public void apply(Messages messages) {
+        engine.apply(messages.messages[messages.next]);
+        messages.next = (messages.next + 1) & (MESSAGE_COUNT - 1);
+    }
+
+    @Benchmark
+    @Group("engine")
+    @GroupThreads(1)
+    public List<AircraftStateEngine.Change> drainChanges() {
+        return engine.drainChanges();
+    }
+}
@@ -0,0 +1,38 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the decoding of a position from an even and an odd message, as a GeoPos and packed in a long.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CprDecoderBenchmark {
+    @Param({"0", "1"})
+    public int mostRecent;
+
+    // Not constants, so that the decoding is not folded away
+    private double x0 = Math.scalb(111600, -17);
+    private double y0 = Math.scalb(94445, -17);
+    private double x1 = Math.scalb(108865, -17);
+    private double y1 = Math.scalb(77558, -17);
+
+    @Benchmark
+    public GeoPos decodePosition() {
+        return CprDecoder.decodePosition(x0, y0, x1, y1, mostRecent);
+    }
+
+    @Benchmark
+    public long decodePositionT32() {
+        return CprDecoder.decodePositionT32(x0, y0, x1, y1, mostRecent);
+    }
+}
@@ -0,0 +1,77 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.ByteString;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the parsing of a raw message of each type.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParserBenchmark {
+    private static final Map<String, String> MESSAGES = Map.of(
+            "identification", "8D4D2228234994B7284820323B81",
+            "position", "8D34608358B982D5B3532EE0620C",
+            "velocity", "8D344645990CA093703C0ABEF91E");
+
+    @Param({"identification", "position", "velocity"})
+    public String type;
+
+    private RawMessage rawMessage;
+    private PackedRawMessage packedRawMessage;
+    private MessageParser.Visitor visitor;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        rawMessage = new RawMessage(0, ByteString.ofHexadecimalString(MESSAGES.get(type)));
+        packedRawMessage = PackedRawMessage.of(rawMessage);
+        visitor = new BlackholeVisitor(blackhole);
+    }
+
+    @Benchmark
+    public Message parse() {
+        return MessageParser.parse(rawMessage);
+    }
+
+    @Benchmark
+    public boolean parseWithVisitor() {
+        return MessageParser.parse(packedRawMessage, visitor);
+    }
+
+    /**
+     * A visitor giving every field to the blackhole, so that none of them is optimized away.
+     */
+    private record BlackholeVisitor(Blackhole blackhole) implements MessageParser.Visitor {
+        @Override
+        public void identification(long timeStampNs, int icaoAddress, int category, CallSign callSign) {
+            blackhole.consume(category);
+            blackhole.consume(callSign);
+        }
+
+        @Override
+        public void position(long timeStampNs, int icaoAddress, double altitude, int parity, double x, double y) {
+            blackhole.consume(altitude);
+            blackhole.consume(x);
+            blackhole.consume(y);
+        }
+
+        @Override
+        public void velocity(long timeStampNs, int icaoAddress, double speed, double trackOrHeading,
+                             double verticalRate, double gnssBaroDifference) {
+            blackhole.consume(speed);
+            blackhole.consume(trackOrHeading);
+            blackhole.consume(verticalRate);
+            blackhole.consume(gnssBaroDifference);
+        }
+    }
+}
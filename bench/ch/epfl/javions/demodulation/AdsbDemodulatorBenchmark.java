@@ -0,0 +1,38 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.adsb.RawMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the demodulation of the whole bundled sample file, read from memory.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdsbDemodulatorBenchmark {
+    private byte[] samples;
+
+    @Setup
+    public void setUp() {
+        samples = DemodulationBenchmark.samples();
+    }
+
+    @Benchmark
+    public int nextMessageOfWholeFile() throws IOException {
+        AdsbDemodulator demodulator = new AdsbDemodulator(new ByteArrayInputStream(samples));
+        int messages = 0;
+        RawMessage message;
+        while ((message = demodulator.nextMessage()) != null)
+            messages += message.downLinkFormat();
+        return messages;
+    }
+}
@@ -0,0 +1,93 @@
+package ch.epfl.javions.demodulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the stages of the demodulation, each one reading the bundled sample file from memory. The batch
+ * benchmarks measure a single batch, starting again at the beginning of the file once it is read.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DemodulationBenchmark {
+    static final String SAMPLES_RESOURCE = "/samples_20230304_1442.bin";
+    private static final int BATCH_SIZE = PowerWindow.BATCH_SIZE;
+    private static final int BYTES_PER_POWER_SAMPLE = 2 * Short.BYTES;
+
+    private ByteArrayInputStream stream;
+    private SamplesDecoder samplesDecoder;
+    private PowerComputer powerComputer;
+    private FusedPowerComputer fusedPowerComputer;
+    private PowerWindow powerWindow;
+
+    private final short[] samplesBatch = new short[2 * BATCH_SIZE];
+    private final int[] powerBatch = new int[BATCH_SIZE];
+
+    @Setup
+    public void setUp() {
+        stream = new ByteArrayInputStream(samples());
+        samplesDecoder = new SamplesDecoder(stream, samplesBatch.length);
+        powerComputer = new PowerComputer(stream, BATCH_SIZE);
+        fusedPowerComputer = new FusedPowerComputer(stream, BATCH_SIZE);
+    }
+
+    @Benchmark
+    public int samplesDecoderReadBatch() throws IOException {
+        rewindIfRead();
+        return samplesDecoder.readBatch(samplesBatch);
+    }
+
+    @Benchmark
+    public int powerComputerReadBatch() throws IOException {
+        rewindIfRead();
+        return powerComputer.readBatch(powerBatch);
+    }
+
+    @Benchmark
+    public int fusedPowerComputerReadBatch() throws IOException {
+        rewindIfRead();
+        return fusedPowerComputer.readBatch(powerBatch);
+    }
+
+    @Benchmark
+    public int powerWindowAdvanceAndGet() throws IOException {
+        if (powerWindow == null || !powerWindow.isFull()) {
+            stream.reset();
+            powerWindow = new PowerWindow(stream, AdsbDemodulator.WINDOW_SIZE);
+        }
+        powerWindow.advance();
+        return powerWindow.get(0) + powerWindow.get(AdsbDemodulator.WINDOW_SIZE - 1);
+    }
+
+    /**
+     * Starts reading the file again once less than a batch is left, so that every batch is a full one.
+     */
+    private void rewindIfRead() {
+        if (stream.available() < BATCH_SIZE * BYTES_PER_POWER_SAMPLE) stream.reset();
+    }
+
+    /**
+     * This method reads the bundled sample file.
+     *
+     * @return the bytes of the sample file
+     */
+    static byte[] samples() {
+        try (InputStream s = Objects.requireNonNull(DemodulationBenchmark.class.getResourceAsStream(SAMPLES_RESOURCE))) {
+            return s.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
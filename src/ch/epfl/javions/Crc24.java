@@ -1,5 +1,7 @@
 package ch.epfl.javions;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class implements the CRC-24 algorithm.
  *
@@ -8,39 +10,229 @@ package ch.epfl.javions;
 final public class Crc24 {
     public static final int GENERATOR = 0xFFF409;
 
-    private static final int[] DEFAULT_BUILD_TABLE = buildTable(GENERATOR);
     private static final int CRC_LENGTH = 24;
-    private final int[] buildTable;
-
+    private static final int CRC_MASK = (1 << CRC_LENGTH) - 1;
     private static final int MAX_BYTE_VALUE = 256;
 
+    // The length in bytes of the messages that can be corrected, those of 112 bits
+    public static final int CORRECTABLE_LENGTH = 14;
+    public static final int MAX_CORRECTED_BITS = 2;
+
+    // The number of bytes processed at once by the slicing loop of messages of any length
+    private static final int SLICE_LENGTH = 8;
+    // The number of bytes of the first part of a message of 112 bits given as two longs
+    private static final int HIGH_LENGTH = CORRECTABLE_LENGTH - Long.BYTES;
+
+    private static final int[][] DEFAULT_TABLES = buildTables(GENERATOR);
+    // Table j gives the CRC of a byte followed by j zero bytes, table 0 being the one of the byte-wise algorithm
+    private final int[][] tables;
+
     /**
      * Constructs a Crc24 object.
      *
      * @param generator the generator used to calculate the CRC values
      */
     public Crc24(int generator) {
-        this.buildTable = generator == GENERATOR ? DEFAULT_BUILD_TABLE : buildTable(generator);
+        this.tables = generator == GENERATOR ? DEFAULT_TABLES : buildTables(generator);
     }
 
     /**
-     * Returns the CRC of the message.
+     * Returns the CRC of the message. The CRC of a message of 112 bits is computed with one table per byte, the one
+     * of a message of any other length eight bytes at a time.
      *
      * @param bytes the bytes on which to compute the CRC, the message.
      * @return the CRC of the message
      */
     public int crc(byte[] bytes) {
+        if (bytes.length == CORRECTABLE_LENGTH) {
+            // Each byte of a message of 112 bits goes through its own table, as in crc(long, long)
+            int[][] t = tables;
+            return t[13][bytes[0] & 0xFF] ^ t[12][bytes[1] & 0xFF] ^ t[11][bytes[2] & 0xFF] ^ t[10][bytes[3] & 0xFF]
+                    ^ t[9][bytes[4] & 0xFF] ^ t[8][bytes[5] & 0xFF] ^ t[7][bytes[6] & 0xFF] ^ t[6][bytes[7] & 0xFF]
+                    ^ t[5][bytes[8] & 0xFF] ^ t[4][bytes[9] & 0xFF] ^ t[3][bytes[10] & 0xFF] ^ t[2][bytes[11] & 0xFF]
+                    ^ t[1][bytes[12] & 0xFF] ^ t[0][bytes[13] & 0xFF];
+        }
+
+        // Slicing by 8: the CRC so far is xored into the first three bytes of the slice, whose eight bytes are then
+        // looked up in independent tables instead of one after the other
         int crc = 0;
+        int i = 0;
+        for (; i + SLICE_LENGTH <= bytes.length; i += SLICE_LENGTH) {
+            crc = tables[7][(bytes[i] ^ (crc >>> 16)) & 0xFF]
+                    ^ tables[6][(bytes[i + 1] ^ (crc >>> 8)) & 0xFF]
+                    ^ tables[5][(bytes[i + 2] ^ crc) & 0xFF]
+                    ^ tables[4][bytes[i + 3] & 0xFF]
+                    ^ tables[3][bytes[i + 4] & 0xFF]
+                    ^ tables[2][bytes[i + 5] & 0xFF]
+                    ^ tables[1][bytes[i + 6] & 0xFF]
+                    ^ tables[0][bytes[i + 7] & 0xFF];
+        }
+        for (; i < bytes.length; ++i)
+            crc = ((crc << 8) & CRC_MASK) ^ tables[0][((crc >>> 16) ^ bytes[i]) & 0xFF];
 
-        for (byte oneByte : bytes) {
-            crc = ((crc << 8) | Byte.toUnsignedInt(oneByte)) ^ buildTable[filterNLeastSignificantBits(crc >>> (CRC_LENGTH - 8), 8)];
+        return crc;
+    }
+
+    /**
+     * Returns the CRC of a message of 112 bits given as two longs. Each byte of the message goes through its own
+     * table, so that the fourteen lookups do not depend on each other.
+     *
+     * @param high the six first bytes of the message, in the 48 least significant bits
+     * @param low  the eight last bytes of the message
+     * @return the CRC of the message
+     */
+    public int crc(long high, long low) {
+        int[][] t = tables;
+        return t[13][(int) (high >>> 40) & 0xFF] ^ t[12][(int) (high >>> 32) & 0xFF]
+                ^ t[11][(int) (high >>> 24) & 0xFF] ^ t[10][(int) (high >>> 16) & 0xFF]
+                ^ t[9][(int) (high >>> 8) & 0xFF] ^ t[8][(int) high & 0xFF]
+                ^ t[7][(int) (low >>> 56) & 0xFF] ^ t[6][(int) (low >>> 48) & 0xFF]
+                ^ t[5][(int) (low >>> 40) & 0xFF] ^ t[4][(int) (low >>> 32) & 0xFF]
+                ^ t[3][(int) (low >>> 24) & 0xFF] ^ t[2][(int) (low >>> 16) & 0xFF]
+                ^ t[1][(int) (low >>> 8) & 0xFF] ^ t[0][(int) low & 0xFF];
+    }
+
+    /**
+     * Returns the CRC of the remaining bytes of the given buffer, without changing its position.
+     *
+     * @param bytes the buffer holding the message between its position and its limit
+     * @return the CRC of the message
+     */
+    public int crc(ByteBuffer bytes) {
+        int from = bytes.position();
+        if (bytes.remaining() == CORRECTABLE_LENGTH) {
+            long high = 0, low = 0;
+            for (int i = 0; i < HIGH_LENGTH; ++i)
+                high = (high << 8) | Byte.toUnsignedLong(bytes.get(from + i));
+            for (int i = HIGH_LENGTH; i < CORRECTABLE_LENGTH; ++i)
+                low = (low << 8) | Byte.toUnsignedLong(bytes.get(from + i));
+            return crc(high, low);
+        }
+
+        int crc = 0;
+        for (int i = from; i < bytes.limit(); ++i)
+            crc = ((crc << 8) & CRC_MASK) ^ tables[0][((crc >>> 16) ^ bytes.get(i)) & 0xFF];
+        return crc;
+    }
+
+    /**
+     * This method corrects in place the bits of a message of 112 bits whose CRC computed with the ADS-B generator is
+     * not zero, when its syndrome (its CRC) is the one of at most the given number of flipped bits. The syndromes of
+     * the flips of one and two bits are precomputed in a hash table, the correction being a single lookup.
+     *
+     * @param bytes        the bytes of the message, corrected in place
+     * @param maxFlipped   the maximum number of flipped bits to correct, between 0 and 2
+     * @return the number of corrected bits, 0 if the CRC of the message is already zero, or -1 if the message could
+     * not be corrected
+     * @throws IllegalArgumentException      if the message is not 14 bytes long or the number of bits is invalid
+     * @throws UnsupportedOperationException if this CRC was not built with the ADS-B generator
+     */
+    public int correct(byte[] bytes, int maxFlipped) {
+        Preconditions.checkArgument(bytes.length == CORRECTABLE_LENGTH
+                && 0 <= maxFlipped && maxFlipped <= MAX_CORRECTED_BITS);
+        if (tables != DEFAULT_TABLES) throw new UnsupportedOperationException();
+
+        int syndrome = crc(bytes);
+        if (syndrome == 0) return 0;
+
+        int flipped = SyndromeTable.flippedBits(syndrome);
+        int count = flipped == SyndromeTable.NONE ? -1 : (flipped >>> SyndromeTable.SECOND_BIT_SHIFT == 0 ? 1 : 2);
+        if (count < 0 || count > maxFlipped) return -1;
+
+        flipBit(bytes, (flipped & SyndromeTable.BIT_MASK) - 1);
+        if (count == 2) flipBit(bytes, (flipped >>> SyndromeTable.SECOND_BIT_SHIFT) - 1);
+        return count;
+    }
+
+    /**
+     * This method flips a bit of a message, bit 0 being the most significant bit of its first byte.
+     *
+     * @param bytes the bytes of the message
+     * @param bit   the index of the bit to flip
+     */
+    private static void flipBit(byte[] bytes, int bit) {
+        bytes[bit >>> 3] ^= (byte) (0x80 >>> (bit & 7));
+    }
+
+    /**
+     * The table giving the one or two flipped bits of a message of 112 bits from its syndrome, built the first time
+     * a message is corrected. It is an open addressing hash table of primitive arrays, so that a lookup costs a few
+     * array reads. A syndrome shared by several flips is ambiguous and gives no correction.
+     */
+    private static final class SyndromeTable {
+        static final int NONE = 0;
+        static final int BIT_MASK = 0xFF;
+        static final int SECOND_BIT_SHIFT = 8;
+
+        private static final int MESSAGE_BITS = CORRECTABLE_LENGTH * Byte.SIZE;
+        private static final int CAPACITY_BITS = 14;
+        private static final int MASK = (1 << CAPACITY_BITS) - 1;
+        private static final int AMBIGUOUS = -1;
+        private static final int HASH_MULTIPLIER = 0x9E3779B1;
+
+        // The syndromes, 0 meaning an empty slot, and the flipped bits plus one, the second in the second byte
+        private static final int[] SYNDROMES = new int[1 << CAPACITY_BITS];
+        private static final int[] FLIPPED_BITS = new int[1 << CAPACITY_BITS];
+
+        static {
+            Crc24 crc24 = new Crc24(GENERATOR);
+            int[] bitSyndromes = new int[MESSAGE_BITS];
+            for (int i = 0; i < MESSAGE_BITS; ++i) {
+                byte[] error = new byte[CORRECTABLE_LENGTH];
+                flipBit(error, i);
+                bitSyndromes[i] = crc24.crc(error);
+            }
+
+            for (int i = 0; i < MESSAGE_BITS; ++i) {
+                put(bitSyndromes[i], i + 1);
+                for (int j = i + 1; j < MESSAGE_BITS; ++j)
+                    put(bitSyndromes[i] ^ bitSyndromes[j], (i + 1) | ((j + 1) << SECOND_BIT_SHIFT));
+            }
         }
 
-        for (int i = 0; i < 3; ++i) {
-            crc = (crc << 8) ^ buildTable[(crc >>> (CRC_LENGTH - 8)) & 0xFF];
+        private SyndromeTable() {
         }
 
-        return filterNLeastSignificantBits(crc, CRC_LENGTH);
+        /**
+         * This method adds the flips of the given syndrome, marking it ambiguous if it is already in the table.
+         *
+         * @param syndrome    the syndrome, which is never zero
+         * @param flippedBits the flipped bits plus one, the second in the second byte
+         */
+        private static void put(int syndrome, int flippedBits) {
+            int slot = slot(syndrome);
+            if (SYNDROMES[slot] == syndrome) {
+                FLIPPED_BITS[slot] = AMBIGUOUS;
+            } else {
+                SYNDROMES[slot] = syndrome;
+                FLIPPED_BITS[slot] = flippedBits;
+            }
+        }
+
+        /**
+         * This method returns the flipped bits of the given syndrome.
+         *
+         * @param syndrome the syndrome
+         * @return the flipped bits plus one, the second in the second byte, or NONE if the syndrome is not the one of
+         * a single flip of one or two bits
+         */
+        static int flippedBits(int syndrome) {
+            int slot = slot(syndrome);
+            return SYNDROMES[slot] == syndrome && FLIPPED_BITS[slot] != AMBIGUOUS ? FLIPPED_BITS[slot] : NONE;
+        }
+
+        /**
+         * This method returns the slot of the given syndrome, the slot holding it or the empty slot where it goes.
+         *
+         * @param syndrome the syndrome
+         * @return the slot of the syndrome
+         */
+        private static int slot(int syndrome) {
+            int slot = (syndrome * HASH_MULTIPLIER) >>> (Integer.SIZE - CAPACITY_BITS);
+            while (SYNDROMES[slot] != 0 && SYNDROMES[slot] != syndrome)
+                slot = (slot + 1) & MASK;
+            return slot;
+        }
     }
 
     /**
@@ -67,6 +259,26 @@ final public class Crc24 {
         return filterNLeastSignificantBits(crc, CRC_LENGTH);
     }
 
+    /**
+     * This method builds the tables of the slicing algorithm, table j giving the CRC of each byte followed by j zero
+     * bytes.
+     *
+     * @param generator the generator used to calculate the CRC values
+     * @return the tables, one for each byte of a message of 112 bits
+     */
+    private static int[][] buildTables(int generator) {
+        int[][] tables = new int[CORRECTABLE_LENGTH][];
+        tables[0] = buildTable(generator);
+        for (int j = 1; j < CORRECTABLE_LENGTH; ++j) {
+            tables[j] = new int[MAX_BYTE_VALUE];
+            for (int i = 0; i < MAX_BYTE_VALUE; ++i) {
+                int previous = tables[j - 1][i];
+                tables[j][i] = ((previous << 8) & CRC_MASK) ^ tables[0][previous >>> 16];
+            }
+        }
+        return tables;
+    }
+
     /**
      * This method builds a table for computing CRC values for the 256 bytes.
      *
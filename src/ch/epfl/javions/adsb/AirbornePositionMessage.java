@@ -5,7 +5,6 @@ import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
 import ch.epfl.javions.aircraft.IcaoAddress;
 
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -21,6 +20,17 @@ public record AirbornePositionMessage(long timeStampNs, IcaoAddress icaoAddress,
     private static final int ENCODED_ALTITUDE_POS = 36;
     private static final int ENCODED_ALTITUDE_SIZE = 12;
     private static final int Q_POS_IN_ALTITUDE_PART = 4;
+    // The indices of the bits of the altitude, D1 D2 D4 A1 A2 A4 B1 B2 B4 and C1 C2 C4
+    private static final int[] MSB_INDICES = {4, 2, 0, 10, 8, 6, 5, 3, 1};
+    private static final int[] LSB_INDICES = {11, 9, 7};
+
+    // The altitude in meters of each of the 4096 encoded altitudes, NaN for the invalid ones
+    private static final double[] ALTITUDES = new double[1 << ENCODED_ALTITUDE_SIZE];
+
+    static {
+        for (int encodedAltitude = 0; encodedAltitude < ALTITUDES.length; ++encodedAltitude)
+            ALTITUDES[encodedAltitude] = computeAltitude(encodedAltitude);
+    }
 
     public AirbornePositionMessage {
         Objects.requireNonNull(icaoAddress);
@@ -37,39 +47,58 @@ public record AirbornePositionMessage(long timeStampNs, IcaoAddress icaoAddress,
      * @return a new AirbornePositionMessage
      */
     public static AirbornePositionMessage of(RawMessage rawMessage) {
-        long payload = rawMessage.payload();
+        MessageParser.MessageBuilder builder = new MessageParser.MessageBuilder();
+        return decode(rawMessage.timeStampNs(), rawMessage.icaoAddress().value(), rawMessage.payload(), builder)
+                ? (AirbornePositionMessage) builder.message
+                : null;
+    }
+
+    /**
+     * Decode the position from the payload and give it to the visitor.
+     *
+     * @param timeStampNs the time stamp of the message
+     * @param icaoAddress the 24 bits of the ICAO address of the aircraft
+     * @param payload     the payload to decode the position from
+     * @param visitor     the visitor receiving the position
+     * @return true if the altitude was valid and the position given to the visitor
+     */
+    static boolean decode(long timeStampNs, int icaoAddress, long payload, MessageParser.Visitor visitor) {
         long lon_cpr = Bits.extractUInt(payload, 0, 17);
         long lat_cpr = Bits.extractUInt(payload, 17, 17);
         int format = Bits.extractUInt(payload, 34, 1);
-        double altitude;
-
+        double altitude = decodeAltitude(payload);
 
-        try {
-            altitude = decodeAltitude(payload);
-        } catch (Exception e) {
-            return null;
-        }
+        if (Double.isNaN(altitude)) return false;
 
-        return new AirbornePositionMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), altitude, format, (double) lon_cpr / (1 << 17), (double) lat_cpr / (1 << 17));
+        visitor.position(timeStampNs, icaoAddress, altitude, format, (double) lon_cpr / (1 << 17), (double) lat_cpr / (1 << 17));
+        return true;
     }
 
     /**
      * Decode the altitude from the payload.
      *
      * @param payload : the payload to decode the altitude from
-     * @return the altitude in meters
+     * @return the altitude in meters, or NaN if it is invalid
      */
-    private static double decodeAltitude(long payload) throws IllegalArgumentException {
-        int encodedAltitude = Bits.extractUInt(payload, ENCODED_ALTITUDE_POS, ENCODED_ALTITUDE_SIZE);
+    private static double decodeAltitude(long payload) {
+        return ALTITUDES[Bits.extractUInt(payload, ENCODED_ALTITUDE_POS, ENCODED_ALTITUDE_SIZE)];
+    }
 
+    /**
+     * Computes the altitude of an encoded altitude, used to build the table of the altitudes.
+     *
+     * @param encodedAltitude : the 12 bits of the encoded altitude
+     * @return the altitude in meters, or NaN if it is invalid
+     */
+    private static double computeAltitude(int encodedAltitude) {
         int q = Bits.extractUInt(encodedAltitude, Q_POS_IN_ALTITUDE_PART, 1);
 
         if (q == 0) {
-            int msbAlt = decodeGrayCode(joinBitsByIndex(encodedAltitude, 4, 2, 0, 10, 8, 6, 5, 3, 1));      // D1 D2 D4 A1 A2 A4 B1 B2 B4
-            int lsbAlt = decodeGrayCode(joinBitsByIndex(encodedAltitude, 11, 9, 7));                        // C1 C2 C4
+            int msbAlt = decodeGrayCode(joinBitsByIndex(encodedAltitude, MSB_INDICES));
+            int lsbAlt = decodeGrayCode(joinBitsByIndex(encodedAltitude, LSB_INDICES));
 
-            if (List.of(0, 5, 6).contains(lsbAlt)) {
-                throw new IllegalArgumentException("Invalid altitude");
+            if (lsbAlt == 0 || lsbAlt == 5 || lsbAlt == 6) {
+                return Double.NaN;
             } else if (lsbAlt == 7) {
                 lsbAlt = 5;
             }
@@ -94,7 +123,7 @@ public record AirbornePositionMessage(long timeStampNs, IcaoAddress icaoAddress,
      * @param indices : the indices of the bits to extract
      * @return the bits at the given indices
      */
-    private static int joinBitsByIndex(int value, int... indices) {
+    private static int joinBitsByIndex(int value, int[] indices) {
         int result = 0;
         for (int i = 0; i < indices.length; i++) {
             result <<= i == 0 ? 0 : 1;
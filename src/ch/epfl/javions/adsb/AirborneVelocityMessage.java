@@ -14,7 +14,8 @@ import java.util.Objects;
  * @author Mateo Tiedra (356525)
  */
 public record AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress, double speed,
-                                      double trackOrHeading) implements Message {
+                                      double trackOrHeading, double verticalRate,
+                                      double gnssBaroDifference) implements Message {
 
     private static final int ST_POS = 48;
     private static final int ST_SIZE = 3;
@@ -33,6 +34,17 @@ public record AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress,
 
     private static final double ENCODED_AIR_SPEED_RATIO = 1 << 10;
 
+    private static final int SVR_POS = 19;
+    private static final int VR_POS = 10;
+    private static final int VR_SIZE = 9;
+    private static final int VR_RATIO = 64;
+    private static final double FOOT_PER_MINUTE = Units.Length.FOOT / Units.Time.MINUTE;
+
+    private static final int SDIF_POS = 7;
+    private static final int DALT_POS = 0;
+    private static final int DALT_SIZE = 7;
+    private static final int DALT_RATIO = 25;
+
 
     /**
      * Constructs an AirborneVelocityMessage.
@@ -40,7 +52,10 @@ public record AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress,
      * @param timeStampNs    the time stamp of the message (in nanoseconds)
      * @param icaoAddress    the ICAO address of the aircraft
      * @param speed          the speed of the aircraft in meters per second
-     * @param trackOrHeading the angle between the direction and the north clockwise, in radians
+     * @param trackOrHeading     the angle between the direction and the north clockwise, in radians
+     * @param verticalRate       the vertical rate of the aircraft in meters per second, positive when climbing,
+     *                           NaN if unknown
+     * @param gnssBaroDifference the difference between the GNSS and the barometric altitudes in meters, NaN if unknown
      */
     public AirborneVelocityMessage {
         Objects.requireNonNull(icaoAddress);
@@ -49,6 +64,18 @@ public record AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress,
         Preconditions.checkArgument(trackOrHeading >= 0);
     }
 
+    /**
+     * Constructs an AirborneVelocityMessage whose vertical rate and altitude difference are unknown.
+     *
+     * @param timeStampNs    the time stamp of the message (in nanoseconds)
+     * @param icaoAddress    the ICAO address of the aircraft
+     * @param speed          the speed of the aircraft in meters per second
+     * @param trackOrHeading the angle between the direction and the north clockwise, in radians
+     */
+    public AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress, double speed, double trackOrHeading) {
+        this(timeStampNs, icaoAddress, speed, trackOrHeading, Double.NaN, Double.NaN);
+    }
+
     /**
      * Returns an AirborneVelocityMessage if the given raw message contains a valid airborne velocity.
      *
@@ -56,111 +83,85 @@ public record AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress,
      * @return an AirborneVelocityMessage if the given raw message contains a valid airborne velocity, null otherwise
      */
     public static AirborneVelocityMessage of(RawMessage rawMessage) {
-        long payload = rawMessage.payload();
-        int st = Bits.extractUInt(payload, ST_POS, ST_SIZE);
-        long encodedSpeed = Bits.extractUInt(payload, ENCODED_SPEED_POS, ENCODED_SPEED_SIZE);
-        Velocity velocity;
-
-        try {
-            if (st == 1 || st == 2) {
-                velocity = computeGroundSpeed(encodedSpeed, st == 2);
-            } else if (st == 3 || st == 4) {
-                velocity = computeAirSpeed(encodedSpeed, st == 4);
-            } else {
-                return null;
-            }
-
-            return new AirborneVelocityMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), velocity.getSpeed(), velocity.getAngle());
-        } catch (IllegalArgumentException e) {
-            return null;
-        }
+        MessageParser.MessageBuilder builder = new MessageParser.MessageBuilder();
+        return decode(rawMessage.timeStampNs(), rawMessage.icaoAddress().value(), rawMessage.payload(), builder)
+                ? (AirborneVelocityMessage) builder.message
+                : null;
     }
 
     /**
-     * Represents a velocity.
+     * Decode the velocity from the payload and give it to the visitor. All the fields are computed in local variables
+     * of primitive types, so that nothing is allocated and no exception is thrown for an invalid message.
+     *
+     * @param timeStampNs the time stamp of the message
+     * @param icaoAddress the 24 bits of the ICAO address of the aircraft
+     * @param payload     the payload to decode the velocity from
+     * @param visitor     the visitor receiving the velocity
+     * @return true if the velocity was valid and given to the visitor
      */
-    private static class Velocity {
-        private final double angle;
-        private final double speed;
-
-        /**
-         * Constructs a velocity.
-         *
-         * @param vx the x component of the velocity
-         * @param vy the y component of the velocity
-         */
-        private Velocity(int vx, int vy) {
-            this(Units.convertFrom(Math.hypot(vx, vy),
-                    Units.Speed.KNOT), Math.atan2(vy, vx) < 0 ? Math.atan2(vy, vx) + 2 * Math.PI : Math.atan2(vy, vx));
-        }
-
-        /**
-         * Constructs a velocity.
-         *
-         * @param speed the speed of the velocity
-         * @param angle the angle of the velocity
-         */
-        private Velocity(double speed, double angle) {
-            Preconditions.checkArgument(speed >= 0);
-            Preconditions.checkArgument(angle >= 0);
-            this.angle = angle;
-            this.speed = speed;
-        }
-
-        /**
-         * Returns the speed of the velocity.
-         *
-         * @return the speed of the velocity
-         */
-        public double getSpeed() {
-            return speed;
+    static boolean decode(long timeStampNs, int icaoAddress, long payload, MessageParser.Visitor visitor) {
+        int st = Bits.extractUInt(payload, ST_POS, ST_SIZE);
+        long encodedSpeed = Bits.extractUInt(payload, ENCODED_SPEED_POS, ENCODED_SPEED_SIZE);
+        int factor = (st == 2 || st == 4) ? 4 : 1;
+        double speed;
+        double angle;
+
+        if (st == 1 || st == 2) {
+            // Ground speed
+            int dew = Bits.extractUInt(encodedSpeed, V_SIZE + DIR_SIZE + V_SIZE, DIR_SIZE);
+            int vew = (Bits.extractUInt(encodedSpeed, V_SIZE + DIR_SIZE, V_SIZE) - 1);
+            int dns = Bits.extractUInt(encodedSpeed, V_SIZE, DIR_SIZE);
+            int vns = (Bits.extractUInt(encodedSpeed, 0, V_SIZE) - 1);
+
+            if (vns == -1 || vew == -1) return false;
+
+            int vx = vns * (dns == 1 ? -1 : 1) * factor;
+            int vy = vew * (dew == 1 ? -1 : 1) * factor;
+            speed = Units.convertFrom(Math.hypot(vx, vy), Units.Speed.KNOT);
+            angle = Math.atan2(vy, vx);
+            if (angle < 0) angle += 2 * Math.PI;
+        } else if (st == 3 || st == 4) {
+            // Air speed
+            int as = Bits.extractUInt(encodedSpeed, 0, AS_SIZE);
+            double hdg = Bits.extractUInt(encodedSpeed, HDG_POS, HDG_SIZE);
+            int sh = Bits.extractUInt(encodedSpeed, SH_POSE, SH_SIZE);
+
+            if (as == 0 || sh == 0) return false;
+
+            speed = Units.convertFrom((as - 1) * factor, Units.Speed.KNOT);
+            angle = Units.convert(hdg / ENCODED_AIR_SPEED_RATIO, Units.Angle.TURN, Units.Angle.RADIAN);
+        } else {
+            return false;
         }
 
-        /**
-         * Returns the angle of the velocity.
-         *
-         * @return the angle of the velocity
-         */
-        public double getAngle() {
-            return angle;
-        }
+        visitor.velocity(timeStampNs, icaoAddress, speed, angle, decodeVerticalRate(payload),
+                decodeGnssBaroDifference(payload));
+        return true;
     }
 
     /**
-     * Computes the ground speed from the given payload.
+     * Decodes the vertical rate of the payload.
      *
-     * @param payload    the payload of the message
-     * @param factorFour whether the speed should be multiplied by 4
-     * @return the ground speed in meters per second
+     * @param payload the payload of an airborne velocity message
+     * @return the vertical rate in meters per second, positive when climbing, NaN if unknown
      */
-    private static Velocity computeGroundSpeed(long payload, boolean factorFour) {
-        int dew = Bits.extractUInt(payload, V_SIZE + DIR_SIZE + V_SIZE, DIR_SIZE);
-        int vew = (Bits.extractUInt(payload, V_SIZE + DIR_SIZE, V_SIZE) - 1);
-        int dns = Bits.extractUInt(payload, V_SIZE, DIR_SIZE);
-        int vns = (Bits.extractUInt(payload, 0, V_SIZE) - 1);
-
-        int factor = factorFour ? 4 : 1;
-
-        if (vns == -1 || vew == -1) throw new IllegalArgumentException();
-
-        return new Velocity(vns * (dns == 1 ? -1 : 1) * factor, vew * (dew == 1 ? -1 : 1) * factor);
+    private static double decodeVerticalRate(long payload) {
+        int vr = Bits.extractUInt(payload, VR_POS, VR_SIZE);
+        if (vr == 0) return Double.NaN;
+        int rate = (vr - 1) * VR_RATIO;
+        return Units.convertFrom(Bits.testBit(payload, SVR_POS) ? -rate : rate, FOOT_PER_MINUTE);
     }
 
     /**
-     * Computes the air speed from the given payload.
+     * Decodes the difference between the GNSS and the barometric altitudes of the payload.
      *
-     * @param payload    the payload of the message
-     * @param factorFour whether the speed should be multiplied by 4
-     * @return the air speed in meters per second
+     * @param payload the payload of an airborne velocity message
+     * @return the difference in meters, positive when the GNSS altitude is above the barometric one, NaN if unknown
      */
-    private static Velocity computeAirSpeed(long payload, boolean factorFour) {
-        int as = Bits.extractUInt(payload, 0, AS_SIZE);
-        double hdg = Bits.extractUInt(payload, HDG_POS, HDG_SIZE);
-        int sh = Bits.extractUInt(payload, SH_POSE, SH_SIZE);
-
-        int speed = (as - 1) * (factorFour ? 4 : 1);
-        double angle = sh == 1 ? hdg / ENCODED_AIR_SPEED_RATIO : -1;
-
-        return new Velocity(Units.convertFrom(speed, Units.Speed.KNOT), Units.convert(angle, Units.Angle.TURN, Units.Angle.RADIAN));
+    private static double decodeGnssBaroDifference(long payload) {
+        int dAlt = Bits.extractUInt(payload, DALT_POS, DALT_SIZE);
+        if (dAlt == 0) return Double.NaN;
+        int difference = (dAlt - 1) * DALT_RATIO;
+        return Units.convertFrom(Bits.testBit(payload, SDIF_POS) ? -difference : difference, Units.Length.FOOT);
     }
 }
@@ -39,22 +39,38 @@ public record AircraftIdentificationMessage(long timeStampNs, IcaoAddress icaoAd
      * @return an AircraftIdentificationMessage if the given raw message  contains a valid call sign, null otherwise
      */
     public static AircraftIdentificationMessage of(RawMessage rawMessage) {
-        CallSign callSign = getCallSign(rawMessage.payload());
-        if (callSign != null)
-            return new AircraftIdentificationMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), getCategory(rawMessage), callSign);
+        MessageParser.MessageBuilder builder = new MessageParser.MessageBuilder();
+        return decode(rawMessage.timeStampNs(), rawMessage.icaoAddress().value(), rawMessage.payload(), builder)
+                ? (AircraftIdentificationMessage) builder.message
+                : null;
+    }
+
+    /**
+     * Decode the identification from the payload and give it to the visitor.
+     *
+     * @param timeStampNs the time stamp of the message
+     * @param icaoAddress the 24 bits of the ICAO address of the aircraft
+     * @param payload     the payload to decode the identification from
+     * @param visitor     the visitor receiving the identification
+     * @return true if the call sign was valid and the identification given to the visitor
+     */
+    static boolean decode(long timeStampNs, int icaoAddress, long payload, MessageParser.Visitor visitor) {
+        CallSign callSign = getCallSign(payload);
+        if (callSign == null) return false;
 
-        return null;
+        visitor.identification(timeStampNs, icaoAddress, getCategory(payload), callSign);
+        return true;
     }
 
     /**
      * Returns the category of the aircraft.
      *
-     * @param rawMessage : the raw message from which the category is extracted
+     * @param payload : the payload of the raw message from which the category is extracted
      * @return the category of the aircraft
      */
-    private static int getCategory(RawMessage rawMessage) {
-        int CA = (int) ((rawMessage.payload() >>> 48) & 0b111);
-        return (((14 - rawMessage.typeCode()) << 4) & 0b11110000) | CA;
+    private static int getCategory(long payload) {
+        int CA = (int) ((payload >>> 48) & 0b111);
+        return (((14 - RawMessage.typeCode(payload)) << 4) & 0b11110000) | CA;
     }
 
     /**
@@ -1,19 +1,48 @@
 package ch.epfl.javions.adsb;
 
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.Units;
+
 import java.util.Objects;
 
 /**
  * Accumulate the state of an aircraft from ADS-B messages.
+ * The first position is decoded from an even and an odd message. When the position of the receiver is known, it is
+ * only kept if it is in the range of the receiver and if the last message, decoded on its own relative to the
+ * receiver, gives the same position, which rules out a position aliased by a message from beyond the range. Each
+ * following position is then decoded from a single message, relative to the last position of the aircraft, and only
+ * kept if the aircraft could have flown there since. Otherwise, the position is decoded again from a new pair of
+ * messages, the previous messages being only kept while no position is known.
  *
  * @param <T> the type of the state setter.
  * @author Mateo Tiedra (356525)
  * @author Kevan Lam (356395)
  */
 public class AircraftStateAccumulator<T extends AircraftStateSetter> {
+    /**
+     * The range of the receiver used by default, which is also the greatest one, in meters. It is half the smallest
+     * latitude zone, beyond which a message decoded relative to the receiver is always aliased.
+     */
+    public static final double MAX_RECEIVER_RANGE = Units.convertFrom(180, Units.Length.NAUTICAL_MILE);
+    // A nautical mile is an arcminute of a great circle
+    private static final double METERS_PER_RADIAN =
+            Units.convertFrom(60, Units.Length.NAUTICAL_MILE) / Units.Angle.DEGREE;
+    // The maximum distance between the positions decoded from a pair of messages and from the last one alone
+    private static final double POSITION_TOLERANCE = Units.convertFrom(0.1, Units.Length.NAUTICAL_MILE);
+    // The speed no aircraft exceeds, and the margin on the distance it flies, used to check the positions decoded
+    // relative to the last one
+    private static final double MAX_SPEED = Units.convertFrom(1000, Units.Speed.KNOT);
+    private static final double MOVE_TOLERANCE = Units.convertFrom(1, Units.Length.NAUTICAL_MILE);
+
     private final T t;
+    private final long receiverPosition;
+    private final double maxReceiverRange;
 
     private AirbornePositionMessage previousMessageEven;
     private AirbornePositionMessage previousMessageOdd;
+    private long lastPosition = CprDecoder.NO_POSITION;
+    private long lastPositionTimeStampNs;
     private final static long TIME_LIMIT = 10_000_000_000L;
 
     /**
@@ -22,7 +51,34 @@ public class AircraftStateAccumulator<T extends AircraftStateSetter> {
      * @param t the state setter.
      */
     public AircraftStateAccumulator(T t) {
+        this(t, null);
+    }
+
+    /**
+     * Constructs an AircraftStateAccumulator with the given state setter, checking the positions of the aircraft
+     * against the position of the receiver, with the greatest range.
+     *
+     * @param t                the state setter.
+     * @param receiverPosition the position of the receiver, or null if it is unknown.
+     */
+    public AircraftStateAccumulator(T t, GeoPos receiverPosition) {
+        this(t, receiverPosition, MAX_RECEIVER_RANGE);
+    }
+
+    /**
+     * Constructs an AircraftStateAccumulator with the given state setter, checking the positions of the aircraft
+     * against the position of the receiver, with the given range.
+     *
+     * @param t                the state setter.
+     * @param receiverPosition the position of the receiver, or null if it is unknown.
+     * @param maxReceiverRange the distance beyond which the first position of an aircraft is rejected, in meters.
+     * @throws IllegalArgumentException if the range is not strictly positive or is more than 180 nautical miles.
+     */
+    public AircraftStateAccumulator(T t, GeoPos receiverPosition, double maxReceiverRange) {
+        Preconditions.checkArgument(0 < maxReceiverRange && maxReceiverRange <= MAX_RECEIVER_RANGE);
         this.t = Objects.requireNonNull(t);
+        this.receiverPosition = receiverPosition == null ? CprDecoder.NO_POSITION : CprDecoder.ofGeoPos(receiverPosition);
+        this.maxReceiverRange = maxReceiverRange;
     }
 
     /**
@@ -49,14 +105,21 @@ public class AircraftStateAccumulator<T extends AircraftStateSetter> {
             case AirbornePositionMessage apm -> {
                 t.setAltitude(apm.altitude());
 
-                if (previousMessageOdd != null && apm.parity() == 0
-                        && ((apm.timeStampNs() - previousMessageOdd.timeStampNs()) <= TIME_LIMIT)
-                        && CprDecoder.decodePosition(apm.x(), apm.y(), previousMessageOdd.x(), previousMessageOdd.y(), apm.parity()) != null) {
-                    t.setPosition(CprDecoder.decodePosition(apm.x(), apm.y(), previousMessageOdd.x(), previousMessageOdd.y(), apm.parity()));
-                } else if (previousMessageEven != null && apm.parity() == 1
-                        && (apm.timeStampNs() - previousMessageEven.timeStampNs()) <= TIME_LIMIT
-                        && CprDecoder.decodePosition(previousMessageEven.x(), previousMessageEven.y(), apm.x(), apm.y(), apm.parity()) != null) {
-                    t.setPosition(CprDecoder.decodePosition(previousMessageEven.x(), previousMessageEven.y(), apm.x(), apm.y(), apm.parity()));
+                long position = decodePosition(apm);
+                if (position != CprDecoder.NO_POSITION) {
+                    t.setPosition(CprDecoder.toGeoPos(position));
+                    lastPosition = position;
+                    lastPositionTimeStampNs = apm.timeStampNs();
+                }
+                // The previous messages are only needed to decode a position from a pair of messages, so that they are
+                // kept until a position is known, and again once the last one turned out to be wrong
+                if (lastPosition != CprDecoder.NO_POSITION) {
+                    previousMessageEven = null;
+                    previousMessageOdd = null;
+                } else if (apm.parity() == 0) {
+                    previousMessageEven = apm;
+                } else {
+                    previousMessageOdd = apm;
                 }
             }
             case AirborneVelocityMessage avm -> {
@@ -66,27 +129,63 @@ public class AircraftStateAccumulator<T extends AircraftStateSetter> {
             default -> System.out.println("Autre type de message.");
         }
 
-        updateLastMessage(message);
+        t.setLastMessageTimeStampNs(message.timeStampNs());
     }
 
     /**
-     * Save the actual message which will become the previous message.
+     * Decodes the position of the message, relative to the last position of the aircraft if it is recent enough and
+     * the aircraft could have flown there, else from the previous message of the other parity.
      *
-     * @param message the next previous message.
+     * @param apm the position message.
+     * @return the packed position, or {@link CprDecoder#NO_POSITION} if it could not be decoded.
      */
-    private void updateLastMessage(Message message) {
-        t.setLastMessageTimeStampNs(message.timeStampNs());
-
-        switch (message) {
-            case AirbornePositionMessage apm -> {
-                if (apm.parity() == 0) {
-                    previousMessageEven = apm;
-                } else {
-                    previousMessageOdd = apm;
-                }
-            }
-            default -> {
+    private long decodePosition(AirbornePositionMessage apm) {
+        long elapsedNs = apm.timeStampNs() - lastPositionTimeStampNs;
+        if (lastPosition != CprDecoder.NO_POSITION) {
+            if (elapsedNs <= TIME_LIMIT) {
+                long position = CprDecoder.decodeLocalPositionT32(apm.x(), apm.y(), apm.parity(), lastPosition);
+                double maxDistance = MAX_SPEED * Units.convertFrom(elapsedNs, Units.Time.NANOSECOND) + MOVE_TOLERANCE;
+                if (position != CprDecoder.NO_POSITION && distance(position, lastPosition) <= maxDistance)
+                    return position;
             }
+            // The last position is too old, or the aircraft can not have flown there so that it may be wrong, and it
+            // is decoded again from a pair of messages
+            lastPosition = CprDecoder.NO_POSITION;
         }
+
+        AirbornePositionMessage previous = apm.parity() == 0 ? previousMessageOdd : previousMessageEven;
+        if (previous == null || apm.timeStampNs() - previous.timeStampNs() > TIME_LIMIT)
+            return CprDecoder.NO_POSITION;
+
+        long position = apm.parity() == 0
+                ? CprDecoder.decodePositionT32(apm.x(), apm.y(), previous.x(), previous.y(), 0)
+                : CprDecoder.decodePositionT32(previous.x(), previous.y(), apm.x(), apm.y(), 1);
+        if (position == CprDecoder.NO_POSITION || receiverPosition == CprDecoder.NO_POSITION) return position;
+
+        long receiverRelativePosition =
+                CprDecoder.decodeLocalPositionT32(apm.x(), apm.y(), apm.parity(), receiverPosition);
+        boolean confirmed = receiverRelativePosition != CprDecoder.NO_POSITION
+                && distance(position, receiverRelativePosition) <= POSITION_TOLERANCE;
+        return confirmed && distance(position, receiverPosition) <= maxReceiverRange
+                ? position
+                : CprDecoder.NO_POSITION;
+    }
+
+    /**
+     * Returns the distance between two positions, which is precise enough for positions less than a few hundred
+     * nautical miles apart.
+     *
+     * @param position1 the first packed position.
+     * @param position2 the second packed position.
+     * @return the distance between the positions, in meters.
+     */
+    private static double distance(long position1, long position2) {
+        double latitude1 = Units.convertFrom(CprDecoder.latitudeT32(position1), Units.Angle.T32);
+        double latitude2 = Units.convertFrom(CprDecoder.latitudeT32(position2), Units.Angle.T32);
+        // The difference of the longitudes wraps around, as an int in T32
+        int longitudeDifferenceT32 = CprDecoder.longitudeT32(position1) - CprDecoder.longitudeT32(position2);
+        double longitudeDifference = Units.convertFrom(longitudeDifferenceT32, Units.Angle.T32);
+        double angle = Math.hypot(latitude1 - latitude2, longitudeDifference * Math.cos((latitude1 + latitude2) / 2));
+        return angle * METERS_PER_RADIAN;
     }
 }
@@ -0,0 +1,346 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.Units;
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe manager of the states of the aircraft, which can be updated by several threads at once.
+ * The aircraft are split in shards by their ICAO address, each shard having its own lock, so that the messages of
+ * different aircraft are applied in parallel while the messages of an aircraft are applied one after the other, in
+ * the order in which they were given. The changes of the states are recorded and handed out in batches, typically
+ * once per frame of the GUI, so that the states it displays are only modified by its own thread.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public final class AircraftStateEngine {
+    /**
+     * The number of shards used by default.
+     */
+    public static final int DEFAULT_SHARD_COUNT = 16;
+
+    private static final long ONE_MINUTE_IN_NS = Units.convert(1, Units.Time.MINUTE, Units.Time.NANOSECOND);
+    private static final int HASH_MULTIPLIER = 0x9E3779B1;
+
+    private final Shard[] shards;
+    private final int shardShift;
+    private final GeoPos receiverPosition;
+    private final double maxReceiverRange;
+    private final AtomicLong lastMessageTimeStampNs = new AtomicLong();
+
+    /**
+     * The changes of the state of an aircraft since the previous batch. Only the last value of each property is kept,
+     * so that a change has the same size whatever the number of messages it is made of, the trajectory getting at
+     * most one point per change.
+     *
+     * @param icaoAddress            the ICAO address of the aircraft
+     * @param updatedProperties      the properties which were updated, a combination of the masks of this record, 0 if
+     *                               the aircraft was removed
+     * @param lastMessageTimeStampNs the time stamp of the last message, if updated
+     * @param category               the last category, if updated
+     * @param callSign               the last call sign, if updated
+     * @param altitude               the last altitude, if updated
+     * @param position               the last position, if updated
+     * @param velocity               the last velocity, if updated
+     * @param trackOrHeading         the last track or heading, if updated
+     * @param removed                true if the aircraft was removed because no message was received from it for one
+     *                               minute
+     */
+    public record Change(IcaoAddress icaoAddress, int updatedProperties, long lastMessageTimeStampNs, int category,
+                         CallSign callSign, double altitude, GeoPos position, double velocity, double trackOrHeading,
+                         boolean removed) {
+        /**
+         * The mask of the time stamp of the last message.
+         */
+        public static final int LAST_MESSAGE_TIME_STAMP = 1;
+        /**
+         * The mask of the category.
+         */
+        public static final int CATEGORY = 1 << 1;
+        /**
+         * The mask of the call sign.
+         */
+        public static final int CALL_SIGN = 1 << 2;
+        /**
+         * The mask of the altitude.
+         */
+        public static final int ALTITUDE = 1 << 3;
+        /**
+         * The mask of the position.
+         */
+        public static final int POSITION = 1 << 4;
+        /**
+         * The mask of the velocity.
+         */
+        public static final int VELOCITY = 1 << 5;
+        /**
+         * The mask of the track or heading.
+         */
+        public static final int TRACK_OR_HEADING = 1 << 6;
+
+        /**
+         * Constructs the change of an aircraft which was removed.
+         *
+         * @param icaoAddress the ICAO address of the aircraft
+         * @return the change of the removed aircraft
+         */
+        private static Change removalOf(IcaoAddress icaoAddress) {
+            return new Change(icaoAddress, 0, 0, 0, null, Double.NaN, null, Double.NaN, Double.NaN, true);
+        }
+
+        /**
+         * Returns true if and only if the given property was updated.
+         *
+         * @param property the mask of the property
+         * @return true if the property was updated
+         */
+        public boolean isUpdated(int property) {
+            return (updatedProperties & property) != 0;
+        }
+
+        /**
+         * Applies the updated properties of the change to the given state, in the order in which the accumulator
+         * sets them for a single message, so that the altitude of the new point of the trajectory is the last one.
+         *
+         * @param stateSetter the state of the aircraft
+         */
+        public void applyTo(AircraftStateSetter stateSetter) {
+            if (isUpdated(CATEGORY)) stateSetter.setCategory(category);
+            if (isUpdated(CALL_SIGN)) stateSetter.setCallSign(callSign);
+            if (isUpdated(ALTITUDE)) stateSetter.setAltitude(altitude);
+            if (isUpdated(POSITION)) stateSetter.setPosition(position);
+            if (isUpdated(VELOCITY)) stateSetter.setVelocity(velocity);
+            if (isUpdated(TRACK_OR_HEADING)) stateSetter.setTrackOrHeading(trackOrHeading);
+            if (isUpdated(LAST_MESSAGE_TIME_STAMP)) stateSetter.setLastMessageTimeStampNs(lastMessageTimeStampNs);
+        }
+    }
+
+    /**
+     * Constructs an engine with the default number of shards.
+     *
+     * @param receiverPosition the position of the receiver, or null if it is unknown
+     */
+    public AircraftStateEngine(GeoPos receiverPosition) {
+        this(DEFAULT_SHARD_COUNT, receiverPosition);
+    }
+
+    /**
+     * Constructs an engine with the given number of shards.
+     *
+     * @param shardCount       the number of shards, a power of two
+     * @param receiverPosition the position of the receiver, or null if it is unknown
+     * @throws IllegalArgumentException if the number of shards is not a power of two
+     */
+    public AircraftStateEngine(int shardCount, GeoPos receiverPosition) {
+        this(shardCount, receiverPosition, AircraftStateAccumulator.MAX_RECEIVER_RANGE);
+    }
+
+    /**
+     * Constructs an engine with the given number of shards and range of the receiver.
+     *
+     * @param shardCount       the number of shards, a power of two
+     * @param receiverPosition the position of the receiver, or null if it is unknown
+     * @param maxReceiverRange the distance from the receiver beyond which the first position of an aircraft is
+     *                         rejected, in meters
+     * @throws IllegalArgumentException if the number of shards is not a power of two, or if the range is invalid
+     * @see AircraftStateAccumulator#AircraftStateAccumulator(AircraftStateSetter, GeoPos, double)
+     */
+    public AircraftStateEngine(int shardCount, GeoPos receiverPosition, double maxReceiverRange) {
+        Preconditions.checkArgument(shardCount > 0 && Integer.bitCount(shardCount) == 1);
+        Preconditions.checkArgument(0 < maxReceiverRange
+                && maxReceiverRange <= AircraftStateAccumulator.MAX_RECEIVER_RANGE);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; ++i) shards[i] = new Shard();
+        // The index of a shard is given by the most significant bits of the hash, a shift of 32 being a no-op
+        this.shardShift = Integer.SIZE - Integer.numberOfTrailingZeros(shardCount);
+        this.receiverPosition = receiverPosition;
+        this.maxReceiverRange = maxReceiverRange;
+    }
+
+    /**
+     * Updates the state of the aircraft with the given message, creating it if it is unknown. This method can be
+     * called by several threads at once, for example one for each receiver. The time stamps of the messages of all
+     * the threads must then be on the same clock, since the aircraft are purged relatively to the most recent message
+     * and the messages of an aircraft heard by several receivers are decoded together.
+     *
+     * @param message the message to update the state with
+     */
+    public void apply(Message message) {
+        IcaoAddress icaoAddress = message.icaoAddress();
+        lastMessageTimeStampNs.accumulateAndGet(message.timeStampNs(), Math::max);
+
+        Shard shard = shardOf(icaoAddress);
+        synchronized (shard) {
+            Track track = shard.tracks.get(icaoAddress);
+            if (track == null) {
+                track = new Track(icaoAddress, receiverPosition, maxReceiverRange);
+                shard.tracks.put(icaoAddress, track);
+            }
+            if (track.updatedProperties == 0) shard.dirtyTracks.add(track);
+            track.accumulator.update(message);
+        }
+    }
+
+    /**
+     * Removes the aircraft from which no message was received for one minute, relatively to the most recent message.
+     */
+    public void purge() {
+        long limit = lastMessageTimeStampNs.get() - ONE_MINUTE_IN_NS;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Track> iterator = shard.tracks.values().iterator();
+                while (iterator.hasNext()) {
+                    Track track = iterator.next();
+                    if (track.lastMessageTimeStampNs >= limit) continue;
+
+                    iterator.remove();
+                    if (track.updatedProperties != 0) {
+                        shard.dirtyTracks.remove(track);
+                        shard.changes.add(track.takeChange());
+                    }
+                    shard.changes.add(Change.removalOf(track.icaoAddress));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the changes of the states since the previous call, at most one for each aircraft which was updated and
+     * one for each aircraft which was removed. The changes of an aircraft are in the order in which they happened, and
+     * hold the last value of each property updated since the previous call.
+     *
+     * @return the changes of the states since the previous call
+     */
+    public List<Change> drainChanges() {
+        List<Change> changes = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                changes.addAll(shard.changes);
+                shard.changes.clear();
+                for (Track track : shard.dirtyTracks) changes.add(track.takeChange());
+                shard.dirtyTracks.clear();
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Returns the number of aircraft whose state is known.
+     *
+     * @return the number of aircraft whose state is known
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.tracks.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the shard of the aircraft of the given address.
+     *
+     * @param icaoAddress the address of the aircraft
+     * @return the shard of the aircraft
+     */
+    private Shard shardOf(IcaoAddress icaoAddress) {
+        int hash = icaoAddress.value() * HASH_MULTIPLIER;
+        return shards[shardShift == Integer.SIZE ? 0 : hash >>> shardShift];
+    }
+
+    /**
+     * The aircraft of a shard, and their changes not yet handed out. They are guarded by the lock of the shard.
+     */
+    private static final class Shard {
+        private final Map<IcaoAddress, Track> tracks = new HashMap<>();
+        // The changes of the removed aircraft, and of the updates made before they were removed
+        private final List<Change> changes = new ArrayList<>();
+        private final List<Track> dirtyTracks = new ArrayList<>();
+    }
+
+    /**
+     * The state of an aircraft, recording the last value of each property set by its accumulator.
+     */
+    private static final class Track implements AircraftStateSetter {
+        private final IcaoAddress icaoAddress;
+        private final AircraftStateAccumulator<Track> accumulator;
+        private long lastMessageTimeStampNs;
+        // The properties set since the previous change, whose last values follow
+        private int updatedProperties;
+        private int category;
+        private CallSign callSign;
+        private double altitude;
+        private GeoPos position;
+        private double velocity;
+        private double trackOrHeading;
+
+        private Track(IcaoAddress icaoAddress, GeoPos receiverPosition, double maxReceiverRange) {
+            this.icaoAddress = icaoAddress;
+            this.accumulator = new AircraftStateAccumulator<>(this, receiverPosition, maxReceiverRange);
+        }
+
+        /**
+         * Returns the change made of the properties set since the previous call, and starts a new one.
+         *
+         * @return the change made of the properties set
+         */
+        private Change takeChange() {
+            Change change = new Change(icaoAddress, updatedProperties, lastMessageTimeStampNs, category, callSign,
+                    altitude, position, velocity, trackOrHeading, false);
+            updatedProperties = 0;
+            return change;
+        }
+
+        @Override
+        public void setLastMessageTimeStampNs(long timeStampNs) {
+            lastMessageTimeStampNs = timeStampNs;
+            updatedProperties |= Change.LAST_MESSAGE_TIME_STAMP;
+        }
+
+        @Override
+        public void setCategory(int category) {
+            this.category = category;
+            updatedProperties |= Change.CATEGORY;
+        }
+
+        @Override
+        public void setCallSign(CallSign callSign) {
+            this.callSign = callSign;
+            updatedProperties |= Change.CALL_SIGN;
+        }
+
+        @Override
+        public void setPosition(GeoPos position) {
+            this.position = position;
+            updatedProperties |= Change.POSITION;
+        }
+
+        @Override
+        public void setAltitude(double altitude) {
+            this.altitude = altitude;
+            updatedProperties |= Change.ALTITUDE;
+        }
+
+        @Override
+        public void setVelocity(double velocity) {
+            this.velocity = velocity;
+            updatedProperties |= Change.VELOCITY;
+        }
+
+        @Override
+        public void setTrackOrHeading(double trackOrHeading) {
+            this.trackOrHeading = trackOrHeading;
+            updatedProperties |= Change.TRACK_OR_HEADING;
+        }
+    }
+}
@@ -4,8 +4,12 @@ import ch.epfl.javions.GeoPos;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
 
+import java.util.Arrays;
+
 /**
  * A class that decodes the CPR encoded position.
+ * The number of longitude zones of a latitude is found by a binary search in the table of the latitudes where it
+ * changes, which are computed once, so that decoding a position needs no trigonometric function.
  *
  * @author Kevan Lam (356395)
  **/
@@ -14,6 +18,33 @@ public class CprDecoder {
     private static final int Zphi1 = 59;
     private static final double majDeltaPhi0 = 1 / (double) Zphi0;
     private static final double majDeltaPhi1 = 1 / (double) Zphi1;
+    private static final double QUARTER_TURN = 0.25;
+    // The latitude (in degrees) above which there is a single longitude zone, fixed by the standard
+    private static final double POLAR_LATITUDE = 87;
+
+    /**
+     * The value returned by {@link #decodePositionT32} when the position could not be decoded. Its latitude being out
+     * of the valid range, it can not be a decoded position.
+     */
+    public static final long NO_POSITION = Long.MIN_VALUE;
+
+    // TRANSITION_LATITUDES[i] is the greatest latitude (in turns) having Zphi1 - i longitude zones, in increasing order
+    private static final double[] TRANSITION_LATITUDES = new double[Zphi1 - 1];
+    // LONGITUDE_ZONE_WIDTHS[z] is the width (in turns) of a longitude zone when there are z of them
+    private static final double[] LONGITUDE_ZONE_WIDTHS = new double[Zphi1 + 1];
+
+    static {
+        double numerator = 1 - Math.cos(2 * Math.PI * majDeltaPhi0);
+        for (int i = 0; i < TRANSITION_LATITUDES.length - 1; ++i) {
+            int zones = Zphi1 - i;
+            double latitude = Math.acos(Math.sqrt(numerator / (1 - Math.cos(2 * Math.PI / zones))));
+            TRANSITION_LATITUDES[i] = Units.convert(latitude, Units.Angle.RADIAN, Units.Angle.TURN);
+        }
+        TRANSITION_LATITUDES[TRANSITION_LATITUDES.length - 1] =
+                Units.convert(POLAR_LATITUDE, Units.Angle.DEGREE, Units.Angle.TURN);
+        for (int zones = 1; zones < LONGITUDE_ZONE_WIDTHS.length; ++zones)
+            LONGITUDE_ZONE_WIDTHS[zones] = 1.0 / zones;
+    }
 
     private CprDecoder() {
     }
@@ -33,72 +64,158 @@ public class CprDecoder {
      * @throws IllegalArgumentException if the most recent position is not 0 or 1.
      **/
     public static GeoPos decodePosition(double x0, double y0, double x1, double y1, int mostRecent) {
+        long position = decodePositionT32(x0, y0, x1, y1, mostRecent);
+        return position == NO_POSITION ? null : toGeoPos(position);
+    }
+
+    /**
+     * Decodes the CPR encoded position like {@link #decodePosition}, but returns it packed in a long, so that nothing
+     * is allocated. The latitude in T32 is in the 32 most significant bits, the longitude in T32 in the others.
+     *
+     * @param x0         The longitude of the first position.
+     * @param y0         The latitude of the first position.
+     * @param x1         The longitude of the second position.
+     * @param y1         The latitude of the second position.
+     * @param mostRecent The most recent position.
+     * @return The packed position, or {@link #NO_POSITION} if it could not be decoded.
+     * @throws IllegalArgumentException if the most recent position is not 0 or 1.
+     **/
+    public static long decodePositionT32(double x0, double y0, double x1, double y1, int mostRecent) {
         Preconditions.checkArgument(mostRecent == 0 || mostRecent == 1);
 
         double zphi = Math.rint(y0 * Zphi1 - y1 * Zphi0);
-        double zphi0, zphi1;
-        if (zphi < 0) {
-            zphi0 = zphi + Zphi0;
-            zphi1 = zphi + Zphi1;
+        double zphi0 = zphi < 0 ? zphi + Zphi0 : zphi;
+        double zphi1 = zphi < 0 ? zphi + Zphi1 : zphi;
+        double phi0 = center(majDeltaPhi0 * (zphi0 + y0));
+        double phi1 = center(majDeltaPhi1 * (zphi1 + y1));
+
+        if (Math.abs(phi0) >= QUARTER_TURN || Math.abs(phi1) >= QUARTER_TURN) return NO_POSITION;
+
+        // The aircraft changed of longitude zone count between the two messages
+        int Zlambda0 = longitudeZones(phi0);
+        if (longitudeZones(phi1) != Zlambda0) return NO_POSITION;
+
+        double delta;
+        if (Zlambda0 == 1) {
+            delta = mostRecent == 0 ? x0 : x1;
         } else {
-            zphi0 = zphi;
-            zphi1 = zphi;
+            int Zlambda1 = Zlambda0 - 1;
+            double zdelta = Math.rint(x0 * Zlambda1 - x1 * Zlambda0);
+            delta = mostRecent == 0
+                    ? LONGITUDE_ZONE_WIDTHS[Zlambda0] * ((zdelta < 0 ? zdelta + Zlambda0 : zdelta) + x0)
+                    : LONGITUDE_ZONE_WIDTHS[Zlambda1] * ((zdelta < 0 ? zdelta + Zlambda1 : zdelta) + x1);
         }
 
-        double phi0 = majDeltaPhi0 * (zphi0 + y0);
-        double phi1 = majDeltaPhi1 * (zphi1 + y1);
-        phi0 = center(phi0);
-        phi1 = center(phi1);
-        double A_0, A_1;
+        return pack(center(delta), mostRecent == 0 ? phi0 : phi1);
+    }
 
-        double argument_0 = 1 - ((1 - Math.cos(2 * Math.PI * majDeltaPhi0)) / (Math.pow((Math.cos(Units.convert(phi0, Units.Angle.TURN, Units.Angle.RADIAN))), 2)));
-        double argument_1 = 1 - ((1 - Math.cos(2 * Math.PI * majDeltaPhi0)) / (Math.pow((Math.cos(Units.convert(phi1, Units.Angle.TURN, Units.Angle.RADIAN))), 2)));
+    /**
+     * Decodes the CPR encoded position of a single message, relative to a reference position. The decoded position
+     * is the one closest to the reference, so it is only right when the aircraft is less than half a zone (about
+     * 180 nautical miles) away from the reference, which is for example its last known position or the position of
+     * the receiver.
+     *
+     * @param x         The longitude of the position.
+     * @param y         The latitude of the position.
+     * @param parity    The parity of the message (0 or 1).
+     * @param reference The packed reference position.
+     * @return The packed position, or {@link #NO_POSITION} if it could not be decoded.
+     * @throws IllegalArgumentException if the parity is not 0 or 1.
+     **/
+    public static long decodeLocalPositionT32(double x, double y, int parity, long reference) {
+        Preconditions.checkArgument(parity == 0 || parity == 1);
 
-        if (Double.isNaN(Math.acos(argument_0))) A_0 = 2 * Math.PI;
-        else A_0 = Math.acos(argument_0);
+        double referencePhi = Units.convert((double) latitudeT32(reference), Units.Angle.T32, Units.Angle.TURN);
+        double referenceDelta = Units.convert((double) longitudeT32(reference), Units.Angle.T32, Units.Angle.TURN);
 
-        if (Double.isNaN(Math.acos(argument_1))) A_1 = 2 * Math.PI;
-        else A_1 = Math.acos(argument_1);
+        // The latitude zone is the one whose position of the message is the closest to the reference
+        double majDeltaPhi = parity == 0 ? majDeltaPhi0 : majDeltaPhi1;
+        double zphi = Math.floor(referencePhi / majDeltaPhi - y + 0.5);
+        double phi = majDeltaPhi * (zphi + y);
+        if (Math.abs(phi) >= QUARTER_TURN) return NO_POSITION;
 
-        double Zlambda = Math.floor(2 * Math.PI / A_1);
-        double Zlambda0 = Math.floor(2 * Math.PI / A_0);
+        int Zlambda = Math.max(longitudeZones(phi) - parity, 1);
+        double zdelta = Math.floor(referenceDelta * Zlambda - x + 0.5);
+        double delta = LONGITUDE_ZONE_WIDTHS[Zlambda] * (zdelta + x);
 
-        if (Zlambda != Zlambda0) return null;
-//TODO: Latitude not check two
-        double Zlambda1 = Zlambda0 - 1;
-        double zdelta = Math.rint(x0 * Zlambda1 - x1 * Zlambda0);
-        double zdelta0, zdelta1, delta0 = 0, delta1 = 0;
-        double majDeltaLambda0 = 1.0 / Zlambda0;
-        double majDeltaLambda1 = 1.0 / Zlambda1;
+        return pack(delta - Math.floor(delta + 0.5), phi);
+    }
 
-        if (Zlambda0 == 1) {
-            delta0 = x0;
-            delta1 = x1;
-        } else if (Zlambda0 > 1) {
-            if (zdelta < 0) {
-                zdelta0 = zdelta + Zlambda0;
-                zdelta1 = zdelta + Zlambda1;
-            } else {
-                zdelta0 = zdelta;
-                zdelta1 = zdelta;
-            }
-            delta0 = majDeltaLambda0 * (zdelta0 + x0);
-            delta1 = majDeltaLambda1 * (zdelta1 + x1);
-        }
+    /**
+     * Packs a position in a long, the latitude in T32 in the 32 most significant bits and the longitude in T32 in
+     * the others.
+     *
+     * @param delta The longitude, in turns, between -0.5 and 0.5.
+     * @param phi   The latitude, in turns, between -0.25 and 0.25.
+     * @return The packed position.
+     */
+    private static long pack(double delta, double phi) {
+        int latitudeT32 = (int) Math.rint(Units.convert(phi, Units.Angle.TURN, Units.Angle.T32));
+        int longitudeT32 = (int) Math.rint(Units.convert(delta, Units.Angle.TURN, Units.Angle.T32));
+        return pack(longitudeT32, latitudeT32);
+    }
+
+    /**
+     * Packs a position in a long, the latitude in the 32 most significant bits and the longitude in the others.
+     *
+     * @param longitudeT32 The longitude in T32.
+     * @param latitudeT32  The latitude in T32.
+     * @return The packed position.
+     */
+    private static long pack(int longitudeT32, int latitudeT32) {
+        return ((long) latitudeT32 << Integer.SIZE) | Integer.toUnsignedLong(longitudeT32);
+    }
 
-        delta0 = center(delta0);
-        delta1 = center(delta1);
-        phi0 = Units.convert(phi0, Units.Angle.TURN, Units.Angle.T32);
-        phi1 = Units.convert(phi1, Units.Angle.TURN, Units.Angle.T32);
-        delta0 = Units.convert(delta0, Units.Angle.TURN, Units.Angle.T32);
-        delta1 = Units.convert(delta1, Units.Angle.TURN, Units.Angle.T32);
-
-        if (Units.convert(phi0, Units.Angle.T32, Units.Angle.DEGREE) >= 90 || Units.convert(phi0, Units.Angle.T32, Units.Angle.DEGREE) <= -90)
-            return null;
-        else if (Units.convert(phi1, Units.Angle.T32, Units.Angle.DEGREE) >= 90 || Units.convert(phi1, Units.Angle.T32, Units.Angle.DEGREE) <= -90)
-            return null;
-        else if (mostRecent == 0) return new GeoPos((int) Math.rint(delta0), (int) Math.rint(phi0));
-        else return new GeoPos((int) Math.rint(delta1), (int) Math.rint(phi1));
+    /**
+     * Returns the number of longitude zones at the given latitude, between 1 and 59.
+     *
+     * @param latitude the latitude, in turns
+     * @return the number of longitude zones at the latitude
+     */
+    static int longitudeZones(double latitude) {
+        int index = Arrays.binarySearch(TRANSITION_LATITUDES, Math.abs(latitude));
+        int greaterTransitions = TRANSITION_LATITUDES.length - (index >= 0 ? index : -index - 1);
+        return 1 + greaterTransitions;
+    }
+
+    /**
+     * Returns the longitude in T32 of a packed position.
+     *
+     * @param position the packed position
+     * @return the longitude in T32 of the position
+     */
+    public static int longitudeT32(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Returns the latitude in T32 of a packed position.
+     *
+     * @param position the packed position
+     * @return the latitude in T32 of the position
+     */
+    public static int latitudeT32(long position) {
+        return (int) (position >> Integer.SIZE);
+    }
+
+    /**
+     * Returns the packed form of a GeoPos.
+     *
+     * @param geoPos the position
+     * @return the packed position
+     */
+    public static long ofGeoPos(GeoPos geoPos) {
+        return pack(geoPos.longitudeT32(), geoPos.latitudeT32());
+    }
+
+    /**
+     * Returns the GeoPos of a packed position.
+     *
+     * @param position the packed position, which is not {@link #NO_POSITION}
+     * @return the GeoPos of the position
+     */
+    public static GeoPos toGeoPos(long position) {
+        return new GeoPos(longitudeT32(position), latitudeT32(position));
     }
 
     /**
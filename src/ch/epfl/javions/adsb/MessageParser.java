@@ -1,24 +1,87 @@
 package ch.epfl.javions.adsb;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import ch.epfl.javions.aircraft.IcaoAddress;
 
 /**
  * A RawMessage parser depending on the type code.
+ * The decoder of each type code is found in a table indexed by the type code. The messages can either be built as
+ * {@link Message} records, or be given field by field to a {@link Visitor}, which allocates nothing for the position
+ * and velocity messages.
  *
  * @author Mateo Tiedra (356525)
  */
 public class MessageParser {
-    private static final int AIRCRAFT_IDENTIFICATION_MESSAGE_TYPE_CODE_MIN = 1;
-    private static final int AIRCRAFT_IDENTIFICATION_MESSAGE_TYPE_CODE_MAX = 4;
-    private static final Set<Integer> AIRBORNE_POSITION_MESSAGE_TYPE_CODES = new HashSet<>(Arrays.asList(9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 20, 21, 22));
+    private static final int TYPE_CODES = 1 << 5;
+    private static final Decoder[] DECODERS = new Decoder[TYPE_CODES];
 
-    private static final int AIRBORNE_VELOCITY_MESSAGE_TYPE_CODE = 19;
+    static {
+        for (int typeCode = 1; typeCode <= 4; ++typeCode)
+            DECODERS[typeCode] = AircraftIdentificationMessage::decode;
+        for (int typeCode : new int[]{9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 20, 21, 22})
+            DECODERS[typeCode] = AirbornePositionMessage::decode;
+        DECODERS[19] = AirborneVelocityMessage::decode;
+    }
 
     private MessageParser() {
     }
 
+    /**
+     * A sink receiving the fields of the decoded messages, one method for each type of message.
+     */
+    public interface Visitor {
+        /**
+         * Receives the fields of an aircraft identification message.
+         *
+         * @param timeStampNs the time stamp of the message
+         * @param icaoAddress the 24 bits of the ICAO address of the aircraft
+         * @param category    the category of the aircraft
+         * @param callSign    the call sign of the aircraft
+         */
+        void identification(long timeStampNs, int icaoAddress, int category, CallSign callSign);
+
+        /**
+         * Receives the fields of an airborne position message.
+         *
+         * @param timeStampNs the time stamp of the message
+         * @param icaoAddress the 24 bits of the ICAO address of the aircraft
+         * @param altitude    the altitude of the aircraft in meters
+         * @param parity      the parity of the message
+         * @param x           the local and normalized longitude
+         * @param y           the local and normalized latitude
+         */
+        void position(long timeStampNs, int icaoAddress, double altitude, int parity, double x, double y);
+
+        /**
+         * Receives the fields of an airborne velocity message.
+         *
+         * @param timeStampNs    the time stamp of the message
+         * @param icaoAddress    the 24 bits of the ICAO address of the aircraft
+         * @param speed          the speed of the aircraft in meters per second
+         * @param trackOrHeading     the angle between the direction and the north clockwise, in radians
+         * @param verticalRate       the vertical rate of the aircraft in meters per second, NaN if unknown
+         * @param gnssBaroDifference the difference between the GNSS and the barometric altitudes in meters,
+         *                           NaN if unknown
+         */
+        void velocity(long timeStampNs, int icaoAddress, double speed, double trackOrHeading, double verticalRate,
+                      double gnssBaroDifference);
+    }
+
+    /**
+     * The decoder of the messages of a type code.
+     */
+    @FunctionalInterface
+    interface Decoder {
+        /**
+         * Decodes a message and gives its fields to the visitor if it is valid.
+         *
+         * @param timeStampNs the time stamp of the message
+         * @param icaoAddress the 24 bits of the ICAO address of the aircraft
+         * @param payload     the ME attribute of the message
+         * @param visitor     the visitor receiving the fields of the message
+         * @return true if the message was valid and given to the visitor
+         */
+        boolean decode(long timeStampNs, int icaoAddress, long payload, Visitor visitor);
+    }
 
     /**
      * Parse a raw message into a message.
@@ -27,16 +90,58 @@ public class MessageParser {
      * @return the parsed message.
      */
     public static Message parse(RawMessage rawMessage) {
-        int typeCode = rawMessage.typeCode();
-
-        if (typeCode >= AIRCRAFT_IDENTIFICATION_MESSAGE_TYPE_CODE_MIN && typeCode <= AIRCRAFT_IDENTIFICATION_MESSAGE_TYPE_CODE_MAX) {
-            return AircraftIdentificationMessage.of(rawMessage);
-        } else if (AIRBORNE_POSITION_MESSAGE_TYPE_CODES.contains(typeCode)) {
-            return AirbornePositionMessage.of(rawMessage);
-        } else if (typeCode == AIRBORNE_VELOCITY_MESSAGE_TYPE_CODE) {
-            return AirborneVelocityMessage.of(rawMessage);
+        MessageBuilder builder = new MessageBuilder();
+        return parse(rawMessage.payload(), rawMessage.icaoAddress().value(), rawMessage.timeStampNs(), builder)
+                ? builder.message
+                : null;
+    }
+
+    /**
+     * Parse a packed raw message, giving its fields to the visitor.
+     *
+     * @param rawMessage the packed raw message to parse
+     * @param visitor    the visitor receiving the fields of the message
+     * @return true if the message was valid and given to the visitor
+     */
+    public static boolean parse(PackedRawMessage rawMessage, Visitor visitor) {
+        return parse(rawMessage.payload(), rawMessage.icaoAddress(), rawMessage.timeStampNs(), visitor);
+    }
+
+    /**
+     * Parse the ME attribute of a message, giving its fields to the visitor.
+     *
+     * @param payload     the ME attribute of the message
+     * @param icaoAddress the 24 bits of the ICAO address of the aircraft
+     * @param timeStampNs the time stamp of the message
+     * @param visitor     the visitor receiving the fields of the message
+     * @return true if the message was valid and given to the visitor, false if it was invalid or of an unknown type
+     */
+    public static boolean parse(long payload, int icaoAddress, long timeStampNs, Visitor visitor) {
+        Decoder decoder = DECODERS[RawMessage.typeCode(payload)];
+        return decoder != null && decoder.decode(timeStampNs, icaoAddress, payload, visitor);
+    }
+
+    /**
+     * A visitor building the message records, used to parse a raw message into a message.
+     */
+    static final class MessageBuilder implements Visitor {
+        Message message;
+
+        @Override
+        public void identification(long timeStampNs, int icaoAddress, int category, CallSign callSign) {
+            message = new AircraftIdentificationMessage(timeStampNs, IcaoAddress.ofInt(icaoAddress), category, callSign);
         }
 
-        return null;
+        @Override
+        public void position(long timeStampNs, int icaoAddress, double altitude, int parity, double x, double y) {
+            message = new AirbornePositionMessage(timeStampNs, IcaoAddress.ofInt(icaoAddress), altitude, parity, x, y);
+        }
+
+        @Override
+        public void velocity(long timeStampNs, int icaoAddress, double speed, double trackOrHeading,
+                             double verticalRate, double gnssBaroDifference) {
+            message = new AirborneVelocityMessage(timeStampNs, IcaoAddress.ofInt(icaoAddress), speed, trackOrHeading,
+                    verticalRate, gnssBaroDifference);
+        }
     }
 }
@@ -0,0 +1,117 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded queue of messages, handing the messages parsed by the thread reading a receiver to the thread applying
+ * them. When the queue is full, the overflow policy decides which message is lost, if any, and the lost
+ * messages are counted.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public final class MessageQueue {
+    private final ArrayBlockingQueue<Message> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * What to do with a message put in a full queue.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits until there is room in the queue, which slows the reader down. Suited to the reading of a file.
+         */
+        BLOCK,
+        /**
+         * Drops the new message.
+         */
+        DROP_NEWEST,
+        /**
+         * Drops the oldest message of the queue to make room for the new one, which keeps the most recent messages.
+         * Suited to a live receiver, which must not be slowed down.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity       the maximum number of messages in the queue
+     * @param overflowPolicy what to do with a message put in a full queue
+     * @throws IllegalArgumentException if the capacity is not strictly positive
+     */
+    public MessageQueue(int capacity, OverflowPolicy overflowPolicy) {
+        Preconditions.checkArgument(capacity > 0);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    /**
+     * Puts a message at the end of the queue, following the overflow policy if it is full.
+     *
+     * @param message the message
+     * @throws InterruptedException if the thread is interrupted while waiting for room in the queue
+     */
+    public void put(Message message) throws InterruptedException {
+        Objects.requireNonNull(message);
+        receivedCount.increment();
+        switch (overflowPolicy) {
+            case BLOCK -> queue.put(message);
+            case DROP_NEWEST -> {
+                if (!queue.offer(message)) droppedCount.increment();
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(message)) {
+                    if (queue.poll() != null) droppedCount.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the queue is not empty, then removes at most the given number of messages from it.
+     *
+     * @param messages    the collection receiving the messages, in the order of the queue
+     * @param maxMessages the maximum number of messages to remove
+     * @return the number of messages removed, at least one
+     * @throws InterruptedException if the thread is interrupted while waiting for a message
+     */
+    public int takeBatch(Collection<? super Message> messages, int maxMessages) throws InterruptedException {
+        Preconditions.checkArgument(maxMessages > 0);
+        messages.add(queue.take());
+        return 1 + queue.drainTo(messages, maxMessages - 1);
+    }
+
+    /**
+     * Returns the number of messages in the queue.
+     *
+     * @return the number of messages in the queue
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of messages put in the queue, including the dropped ones.
+     *
+     * @return the number of messages put in the queue
+     */
+    public long receivedCount() {
+        return receivedCount.sum();
+    }
+
+    /**
+     * Returns the number of messages dropped because the queue was full.
+     *
+     * @return the number of messages dropped
+     */
+    public long droppedCount() {
+        return droppedCount.sum();
+    }
+}
@@ -0,0 +1,115 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.ByteString;
+import ch.epfl.javions.Crc24;
+import ch.epfl.javions.Preconditions;
+
+/**
+ * Represents a raw ADS-B message packed in two longs. Unlike {@link RawMessage}, it holds no array, and its
+ * attributes are extracted with shifts, without allocating anything.
+ *
+ * @param timeStampNs the time stamp of the message
+ * @param high        the six first bytes of the message, in the 48 least significant bits
+ * @param low         the eight last bytes of the message
+ * @author Mateo Tiedra (356525)
+ */
+public record PackedRawMessage(long timeStampNs, long high, long low) {
+    private static final int HIGH_LENGTH = RawMessage.LENGTH - Long.BYTES;
+    private static final int HIGH_BITS = HIGH_LENGTH * Byte.SIZE;
+
+    private static final int DF_START = 43;
+    private static final int ICAO_ADDRESS_START = 16;
+    private static final int ICAO_ADDRESS_MASK = (1 << 24) - 1;
+    // The ME attribute is made of the two last bytes of high and of the five first bytes of low
+    private static final int PAYLOAD_BITS_IN_HIGH = 16;
+    private static final int PAYLOAD_START_IN_LOW = 24;
+    private static final int PAYLOAD_BITS_IN_LOW = Long.SIZE - PAYLOAD_START_IN_LOW;
+
+    private static final Crc24 CRC24 = new Crc24(Crc24.GENERATOR);
+
+    public PackedRawMessage {
+        Preconditions.checkArgument(timeStampNs >= 0 && (high >>> HIGH_BITS) == 0);
+    }
+
+    /**
+     * Returns a PackedRawMessage object if the message is valid (depending on the Crc24).
+     *
+     * @param timeStampNs the time stamp of the message
+     * @param bytes       the bytes of the message
+     * @return a PackedRawMessage object if the message is valid, null otherwise
+     * @throws IllegalArgumentException if the message is not 14 bytes long
+     */
+    public static PackedRawMessage of(long timeStampNs, byte[] bytes) {
+        Preconditions.checkArgument(bytes.length == RawMessage.LENGTH);
+
+        long high = 0, low = 0;
+        for (int i = 0; i < HIGH_LENGTH; ++i)
+            high = (high << Byte.SIZE) | Byte.toUnsignedLong(bytes[i]);
+        for (int i = HIGH_LENGTH; i < RawMessage.LENGTH; ++i)
+            low = (low << Byte.SIZE) | Byte.toUnsignedLong(bytes[i]);
+
+        return CRC24.crc(high, low) == 0 ? new PackedRawMessage(timeStampNs, high, low) : null;
+    }
+
+    /**
+     * Returns the packed form of the given message.
+     *
+     * @param rawMessage the message
+     * @return the packed form of the message
+     */
+    public static PackedRawMessage of(RawMessage rawMessage) {
+        ByteString bytes = rawMessage.bytes();
+        return new PackedRawMessage(rawMessage.timeStampNs(),
+                bytes.bytesInRange(0, HIGH_LENGTH), bytes.bytesInRange(HIGH_LENGTH, RawMessage.LENGTH));
+    }
+
+    /**
+     * Returns the DF attribute of the message.
+     *
+     * @return the DF attribute of the message
+     */
+    public int downLinkFormat() {
+        return (int) (high >>> DF_START);
+    }
+
+    /**
+     * Returns the ICAO address of the message, as the 24 bits of an int.
+     *
+     * @return the ICAO address of the message
+     */
+    public int icaoAddress() {
+        return (int) (high >>> ICAO_ADDRESS_START) & ICAO_ADDRESS_MASK;
+    }
+
+    /**
+     * Returns the ME attribute of the message.
+     *
+     * @return the ME attribute of the message
+     */
+    public long payload() {
+        return ((high & ((1L << PAYLOAD_BITS_IN_HIGH) - 1)) << PAYLOAD_BITS_IN_LOW) | (low >>> PAYLOAD_START_IN_LOW);
+    }
+
+    /**
+     * Returns the type code of the message.
+     *
+     * @return the type code of the message
+     */
+    public int typeCode() {
+        return RawMessage.typeCode(payload());
+    }
+
+    /**
+     * Returns the message as a RawMessage, for the code that needs its bytes.
+     *
+     * @return the message as a RawMessage
+     */
+    public RawMessage toRawMessage() {
+        byte[] bytes = new byte[RawMessage.LENGTH];
+        for (int i = 0; i < HIGH_LENGTH; ++i)
+            bytes[i] = (byte) (high >>> (HIGH_BITS - Byte.SIZE * (i + 1)));
+        for (int i = 0; i < Long.BYTES; ++i)
+            bytes[HIGH_LENGTH + i] = (byte) (low >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+        return new RawMessage(timeStampNs, new ByteString(bytes));
+    }
+}
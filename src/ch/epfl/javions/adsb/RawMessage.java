@@ -22,6 +22,8 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
 
     private static final int FIVE_BITS_MASK = 0b11111;
 
+    private static final Crc24 CRC24 = new Crc24(Crc24.GENERATOR);
+
     public RawMessage {
         Preconditions.checkArgument(timeStampNs >= 0 && bytes.size() == LENGTH);
     }
@@ -34,9 +36,7 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      * @return a RawMessage object if the message is valid, null otherwise
      */
     public static RawMessage of(long timeStampNs, byte[] bytes) {
-        Crc24 crc24 = new Crc24(Crc24.GENERATOR);
-
-        return (crc24.crc(bytes) == 0) ? new RawMessage(timeStampNs, new ByteString(bytes)) : null;
+        return (CRC24.crc(bytes) == 0) ? new RawMessage(timeStampNs, new ByteString(bytes)) : null;
     }
 
     /**
@@ -74,7 +74,7 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      * @return the ICAO address of the message
      */
     public IcaoAddress icaoAddress() {
-        return new IcaoAddress(bytes.toString().substring(2, 8));
+        return IcaoAddress.ofInt((int) bytes.bytesInRange(1, 4));
     }
 
     /**
@@ -0,0 +1,147 @@
+package ch.epfl.javions.aircraft;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Loads the aircraft data of the database in the background, so that the thread asking for them is never blocked.
+ * The data of the recently asked aircraft are kept in a cache, as are the addresses which are not in the database,
+ * both of them forgetting the least recently asked aircraft first. An aircraft asked for again while its data are
+ * being loaded shares the same lookup.
+ *
+ * @author Kevan Lam (356395)
+ */
+public final class AircraftDataLoader implements AutoCloseable {
+    /**
+     * The default number of aircraft kept in each cache.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+
+    private final AircraftDatabase database;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Map<IcaoAddress, AircraftData> knownAircraft;
+    private final Map<IcaoAddress, Boolean> unknownAircraft;
+    private final Map<IcaoAddress, CompletableFuture<AircraftData>> pendingLookups = new HashMap<>();
+
+    /**
+     * Constructs a loader of the given database, which looks the aircraft up on virtual threads.
+     *
+     * @param database the database
+     */
+    public AircraftDataLoader(AircraftDatabase database) {
+        this(database, DEFAULT_CAPACITY, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    /**
+     * Constructs a loader of the given database, which looks the aircraft up with the given executor.
+     *
+     * @param database the database
+     * @param capacity the maximum number of aircraft kept in each cache
+     * @param executor the executor looking the aircraft up
+     * @throws IllegalArgumentException if the capacity is not strictly positive
+     */
+    public AircraftDataLoader(AircraftDatabase database, int capacity, Executor executor) {
+        this(database, capacity, executor, false);
+    }
+
+    private AircraftDataLoader(AircraftDatabase database, int capacity, Executor executor, boolean ownsExecutor) {
+        Preconditions.checkArgument(capacity > 0);
+        this.database = Objects.requireNonNull(database);
+        this.executor = Objects.requireNonNull(executor);
+        this.ownsExecutor = ownsExecutor;
+        this.knownAircraft = leastRecentlyUsedMap(capacity);
+        this.unknownAircraft = leastRecentlyUsedMap(capacity);
+    }
+
+    /**
+     * Returns a map in access order, which removes its least recently used entry once it holds more than the given
+     * number of entries.
+     *
+     * @param capacity the maximum number of entries of the map
+     * @return the map
+     */
+    private static <K, V> Map<K, V> leastRecentlyUsedMap(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the future aircraft data of the given address. The future is already completed if the aircraft is in
+     * one of the caches, otherwise it is completed once the aircraft is looked up in the database. A lookup which
+     * fails completes the future exceptionally and is not cached, so that the aircraft is looked up again the next
+     * time it is asked for.
+     *
+     * @param address the ICAO address of the aircraft
+     * @return the future aircraft data, completed with null if the aircraft is not in the database
+     */
+    public CompletableFuture<AircraftData> get(IcaoAddress address) {
+        CompletableFuture<AircraftData> lookup;
+        synchronized (this) {
+            AircraftData data = knownAircraft.get(address);
+            if (data != null) return CompletableFuture.completedFuture(data);
+            if (unknownAircraft.containsKey(address)) return CompletableFuture.completedFuture(null);
+
+            lookup = pendingLookups.get(address);
+            if (lookup != null) return lookup;
+            lookup = new CompletableFuture<>();
+            pendingLookups.put(address, lookup);
+        }
+
+        CompletableFuture<AircraftData> newLookup = lookup;
+        try {
+            executor.execute(() -> lookUp(address, newLookup));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                pendingLookups.remove(address);
+            }
+            lookup.completeExceptionally(e);
+        }
+        return lookup;
+    }
+
+    /**
+     * Looks the given aircraft up in the database, caches the result and completes the future with it.
+     *
+     * @param address the ICAO address of the aircraft
+     * @param lookup  the future aircraft data
+     */
+    private void lookUp(IcaoAddress address, CompletableFuture<AircraftData> lookup) {
+        try {
+            AircraftData data = database.get(address);
+            synchronized (this) {
+                pendingLookups.remove(address);
+                if (data != null) knownAircraft.put(address, data);
+                else unknownAircraft.put(address, Boolean.TRUE);
+            }
+            lookup.complete(data);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                pendingLookups.remove(address);
+            }
+            lookup.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stops the executor looking the aircraft up, if it was created by this loader.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) ((ExecutorService) executor).shutdown();
+    }
+}
@@ -1,46 +1,102 @@
 package ch.epfl.javions.aircraft;
 
-import java.io.*;
-import java.util.Objects;
-import java.util.zip.ZipFile;
+import ch.epfl.javions.Units;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
 
 /**
  * Represents a database of aircraft data, which can be quiered by using the ICAO address.
+ * The zip file of the database is converted once into an index, which is kept on disk and memory-mapped, so that a
+ * query is a binary search rather than the scan of a compressed file. The index is only built again if the zip file
+ * changes. If the index cannot be opened, the failure is remembered for a delay doubling with each failure, so that the
+ * lookups made meanwhile fail at once instead of scanning the zip file again.
  *
  * @author Kevan Lam (356395)
  **/
 public final class AircraftDatabase {
-    private final String fileName;
+    /**
+     * The delay after the first failure to open the index during which it is not opened again, in nanoseconds.
+     */
+    static final long FIRST_RETRY_DELAY_NS = Units.convert(1, Units.Time.SECOND, Units.Time.NANOSECOND);
+    private static final long MAX_RETRY_DELAY_NS = Units.convert(1, Units.Time.MINUTE, Units.Time.NANOSECOND);
+
+    private final Path zipFile;
+    private final Path indexFile;
+    private volatile AircraftIndex index;
+    // The last failure to open the index, and when it can be opened again, guarded by the lock of the database
+    private IOException openFailure;
+    private long nextOpenNs;
+    private long retryDelayNs = FIRST_RETRY_DELAY_NS;
 
+    /**
+     * Constructs the database of the given zip file, with its index in the temporary directory.
+     *
+     * @param fileName the name of the zip file of the database
+     */
     public AircraftDatabase(String fileName) {
-        this.fileName = Objects.requireNonNull(fileName);
+        this(fileName, AircraftIndex.defaultIndexFile(Path.of(Objects.requireNonNull(fileName))));
     }
 
     /**
-     * Returns the aircraft data corresponding to the given ICAO address.
+     * Constructs the database of the given zip file, with its index in the given file.
+     *
+     * @param fileName  the name of the zip file of the database
+     * @param indexFile the index file, built if it does not exist or was built from another zip file
+     */
+    public AircraftDatabase(String fileName, Path indexFile) {
+        this.zipFile = Path.of(Objects.requireNonNull(fileName));
+        this.indexFile = Objects.requireNonNull(indexFile);
+    }
+
+    /**
+     * Returns the aircraft data corresponding to the given ICAO address. The index is opened, and built if need be,
+     * by the first call.
      *
      * @param address the ICAO address of the aircraft
      * @return the aircraft data corresponding to the given ICAO address
      * @throws IOException if an I/O error occurs
      */
     public AircraftData get(IcaoAddress address) throws IOException {
-        String filename = address.string().substring(4, 6) + ".csv";
-        try (ZipFile zipFile = new ZipFile(fileName);
-             InputStream s = zipFile.getInputStream(zipFile.getEntry(filename));
-             Reader r = new InputStreamReader(s, UTF_8);
-             BufferedReader b = new BufferedReader(r)) {
-            String l;
-            while ((l = b.readLine()) != null && l.substring(0, 6).compareTo(address.string()) <= 0) {
-                if (l.startsWith(address.string())) {
-                    String[] aircraftString = l.split(",", -1);
-                    return new AircraftData(new AircraftRegistration(aircraftString[1]),
-                            new AircraftTypeDesignator(aircraftString[2]), aircraftString[3],
-                            new AircraftDescription(aircraftString[4]), WakeTurbulenceCategory.of(aircraftString[5]));
+        String record = index().record(address.value());
+        if (record == null) return null;
+
+        String[] aircraftString = record.split(",", -1);
+        return new AircraftData(new AircraftRegistration(aircraftString[0]),
+                new AircraftTypeDesignator(aircraftString[1]), aircraftString[2],
+                new AircraftDescription(aircraftString[3]), WakeTurbulenceCategory.of(aircraftString[4]));
+    }
+
+    /**
+     * Returns the index of the database, opening it if it is not yet and the last failure to open it is old enough.
+     *
+     * @return the index of the database
+     * @throws IOException if an I/O error occurs, or the last failure to open the index is too recent, this failure
+     *                     being then the cause of the exception
+     */
+    private AircraftIndex index() throws IOException {
+        AircraftIndex i = index;
+        if (i == null) {
+            synchronized (this) {
+                i = index;
+                if (i == null) {
+                    long now = System.nanoTime();
+                    if (openFailure != null && now - nextOpenNs < 0)
+                        throw new IOException("The aircraft index could not be opened", openFailure);
+                    try {
+                        i = AircraftIndex.open(zipFile, indexFile);
+                    } catch (IOException e) {
+                        openFailure = e;
+                        nextOpenNs = now + retryDelayNs;
+                        retryDelayNs = Math.min(2 * retryDelayNs, MAX_RETRY_DELAY_NS);
+                        throw e;
+                    }
+                    openFailure = null;
+                    index = i;
                 }
             }
         }
-        return null;
+        return i;
     }
-}
\ No newline at end of file
+}
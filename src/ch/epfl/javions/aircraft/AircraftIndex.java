@@ -0,0 +1,239 @@
+package ch.epfl.javions.aircraft;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A memory-mapped index of the aircraft database, built once from its zip file.
+ * The index file starts with a header identifying the zip file it was built from, followed by the sorted ICAO
+ * addresses of the aircraft, the offsets of their records, and the records themselves, which are the lines of the
+ * database without the address. An address is found by a binary search in the mapped file, so that neither the zip
+ * file nor the lines of the other aircraft are read.
+ *
+ * @author Kevan Lam (356395)
+ */
+final class AircraftIndex {
+    private static final int MAGIC = 0x4A41_5649; // "JAVI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final int COUNT_POSITION = HEADER_SIZE - Integer.BYTES;
+    private static final int ADDRESS_LENGTH = 6;
+    private static final int MAX_RECORD_LENGTH = (1 << Short.SIZE) - 1;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int offsetsStart;
+    private final int recordsStart;
+
+    private AircraftIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(COUNT_POSITION);
+        this.offsetsStart = HEADER_SIZE + count * Integer.BYTES;
+        this.recordsStart = offsetsStart + count * Integer.BYTES;
+    }
+
+    /**
+     * Returns the default index file of the given zip file, in the temporary directory.
+     *
+     * @param zipFile the zip file of the database
+     * @return the default index file
+     */
+    static Path defaultIndexFile(Path zipFile) {
+        Path absolute = zipFile.toAbsolutePath();
+        String name = "javions-" + absolute.getFileName() + "-" + Integer.toHexString(absolute.hashCode()) + ".index";
+        return Path.of(System.getProperty("java.io.tmpdir"), name);
+    }
+
+    /**
+     * Opens the index of the given zip file, building it first if the index file does not exist or was built from
+     * another version of the zip file.
+     *
+     * @param zipFile   the zip file of the database
+     * @param indexFile the index file
+     * @return the index
+     * @throws IOException if an I/O error occurs
+     */
+    static AircraftIndex open(Path zipFile, Path indexFile) throws IOException {
+        long zipSize = Files.size(zipFile);
+        long zipLastModified = Files.getLastModifiedTime(zipFile).toMillis();
+
+        ByteBuffer buffer = Files.exists(indexFile) ? map(indexFile) : null;
+        if (buffer == null || !isIndexOf(buffer, zipSize, zipLastModified)) {
+            build(zipFile, indexFile, zipSize, zipLastModified);
+            buffer = map(indexFile);
+        }
+        return new AircraftIndex(buffer);
+    }
+
+    /**
+     * Returns the record of the aircraft of the given address, which is its line in the database without the address
+     * and the comma following it.
+     *
+     * @param address the 24 bits of the ICAO address
+     * @return the record of the aircraft, or null if it is not in the database
+     */
+    String record(int address) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleAddress = buffer.getInt(HEADER_SIZE + middle * Integer.BYTES);
+            if (middleAddress < address) {
+                low = middle + 1;
+            } else if (middleAddress > address) {
+                high = middle - 1;
+            } else {
+                int position = recordsStart + buffer.getInt(offsetsStart + middle * Integer.BYTES);
+                int length = Short.toUnsignedInt(buffer.getShort(position));
+                byte[] bytes = new byte[length];
+                buffer.get(position + Short.BYTES, bytes);
+                return new String(bytes, UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of aircraft in the index.
+     *
+     * @return the number of aircraft in the index
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Maps the given index file in memory.
+     *
+     * @param indexFile the index file
+     * @return the mapped file, or null if it is too short to be an index
+     * @throws IOException if an I/O error occurs
+     */
+    private static ByteBuffer map(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return null;
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks if the mapped index was built from the zip file of the given size and modification time.
+     *
+     * @param buffer          the mapped index
+     * @param zipSize         the size of the zip file
+     * @param zipLastModified the modification time of the zip file
+     * @return true if the index was built from the zip file
+     */
+    private static boolean isIndexOf(ByteBuffer buffer, long zipSize, long zipLastModified) {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(Integer.BYTES) == VERSION
+                && buffer.getLong(2 * Integer.BYTES) == zipSize
+                && buffer.getLong(2 * Integer.BYTES + Long.BYTES) == zipLastModified;
+    }
+
+    /**
+     * Builds the index of the given zip file. It is written to a temporary file which then replaces the index file,
+     * so that an incomplete index is never used.
+     *
+     * @param zipFile         the zip file of the database
+     * @param indexFile       the index file
+     * @param zipSize         the size of the zip file
+     * @param zipLastModified the modification time of the zip file
+     * @throws IOException if an I/O error occurs
+     */
+    private static void build(Path zipFile, Path indexFile, long zipSize, long zipLastModified) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        // The address of each line in the 32 most significant bits, its index in the 32 others, so that sorting
+        // keeps the first line of an address first
+        long[] keys = new long[1 << 10];
+
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) continue;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(entry), UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.length() <= ADDRESS_LENGTH || line.charAt(ADDRESS_LENGTH) != ','
+                                || !isAddress(line)) continue;
+                        byte[] record = line.substring(ADDRESS_LENGTH + 1).getBytes(UTF_8);
+                        if (record.length > MAX_RECORD_LENGTH) continue;
+
+                        if (records.size() == keys.length) keys = Arrays.copyOf(keys, 2 * keys.length);
+                        long address = HexFormat.fromHexDigits(line, 0, ADDRESS_LENGTH);
+                        keys[records.size()] = (address << Integer.SIZE) | records.size();
+                        records.add(record);
+                    }
+                }
+            }
+        }
+        keys = Arrays.copyOf(keys, records.size());
+        Arrays.sort(keys);
+
+        // The lines of an address after the first one are ignored, as they were by the search in the zip file
+        int count = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            if (i == 0 || (keys[i] >>> Integer.SIZE) != (keys[i - 1] >>> Integer.SIZE)) keys[count++] = keys[i];
+        }
+
+        Path temporaryFile = Files.createTempFile(indexFile.toAbsolutePath().getParent(), "javions", ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temporaryFile);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(zipSize);
+                output.writeLong(zipLastModified);
+                output.writeInt(count);
+                for (int i = 0; i < count; ++i) output.writeInt((int) (keys[i] >>> Integer.SIZE));
+                int offset = 0;
+                for (int i = 0; i < count; ++i) {
+                    output.writeInt(offset);
+                    offset += Short.BYTES + records.get((int) keys[i]).length;
+                }
+                for (int i = 0; i < count; ++i) {
+                    byte[] record = records.get((int) keys[i]);
+                    output.writeShort(record.length);
+                    output.write(record);
+                }
+            }
+            Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Checks if the line starts with an ICAO address of six upper case hexadecimal digits.
+     *
+     * @param line the line
+     * @return true if the line starts with an ICAO address
+     */
+    private static boolean isAddress(String line) {
+        for (int i = 0; i < ADDRESS_LENGTH; ++i) {
+            char c = line.charAt(i);
+            if (!(('0' <= c && c <= '9') || ('A' <= c && c <= 'F'))) return false;
+        }
+        return true;
+    }
+}
@@ -2,18 +2,109 @@ package ch.epfl.javions.aircraft;
 
 import ch.epfl.javions.Preconditions;
 
-import java.util.regex.Pattern;
+import java.util.HexFormat;
 
 /**
  * Represents the ICAO address (international civil aviation organization) of an aircraft.(unique number for each aircraft)
+ * The address is held as the 24 bits of an int, so that it is cheap to compare and to hash, its string being only
+ * computed when it is asked for.
  *
- * @param string
  * @author Kevan Lam (356395)
  */
-public record IcaoAddress(String string) {
-    private static final Pattern patternICAO = Pattern.compile("[0-9A-F]{6}");
+public final class IcaoAddress {
+    private static final int LENGTH = 6;
+    private static final int BITS = 24;
+    private static final HexFormat HEX_FORMAT = HexFormat.of().withUpperCase();
 
-    public IcaoAddress {
-        Preconditions.checkArgument(patternICAO.matcher(string).matches());
+    // The addresses created by ofInt, indexed by the low bits of their value. The aircraft in range are few, so
+    // their addresses stay in the cache and the messages of an aircraft share a single instance.
+    private static final int CACHE_BITS = 12;
+    private static final IcaoAddress[] CACHE = new IcaoAddress[1 << CACHE_BITS];
+
+    private final int value;
+    private String string;
+
+    /**
+     * Constructs the ICAO address of the given string.
+     *
+     * @param string the six upper case hexadecimal digits of the address
+     * @throws IllegalArgumentException if the string is not made of six upper case hexadecimal digits
+     */
+    public IcaoAddress(String string) {
+        Preconditions.checkArgument(string.length() == LENGTH);
+        for (int i = 0; i < LENGTH; ++i) {
+            char c = string.charAt(i);
+            Preconditions.checkArgument(('0' <= c && c <= '9') || ('A' <= c && c <= 'F'));
+        }
+        this.value = HexFormat.fromHexDigits(string);
+        this.string = string;
+    }
+
+    /**
+     * Constructs the ICAO address of the given value, which is known to be valid.
+     *
+     * @param value the 24 bits of the address
+     */
+    private IcaoAddress(int value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the ICAO address of the given 24 bits. The instance is shared with the previous calls for the same
+     * address as long as it is still in the cache of the recent addresses.
+     *
+     * @param value the 24 bits of the address
+     * @return the ICAO address of the given 24 bits
+     * @throws IllegalArgumentException if the value does not fit in 24 bits
+     */
+    public static IcaoAddress ofInt(int value) {
+        Preconditions.checkArgument((value >>> BITS) == 0);
+
+        int index = (value ^ (value >>> CACHE_BITS)) & ((1 << CACHE_BITS) - 1);
+        IcaoAddress cached = CACHE[index];
+        if (cached != null && cached.value == value) return cached;
+
+        // The value being final, an instance read by another thread is always complete
+        IcaoAddress address = new IcaoAddress(value);
+        CACHE[index] = address;
+        return address;
+    }
+
+    /**
+     * Returns the 24 bits of the address.
+     *
+     * @return the 24 bits of the address
+     */
+    public int value() {
+        return value;
+    }
+
+    /**
+     * Returns the six upper case hexadecimal digits of the address.
+     *
+     * @return the string of the address
+     */
+    public String string() {
+        String s = string;
+        if (s == null) {
+            s = HEX_FORMAT.toHexDigits(value).substring(Integer.BYTES * 2 - LENGTH);
+            string = s;
+        }
+        return s;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IcaoAddress that && value == that.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return "IcaoAddress[string=" + string() + "]";
     }
 }
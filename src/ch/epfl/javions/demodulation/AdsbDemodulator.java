@@ -1,9 +1,14 @@
 package ch.epfl.javions.demodulation;
 
+import ch.epfl.javions.ByteString;
+import ch.epfl.javions.Crc24;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.adsb.PackedRawMessage;
 import ch.epfl.javions.adsb.RawMessage;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Set;
 
 /**
  * This class is used to demodulate the adsb message.
@@ -12,12 +17,146 @@ import java.io.InputStream;
  */
 public final class AdsbDemodulator {
     private final PowerWindow window;
+    private final long firstSamplePosition;
+    // The accepted downlink formats, format df being accepted if bit df is set
+    private final int acceptedFormats;
+    // The maximum number of flipped bits corrected in a message whose CRC is not zero
+    private final int maxCorrectedBits;
+    private final Crc24 crc24 = new Crc24(Crc24.GENERATOR);
+    private final byte[] messageBytes = new byte[RawMessage.LENGTH];
 
-    private static final int WINDOW_SIZE = 1200;
-    private static final int TENTH_OF_MICRO_TO_NANO = 100;
+    // The positions of the preambles found by the last scan, and the position following the scanned ones
+    private final long[] candidates = new long[MAX_CANDIDATES];
+    private int candidateCount = 0;
+    private int nextCandidate = 0;
+    private long scannedUpTo = 0;
+    // The first position where a preamble is looked for, following the last candidate or the last message
+    private long nextPosition;
+
+    // The number of preambles found, of those rejected by their downlink format or by their CRC, and of the messages
+    // whose CRC was corrected, only read and written by the thread reading the messages
+    private long preambles = 0;
+    private long formatRejections = 0;
+    private long crcRejections = 0;
+    private long corrections = 0;
+    // The snapshot of the counters taken before each scan, which other threads can read
+    private volatile Statistics publishedStatistics = statistics();
+
+    static final int WINDOW_SIZE = 1200;
+    static final int TENTH_OF_MICRO_TO_NANO = 100;
+    private static final int MAX_CANDIDATES = 1 << 10;
+    private static final int DF_BITS = 5;
+    // The downlink formats of the messages of 112 bits, the only ones that can be demodulated
+    private static final int MIN_LONG_FORMAT = 16;
+    private static final int MAX_FORMAT = 31;
+    // The number of bytes of a message packed in the high long of a PackedRawMessage
+    private static final int PACKED_HIGH_LENGTH = RawMessage.LENGTH - Long.BYTES;
+
+    /**
+     * The counters of the demodulator, telling how many preambles were found and how many of them were rejected by
+     * each stage of the demodulation.
+     *
+     * @param preambles        the number of preambles found and not hidden by a previous message
+     * @param formatRejections the number of preambles rejected by their downlink format, before the CRC
+     * @param crcRejections    the number of preambles rejected by their CRC
+     * @param corrections      the number of messages returned after the correction of their flipped bits
+     * @param messages         the number of messages returned, including the corrected ones
+     */
+    public record Statistics(long preambles, long formatRejections, long crcRejections, long corrections,
+                             long messages) {
+    }
 
     public AdsbDemodulator(InputStream samplesStream) throws IOException {
-        window = new PowerWindow(samplesStream, WINDOW_SIZE);
+        this(SamplesSource.of(samplesStream));
+    }
+
+    /**
+     * Constructs a demodulator reading the samples from the given source, such as a memory-mapped file.
+     *
+     * @param samplesSource the source of the samples
+     * @throws IOException if an I/O error occurs
+     */
+    public AdsbDemodulator(SamplesSource samplesSource) throws IOException {
+        this(samplesSource, 0, 1);
+    }
+
+    /**
+     * Constructs a demodulator reading the samples from the given source and returning the messages of the given
+     * downlink formats. The candidates of any other format are dropped before their whole message is extracted.
+     *
+     * @param samplesSource   the source of the samples
+     * @param acceptedFormats the accepted downlink formats, those of the messages of 112 bits (16 to 31)
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if a format is not the one of a message of 112 bits
+     */
+    public AdsbDemodulator(SamplesSource samplesSource, Set<Integer> acceptedFormats) throws IOException {
+        this(samplesSource, acceptedFormats, 0);
+    }
+
+    /**
+     * Constructs a demodulator reading the samples from the given source and returning the messages of the given
+     * downlink formats, correcting up to the given number of flipped bits in the messages whose CRC is not zero.
+     * The flipped bits are found from the syndrome of the message, see {@link Crc24#correct(byte[], int)}, and a
+     * correction changing the downlink format of a message is refused.
+     *
+     * @param samplesSource    the source of the samples
+     * @param acceptedFormats  the accepted downlink formats, those of the messages of 112 bits (16 to 31)
+     * @param maxCorrectedBits the maximum number of flipped bits corrected in a message, between 0 and 2
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if a format is not the one of a message of 112 bits, or if the number of
+     *                                  bits is invalid
+     */
+    public AdsbDemodulator(SamplesSource samplesSource, Set<Integer> acceptedFormats, int maxCorrectedBits)
+            throws IOException {
+        this(new PowerWindow(samplesSource, WINDOW_SIZE), 0, 1, formatsMask(acceptedFormats), maxCorrectedBits);
+    }
+
+    /**
+     * Constructs a demodulator reading a part of a capture, used to demodulate the chunks of a file in parallel.
+     *
+     * @param samplesSource         the source of the samples, starting at the given power sample of the capture
+     * @param firstSamplePosition   the position in the capture of the first power sample of the source
+     * @param firstPreamblePosition the first position in the capture where a preamble is looked for, which must be
+     *                              at least three samples after the first one so that the power samples are exact
+     * @throws IOException if an I/O error occurs
+     */
+    AdsbDemodulator(SamplesSource samplesSource, long firstSamplePosition, long firstPreamblePosition)
+            throws IOException {
+        this(new PowerWindow(samplesSource, WINDOW_SIZE), firstSamplePosition, firstPreamblePosition,
+                1 << RawMessage.EXPECTED_FORMAT, 0);
+    }
+
+    /**
+     * Constructs a demodulator reading power samples that are already computed in the given ring, used by the
+     * pipelined demodulator.
+     *
+     * @param powerSource the source of the batches of power samples
+     * @param ring        the ring of the power window, see {@link PowerWindow#PowerWindow(PowerSource, int, int[])}
+     * @throws IOException if an I/O error occurs
+     */
+    AdsbDemodulator(PowerSource powerSource, int[] ring) throws IOException {
+        this(new PowerWindow(powerSource, WINDOW_SIZE, ring), 0, 1, 1 << RawMessage.EXPECTED_FORMAT, 0);
+    }
+
+    /**
+     * Constructs a demodulator reading the given window, moved to the position preceding the first preamble position.
+     *
+     * @param window                the power window
+     * @param firstSamplePosition   the position in the capture of the first power sample of the window
+     * @param firstPreamblePosition the first position in the capture where a preamble is looked for
+     * @param acceptedFormats       the mask of the accepted downlink formats
+     * @param maxCorrectedBits      the maximum number of flipped bits corrected in a message
+     * @throws IOException if an I/O error occurs
+     */
+    private AdsbDemodulator(PowerWindow window, long firstSamplePosition, long firstPreamblePosition,
+                            int acceptedFormats, int maxCorrectedBits) throws IOException {
+        Preconditions.checkArgument(0 <= maxCorrectedBits && maxCorrectedBits <= Crc24.MAX_CORRECTED_BITS);
+        this.window = window;
+        this.firstSamplePosition = firstSamplePosition;
+        this.acceptedFormats = acceptedFormats;
+        this.maxCorrectedBits = maxCorrectedBits;
+        window.advanceBy(Math.toIntExact(firstPreamblePosition - 1 - firstSamplePosition));
+        this.nextPosition = window.position() + 1;
     }
 
     /**
@@ -27,33 +166,157 @@ public final class AdsbDemodulator {
      * @throws IOException if an I/O error occurs
      */
     public RawMessage nextMessage() throws IOException {
-        int lastSp;
-        int sp = computeSp(window, 0);
-        int nextSp = computeSp(window, 1);
+        long timeStampNs = nextMessageBytes();
+        return timeStampNs < 0 ? null : new RawMessage(timeStampNs, new ByteString(messageBytes));
+    }
+
+    /**
+     * This method computes the next message in the stream, in its packed form. Apart from the message itself, it
+     * allocates nothing.
+     *
+     * @return the next message in the stream or null if no message was found.
+     * @throws IOException if an I/O error occurs
+     */
+    public PackedRawMessage nextPackedMessage() throws IOException {
+        long timeStampNs = nextMessageBytes();
+        return timeStampNs < 0 ? null : pack(timeStampNs, messageBytes);
+    }
+
+    /**
+     * This method packs the bytes of a message whose CRC was already checked or corrected, without computing it again
+     * as {@link PackedRawMessage#of(long, byte[])} does.
+     *
+     * @param timeStampNs  the time stamp of the message
+     * @param messageBytes the bytes of the message
+     * @return the packed message
+     */
+    static PackedRawMessage pack(long timeStampNs, byte[] messageBytes) {
+        long high = 0, low = 0;
+        for (int i = 0; i < PACKED_HIGH_LENGTH; ++i)
+            high = (high << Byte.SIZE) | Byte.toUnsignedLong(messageBytes[i]);
+        for (int i = PACKED_HIGH_LENGTH; i < RawMessage.LENGTH; ++i)
+            low = (low << Byte.SIZE) | Byte.toUnsignedLong(messageBytes[i]);
+        return new PackedRawMessage(timeStampNs, high, low);
+    }
 
-        byte[] messageBytes = new byte[RawMessage.LENGTH];
+    /**
+     * This method looks for the next message in the stream and extracts its bytes in the message bytes.
+     *
+     * @return the time stamp of the next message, or -1 if no message was found
+     * @throws IOException if an I/O error occurs
+     */
+    private long nextMessageBytes() throws IOException {
+        while (true) {
+            while (nextCandidate < candidateCount) {
+                long candidate = candidates[nextCandidate++];
+                // Candidates hidden by the last message are skipped
+                if (candidate < nextPosition) continue;
+
+                window.advanceBy((int) (candidate - window.position()));
+                nextPosition = candidate + 1;
+                ++preambles;
+                // Most preambles are noise or messages of other formats, so the downlink format is checked first
+                int downLinkFormat = extractDownLinkFormat(window);
+                if ((acceptedFormats & (1 << downLinkFormat)) == 0) {
+                    ++formatRejections;
+                    continue;
+                }
 
-        RawMessage nextMessage;
+                extractMessageBytes(window, messageBytes);
+                int correctedBits = maxCorrectedBits == 0
+                        ? (crc24.crc(messageBytes) == 0 ? 0 : -1)
+                        : correct(messageBytes, downLinkFormat);
+                if (correctedBits < 0) {
+                    ++crcRejections;
+                    continue;
+                }
+                if (correctedBits > 0) ++corrections;
 
-        do {
-            do {
-                window.advance();
-                lastSp = sp;
-                sp = nextSp;
-                nextSp = computeSp(window, 1);
+                long timeStampNs = (firstSamplePosition + window.position()) * TENTH_OF_MICRO_TO_NANO;
+                window.advanceBy(WINDOW_SIZE);
+                nextPosition = window.position() + 1;
+                return timeStampNs;
+            }
 
+            publishedStatistics = statistics();
+            long from = Math.max(nextPosition, scannedUpTo);
+            if (from > window.lastFullPosition()) {
+                // The window is moved onto the first scanned position, which stays a candidate
+                window.advanceBy((int) (from - window.position()));
                 if (!window.isFull())
-                    return null;
+                    return -1;
+            }
 
-            } while (!(sp > lastSp && sp > nextSp && sp >= 2 * computeSv(window)));
+            long to = window.lastFullPosition() + 1;
+            candidateCount = PreambleDetector.scan(window.ring(), window.ringMask(), from, to, candidates);
+            nextCandidate = 0;
+            scannedUpTo = candidateCount == candidates.length ? candidates[candidateCount - 1] + 1 : to;
+        }
+    }
 
-            extractMessageBytes(window, messageBytes);
-            nextMessage = RawMessage.of(window.position() * TENTH_OF_MICRO_TO_NANO, messageBytes);
-        } while (!(nextMessage != null && nextMessage.downLinkFormat() == RawMessage.EXPECTED_FORMAT));
+    /**
+     * Returns the counters of the demodulator. This method must be called by the thread reading the messages, the
+     * other threads call {@link #publishedStatistics()}.
+     *
+     * @return the counters of the demodulator
+     */
+    public Statistics statistics() {
+        return new Statistics(preambles, formatRejections, crcRejections, corrections,
+                preambles - formatRejections - crcRejections);
+    }
+
+    /**
+     * Returns the counters of the demodulator as they were before its last scan for preambles. This method can be
+     * called by any thread, the counters being at most one batch of samples behind.
+     *
+     * @return the counters of the demodulator before its last scan
+     */
+    Statistics publishedStatistics() {
+        return publishedStatistics;
+    }
+
+    /**
+     * This method corrects the flipped bits of a message whose CRC is not zero.
+     *
+     * @param messageBytes   the bytes of the message, corrected in place
+     * @param downLinkFormat the downlink format extracted before the correction
+     * @return the number of corrected bits, or -1 if the message could not be corrected or if the correction changed
+     * its downlink format
+     */
+    private int correct(byte[] messageBytes, int downLinkFormat) {
+        int correctedBits = crc24.correct(messageBytes, maxCorrectedBits);
+        return Byte.toUnsignedInt(messageBytes[0]) >>> (Byte.SIZE - DF_BITS) == downLinkFormat ? correctedBits : -1;
+    }
 
-        window.advanceBy(WINDOW_SIZE);
+    /**
+     * This method computes the mask of the given downlink formats.
+     *
+     * @param formats the downlink formats
+     * @return the mask whose bit df is set if format df is one of the given formats
+     * @throws IllegalArgumentException if a format is not the one of a message of 112 bits
+     */
+    private static int formatsMask(Set<Integer> formats) {
+        int mask = 0;
+        for (int format : formats) {
+            Preconditions.checkArgument(MIN_LONG_FORMAT <= format && format <= MAX_FORMAT);
+            mask |= 1 << format;
+        }
+        return mask;
+    }
 
-        return nextMessage;
+    /**
+     * This method extracts the downlink format from the five first bits of the message in the power window.
+     *
+     * @param window the power window
+     * @return the downlink format of the message
+     */
+    private static int extractDownLinkFormat(PowerWindow window) {
+        int downLinkFormat = 0;
+        for (int j = 0; j < DF_BITS; ++j) {
+            int bit = window.get(80 + j * 10) < window.get(85 + j * 10) ? 0 : 1;
+            downLinkFormat = (downLinkFormat << 1) | bit;
+        }
+        return downLinkFormat;
     }
 
     /**
@@ -76,26 +339,4 @@ public final class AdsbDemodulator {
             messageBytes[i] = (byte) (newByte);
         }
     }
-
-    /**
-     * This method computes the sum p using the first formula (2.3.1).
-     *
-     * @param window the power window
-     * @param offset the offset of the window
-     * @return the sum of the power of the samples in the window
-     */
-    private int computeSp(PowerWindow window, int offset) {
-        return window.get(offset) + window.get(offset + 10) + window.get(offset + 35) + window.get(offset + 45);
-    }
-
-    /**
-     * This method computes the sum v using the second formula (2.3.1).
-     *
-     * @param window the power window
-     * @return the sum of the power of the samples in the window
-     */
-    private int computeSv(PowerWindow window) {
-        return window.get(5) + window.get(15) + window.get(20) + window.get(25) + window.get(30) + window.get(40);
-    }
-
 }
@@ -0,0 +1,193 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * A bounded ring of preallocated batches, filled by a single producer thread and emptied by a single consumer thread.
+ * The batches are never copied: the producer fills the batch it claimed and publishes it, the consumer reads the
+ * batches it took and releases them in the same order, possibly holding several of them at once.
+ *
+ * @param <T> the type of the batches
+ * @author Mateo Tiedra (356525)
+ */
+public final class BatchRing<T> {
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Object[] batches;
+    private final int[] sizes;
+    private final int mask;
+
+    // Number of batches published by the producer, and released by the consumer
+    private volatile long head;
+    private volatile long tail;
+    // Number of batches taken by the consumer, only used by the consumer thread
+    private long taken;
+    private volatile boolean finished;
+    private volatile Throwable failure;
+
+    // Each counter is only written by one thread
+    private volatile long producerStalls;
+    private volatile long consumerStalls;
+
+    /**
+     * Represents the counters of a ring.
+     *
+     * @param capacity       the number of batches of the ring
+     * @param occupancy      the number of batches published but not yet released
+     * @param producerStalls the number of times the producer had to wait for a free batch
+     * @param consumerStalls the number of times the consumer had to wait for a published batch
+     */
+    public record Statistics(int capacity, int occupancy, long producerStalls, long consumerStalls) {
+    }
+
+    /**
+     * Constructs a ring of the given number of batches.
+     *
+     * @param capacity     the number of batches, a power of two
+     * @param batchFactory the function creating the batches
+     * @throws IllegalArgumentException if the capacity is not a positive power of two
+     */
+    BatchRing(int capacity, Supplier<T> batchFactory) {
+        Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1);
+        this.batches = new Object[capacity];
+        this.sizes = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; ++i)
+            batches[i] = batchFactory.get();
+    }
+
+    /**
+     * Returns the counters of the ring. They can be read from any thread.
+     *
+     * @return the counters of the ring
+     */
+    public Statistics statistics() {
+        long tail = this.tail;
+        return new Statistics(batches.length, (int) (head - tail), producerStalls, consumerStalls);
+    }
+
+    /**
+     * Returns the next free batch, to be filled by the producer, waiting for the consumer to release one if needed.
+     *
+     * @return the next free batch
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    @SuppressWarnings("unchecked")
+    T claim() throws InterruptedIOException {
+        long head = this.head;
+        if (head - tail == batches.length) {
+            ++producerStalls;
+            int spins = 0;
+            while (head - tail == batches.length)
+                spins = await(spins);
+        }
+        return (T) batches[(int) head & mask];
+    }
+
+    /**
+     * Makes the batch returned by the last call to {@link #claim()} available to the consumer.
+     *
+     * @param size the number of elements written in the batch
+     */
+    void publish(int size) {
+        sizes[(int) head & mask] = size;
+        head = head + 1;
+    }
+
+    /**
+     * Signals that the producer will not publish any other batch.
+     */
+    void finish() {
+        finished = true;
+    }
+
+    /**
+     * Signals that the producer stopped because of the given error, which the consumer will get once it has taken
+     * all the published batches.
+     *
+     * @param e the error, an I/O error or an unchecked exception or error
+     */
+    void fail(Throwable e) {
+        failure = e;
+        finished = true;
+    }
+
+    /**
+     * Returns the next published batch not taken yet, waiting for the producer to publish one if needed.
+     *
+     * @return the next published batch, or null if the producer finished and all the batches were taken
+     * @throws IOException if the producer failed because of an I/O error, or the thread was interrupted while waiting
+     * @throws RuntimeException if the producer failed because of this unchecked exception
+     * @throws Error if the producer failed because of this error
+     */
+    @SuppressWarnings("unchecked")
+    T take() throws IOException {
+        long taken = this.taken;
+        if (taken == head) {
+            ++consumerStalls;
+            int spins = 0;
+            while (taken == head) {
+                if (finished) {
+                    if (taken != head) break;
+                    if (failure != null) rethrow(failure);
+                    return null;
+                }
+                spins = await(spins);
+            }
+        }
+        this.taken = taken + 1;
+        return (T) batches[(int) taken & mask];
+    }
+
+    /**
+     * Returns the number of elements of the batch returned by the last call to {@link #take()}.
+     *
+     * @return the number of elements of the batch
+     */
+    int size() {
+        return sizes[(int) (taken - 1) & mask];
+    }
+
+    /**
+     * Gives the oldest batch taken and not released yet back to the producer.
+     */
+    void release() {
+        tail = tail + 1;
+    }
+
+    /**
+     * Throws the error which stopped the producer on the consumer thread, an I/O error being wrapped so that the
+     * stack trace of the consumer is kept too.
+     *
+     * @param failure the error which stopped the producer
+     * @throws IOException if the error is an I/O error
+     */
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof RuntimeException e) throw e;
+        if (failure instanceof Error e) throw e;
+        throw new IOException(failure);
+    }
+
+    /**
+     * Waits a little, first by spinning and then by parking the thread.
+     *
+     * @param spins the number of times the thread already waited
+     * @return the new number of times the thread waited
+     * @throws InterruptedIOException if the thread was interrupted
+     */
+    private static int await(int spins) throws InterruptedIOException {
+        if (spins < SPINS_BEFORE_PARK) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+            if (Thread.interrupted()) throw new InterruptedIOException();
+        }
+        return spins + 1;
+    }
+}
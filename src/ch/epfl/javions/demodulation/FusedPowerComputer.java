@@ -0,0 +1,119 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * This class is used to compute the power of the radio sample directly from the raw bytes of the stream.
+ * It gives the same power samples as {@link PowerComputer}, which stays the reference implementation, but decodes
+ * the samples and computes their power in a single pass, keeping the last I/Q samples in local variables.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public final class FusedPowerComputer {
+    private final SamplesSource source;
+    private final int batchSize;
+
+    private static final int BYTES_PER_POWER_SAMPLE = 2 * Short.BYTES;
+    private static final int RECENTERING_NUMBER = 2048;
+    private static final int TWELVE_BITS_MASK = 0b111111111111;
+
+    // The three previous I and Q samples, the most recent one being i1/q1
+    private int i1, i2, i3;
+    private int q1, q2, q3;
+
+    /**
+     * Constructor of the FusedPowerComputer class.
+     *
+     * @param stream    the stream of the samples
+     * @param batchSize the size of the batch
+     * @throws NullPointerException     if the given stream is null
+     * @throws IllegalArgumentException if the batch size is not a positive multiple of 8
+     */
+    public FusedPowerComputer(InputStream stream, int batchSize) {
+        this(SamplesSource.of(stream), batchSize);
+    }
+
+    /**
+     * Constructor of the FusedPowerComputer class reading from the given source.
+     *
+     * @param source    the source of the samples
+     * @param batchSize the size of the batch
+     * @throws NullPointerException     if the given source is null
+     * @throws IllegalArgumentException if the batch size is not a positive multiple of 8
+     */
+    public FusedPowerComputer(SamplesSource source, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0 && batchSize % Byte.SIZE == 0);
+
+        this.source = Objects.requireNonNull(source);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * This method reads a batch of samples and computes the power of the samples.
+     *
+     * @param batch the batch of samples
+     * @return the number of power samples written in the batch
+     * @throws IOException if an I/O error occurs
+     */
+    public int readBatch(int[] batch) throws IOException {
+        Preconditions.checkArgument(batch.length == batchSize);
+        return readBatch(batch, 0);
+    }
+
+    /**
+     * This method reads a batch of samples and writes their power in the given array, starting at the given offset.
+     *
+     * @param buffer the array to write the power samples in
+     * @param offset the index of the first power sample in the array
+     * @return the number of power samples written in the array
+     * @throws IOException if an I/O error occurs
+     */
+    int readBatch(int[] buffer, int offset) throws IOException {
+        Objects.checkFromIndexSize(offset, batchSize, buffer.length);
+        ByteBuffer bytes = source.nextBytes(batchSize * BYTES_PER_POWER_SAMPLE);
+        int start = bytes.position();
+        int count = bytes.remaining() / BYTES_PER_POWER_SAMPLE;
+
+        int i1 = this.i1, i2 = this.i2, i3 = this.i3;
+        int q1 = this.q1, q2 = this.q2, q3 = this.q3;
+
+        for (int n = 0, b = start; n < count; ++n, b += BYTES_PER_POWER_SAMPLE) {
+            int i0 = decodeSample(bytes.getShort(b));
+            int q0 = decodeSample(bytes.getShort(b + Short.BYTES));
+
+            int inPP = i3 - i2 + i1 - i0;
+            int qnPP = q3 - q2 + q1 - q0;
+            buffer[offset + n] = inPP * inPP + qnPP * qnPP;
+
+            i3 = i2;
+            i2 = i1;
+            i1 = i0;
+            q3 = q2;
+            q2 = q1;
+            q1 = q0;
+        }
+
+        this.i1 = i1;
+        this.i2 = i2;
+        this.i3 = i3;
+        this.q1 = q1;
+        this.q2 = q2;
+        this.q3 = q3;
+        return count;
+    }
+
+    /**
+     * This method decodes a recentered 12 bits sample from its two little-endian bytes.
+     *
+     * @param rawSample the two bytes of the sample
+     * @return the decoded sample
+     */
+    private static int decodeSample(short rawSample) {
+        return (rawSample & TWELVE_BITS_MASK) - RECENTERING_NUMBER;
+    }
+}
@@ -0,0 +1,127 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * A source of samples read from a memory-mapped file, so that the samples are decoded straight from the page cache.
+ * The file is mapped one region at a time, which lets it be bigger than what a single mapping can hold.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public final class MappedSamplesSource implements SamplesSource, Closeable {
+    private static final int DEFAULT_REGION_SIZE = 1 << 26;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private final long end;
+    private long position;
+
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    /**
+     * Constructs a source reading all the samples of the given file.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedSamplesSource(Path path) throws IOException {
+        this(path, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Constructs a source reading the bytes of the given file between the two given offsets.
+     *
+     * @param path the path of the file
+     * @param from the offset of the first byte to read
+     * @param to   the offset following the last byte to read
+     * @throws IOException               if the file cannot be opened
+     * @throws IndexOutOfBoundsException if the offsets are not a valid range of the file
+     */
+    public MappedSamplesSource(Path path, long from, long to) throws IOException {
+        this(path, DEFAULT_REGION_SIZE, from, to);
+    }
+
+    /**
+     * Constructs a source reading all the samples of the given file, mapping regions of the given size.
+     *
+     * @param path       the path of the file
+     * @param regionSize the size of the mapped regions, in bytes
+     * @throws IOException              if the file cannot be opened
+     * @throws IllegalArgumentException if the region size is not positive
+     */
+    MappedSamplesSource(Path path, int regionSize) throws IOException {
+        this(path, regionSize, 0, Files.size(path));
+    }
+
+    /**
+     * Constructs a source reading the bytes of the given file between the two given offsets, mapping regions of the
+     * given size.
+     *
+     * @param path       the path of the file
+     * @param regionSize the size of the mapped regions, in bytes
+     * @param from       the offset of the first byte to read
+     * @param to         the offset following the last byte to read
+     * @throws IOException               if the file cannot be opened
+     * @throws IllegalArgumentException  if the region size is not positive
+     * @throws IndexOutOfBoundsException if the offsets are not a valid range of the file
+     */
+    private MappedSamplesSource(Path path, int regionSize, long from, long to) throws IOException {
+        Preconditions.checkArgument(regionSize > 0);
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        try {
+            Objects.checkFromToIndex(from, to, size);
+        } catch (IndexOutOfBoundsException e) {
+            channel.close();
+            throw e;
+        }
+        this.regionSize = regionSize;
+        this.position = from;
+        this.end = to;
+    }
+
+    /**
+     * Returns the next bytes of the file. A new region is mapped, starting at the current position, whenever the
+     * requested bytes go past the end of the current one.
+     *
+     * @param length the maximum number of bytes to return
+     * @return a buffer containing the next bytes of the file
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the length is negative or bigger than the region size
+     */
+    @Override
+    public ByteBuffer nextBytes(int length) throws IOException {
+        Preconditions.checkArgument(length >= 0 && length <= regionSize);
+        int n = (int) Math.min(length, end - position);
+        if (n == 0) return EMPTY;
+
+        if (region == null || position + n > regionStart + region.capacity()) {
+            regionStart = position;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, end - position));
+            region.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int from = (int) (position - regionStart);
+        position += n;
+        return region.limit(from + n).position(from);
+    }
+
+    @Override
+    public void close() throws IOException {
+        region = null;
+        channel.close();
+    }
+}
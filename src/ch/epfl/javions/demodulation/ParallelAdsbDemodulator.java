@@ -0,0 +1,215 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.adsb.RawMessage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static ch.epfl.javions.demodulation.AdsbDemodulator.TENTH_OF_MICRO_TO_NANO;
+import static ch.epfl.javions.demodulation.AdsbDemodulator.WINDOW_SIZE;
+
+/**
+ * This class is used to demodulate the adsb messages of a recorded capture in parallel.
+ * The capture is split in chunks of preamble positions, each chunk being demodulated on its own with one message
+ * length of overlap on the next one. The messages of the chunks are then merged so that the result is the same as the
+ * one of a sequential {@link AdsbDemodulator}.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public final class ParallelAdsbDemodulator {
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+    private static final int BYTES_PER_POWER_SAMPLE = 2 * Short.BYTES;
+    // Number of power samples read before a chunk so that the power samples of the chunk are exact
+    private static final int WARM_UP_SAMPLES = 4;
+
+    private final Path file;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Constructs a parallel demodulator of the given capture file, running on the given pool.
+     *
+     * @param file the capture file
+     * @param pool the pool on which the chunks are demodulated
+     */
+    public ParallelAdsbDemodulator(Path file, ForkJoinPool pool) {
+        this(file, pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a parallel demodulator of the given capture file, running on the given pool, with chunks of the
+     * given number of preamble positions.
+     *
+     * @param file      the capture file
+     * @param pool      the pool on which the chunks are demodulated
+     * @param chunkSize the number of preamble positions of a chunk
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    ParallelAdsbDemodulator(Path file, ForkJoinPool pool, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0);
+        this.file = Objects.requireNonNull(file);
+        this.pool = Objects.requireNonNull(pool);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * This method demodulates the whole capture.
+     *
+     * @return the messages of the capture, in the order a sequential demodulator would return them
+     * @throws IOException if an I/O error occurs
+     */
+    public List<RawMessage> demodulate() throws IOException {
+        long powerSamples = Files.size(file) / BYTES_PER_POWER_SAMPLE;
+        // The first position is never checked, and the last one must leave room for a full window
+        long endPosition = powerSamples - WINDOW_SIZE + 1;
+
+        List<Long> chunkStarts = new ArrayList<>();
+        List<ForkJoinTask<List<RawMessage>>> chunks = new ArrayList<>();
+        for (long from = 1; from < endPosition; from += chunkSize) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(from + chunkSize, endPosition);
+            chunkStarts.add(chunkFrom);
+            chunks.add(pool.submit(() -> demodulateChunk(chunkFrom, chunkTo)));
+        }
+
+        List<RawMessage> messages = new ArrayList<>();
+        long nextPosition = 1;
+        for (int i = 0; i < chunks.size(); ++i) {
+            long chunkTo = i + 1 < chunks.size() ? chunkStarts.get(i + 1) : endPosition;
+            nextPosition = merge(messages, nextPosition, join(chunks.get(i)), chunkTo);
+        }
+        return messages;
+    }
+
+    /**
+     * This method appends the messages of a chunk to the messages found so far. The messages of the chunk were found
+     * from its first position on, so when the last message before the chunk overlaps it, the start of the chunk is
+     * demodulated again from the end of that message until both agree on a message.
+     *
+     * @param messages      the messages found so far
+     * @param nextPosition  the first position where a preamble can be found after those messages
+     * @param chunkMessages the messages found in the chunk
+     * @param chunkTo       the position following the last position of the chunk
+     * @return the first position where a preamble can be found after the merged messages
+     * @throws IOException if an I/O error occurs
+     */
+    private long merge(List<RawMessage> messages, long nextPosition, List<RawMessage> chunkMessages, long chunkTo)
+            throws IOException {
+        int first = 0;
+        while (first < chunkMessages.size() && position(chunkMessages.get(first)) < nextPosition)
+            ++first;
+
+        // The chunk did not check the positions hidden by its last skipped message, which may hold the true next one
+        if (nextPosition < chunkTo && first > 0
+                && position(chunkMessages.get(first - 1)) + WINDOW_SIZE + 1 > nextPosition) {
+            try (MappedSamplesSource source = chunkSource(nextPosition, chunkTo)) {
+                AdsbDemodulator demodulator = chunkDemodulator(source, nextPosition);
+                first = chunkMessages.size();
+                RawMessage message;
+                while (first == chunkMessages.size() && (message = demodulator.nextMessage()) != null) {
+                    int index = chunkMessages.indexOf(message);
+                    if (index >= 0) {
+                        first = index;
+                    } else {
+                        messages.add(message);
+                        nextPosition = position(message) + WINDOW_SIZE + 1;
+                    }
+                }
+            }
+        }
+
+        for (int i = first; i < chunkMessages.size(); ++i) {
+            messages.add(chunkMessages.get(i));
+            nextPosition = position(chunkMessages.get(i)) + WINDOW_SIZE + 1;
+        }
+        return nextPosition;
+    }
+
+    /**
+     * This method demodulates the messages whose preamble is in the given range of positions.
+     *
+     * @param from the first position of the chunk
+     * @param to   the position following the last position of the chunk
+     * @return the messages of the chunk
+     * @throws IOException if an I/O error occurs
+     */
+    private List<RawMessage> demodulateChunk(long from, long to) throws IOException {
+        try (MappedSamplesSource source = chunkSource(from, to)) {
+            AdsbDemodulator demodulator = chunkDemodulator(source, from);
+            List<RawMessage> messages = new ArrayList<>();
+            RawMessage message;
+            while ((message = demodulator.nextMessage()) != null)
+                messages.add(message);
+            return messages;
+        }
+    }
+
+    /**
+     * This method opens the samples needed to look for preambles in the given range of positions.
+     *
+     * @param from the first position of the range
+     * @param to   the position following the last position of the range
+     * @return the source of the samples of the range
+     * @throws IOException if an I/O error occurs
+     */
+    private MappedSamplesSource chunkSource(long from, long to) throws IOException {
+        long firstSample = Math.max(0, from - WARM_UP_SAMPLES);
+        long endSample = to - 1 + WINDOW_SIZE;
+        return new MappedSamplesSource(file, firstSample * BYTES_PER_POWER_SAMPLE, endSample * BYTES_PER_POWER_SAMPLE);
+    }
+
+    /**
+     * This method creates a demodulator looking for preambles from the given position in a source opened by
+     * {@link #chunkSource(long, long)}.
+     *
+     * @param source the source of the samples
+     * @param from   the first position where a preamble is looked for
+     * @return the demodulator of the source
+     * @throws IOException if an I/O error occurs
+     */
+    private static AdsbDemodulator chunkDemodulator(MappedSamplesSource source, long from) throws IOException {
+        return new AdsbDemodulator(source, Math.max(0, from - WARM_UP_SAMPLES), from);
+    }
+
+    /**
+     * This method returns the position of the preamble of a message.
+     *
+     * @param message the message
+     * @return the position of the preamble of the message
+     */
+    private static long position(RawMessage message) {
+        return message.timeStampNs() / TENTH_OF_MICRO_TO_NANO;
+    }
+
+    /**
+     * This method waits for the messages of a chunk.
+     *
+     * @param chunk the task demodulating the chunk
+     * @return the messages of the chunk
+     * @throws IOException if the chunk could not be read or the wait was interrupted
+     */
+    private static List<RawMessage> join(ForkJoinTask<List<RawMessage>> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException ioException -> throw ioException;
+                case RuntimeException runtimeException -> throw runtimeException;
+                case Error error -> throw error;
+                default -> throw new IOException(e.getCause());
+            }
+        }
+    }
+}
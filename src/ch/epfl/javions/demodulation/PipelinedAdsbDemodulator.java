@@ -0,0 +1,218 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.adsb.RawMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * This class is used to demodulate the adsb messages of a live stream with three stages running on their own thread.
+ * The I/O stage reads the raw samples, the power stage computes their power and the detection stage, which runs on
+ * the thread calling {@link #nextMessage()}, looks for the messages. The stages are connected by rings of
+ * preallocated batches, whose counters tell which stage is too slow. The power samples are computed in place in the
+ * ring of the power window of the detection stage, so that they are never copied.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public final class PipelinedAdsbDemodulator implements Closeable {
+    private static final int DEFAULT_RING_CAPACITY = 8;
+    private static final int BYTES_PER_POWER_SAMPLE = 2 * Short.BYTES;
+    private static final int BATCH_SIZE = PowerWindow.BATCH_SIZE;
+    // The number of batches of power samples the window of the detection stage can read at once
+    private static final int WINDOW_BATCHES = PowerWindow.RING_SIZE / BATCH_SIZE;
+
+    private final BatchRing<ByteBuffer> samplesRing;
+    // The batches of the power ring are the offsets of their samples in the ring of the power window
+    private final BatchRing<Integer> powerRing;
+    private final int[] powerSamples;
+    // The number of batches of the power ring taken by the detection stage and not released yet
+    private int heldPowerBatches = 0;
+    private final Thread ioStage;
+    private final Thread powerStage;
+    private final AdsbDemodulator demodulator;
+
+    /**
+     * Constructs a pipelined demodulator of the given stream and starts its I/O and power stages.
+     *
+     * @param samplesStream the stream of the samples
+     * @throws IOException if an I/O error occurs
+     */
+    public PipelinedAdsbDemodulator(InputStream samplesStream) throws IOException {
+        this(samplesStream, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * Constructs a pipelined demodulator of the given stream, with rings of the given number of batches, and starts
+     * its I/O and power stages.
+     *
+     * @param samplesStream the stream of the samples
+     * @param ringCapacity  the number of batches of each ring, a power of two, the power ring having as many more
+     *                      batches as the power window reads at once
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the capacity is not a positive power of two
+     * @throws RuntimeException         if an unchecked exception stopped the I/O or the power stage before the
+     *                                  first batch, which is rethrown
+     */
+    public PipelinedAdsbDemodulator(InputStream samplesStream, int ringCapacity) throws IOException {
+        Objects.requireNonNull(samplesStream);
+        Preconditions.checkArgument(ringCapacity > 0 && Integer.bitCount(ringCapacity) == 1);
+
+        samplesRing = new BatchRing<>(ringCapacity,
+                () -> ByteBuffer.allocate(BATCH_SIZE * BYTES_PER_POWER_SAMPLE).order(ByteOrder.LITTLE_ENDIAN));
+        int powerRingCapacity = WINDOW_BATCHES * ringCapacity;
+        powerSamples = new int[powerRingCapacity * BATCH_SIZE];
+        PrimitiveIterator.OfInt offsets = IntStream.iterate(0, offset -> offset + BATCH_SIZE).iterator();
+        powerRing = new BatchRing<>(powerRingCapacity, offsets::next);
+
+        ioStage = new Thread(() -> readSamples(samplesStream), "javions-samples-reader");
+        powerStage = new Thread(this::computePower, "javions-power-computer");
+        ioStage.setDaemon(true);
+        powerStage.setDaemon(true);
+        ioStage.start();
+        powerStage.start();
+
+        demodulator = new AdsbDemodulator(this::takePowerBatch, powerSamples);
+    }
+
+    /**
+     * This method computes the next message in the stream.
+     *
+     * @return the next message in the stream or null if no message was found.
+     * @throws IOException if an I/O error occurs in any stage
+     * @throws RuntimeException if an unchecked exception stopped the I/O or the power stage, which is rethrown
+     * @throws Error if an error stopped the I/O or the power stage, which is rethrown
+     */
+    public RawMessage nextMessage() throws IOException {
+        return demodulator.nextMessage();
+    }
+
+    /**
+     * Returns the counters of the ring between the I/O stage and the power stage.
+     *
+     * @return the counters of the samples ring
+     */
+    public BatchRing.Statistics samplesStatistics() {
+        return samplesRing.statistics();
+    }
+
+    /**
+     * Returns the counters of the ring between the power stage and the detection stage.
+     *
+     * @return the counters of the power ring
+     */
+    public BatchRing.Statistics powerStatistics() {
+        return powerRing.statistics();
+    }
+
+    /**
+     * Returns the counters of the detection stage. They can be read from any thread, and are at most one batch of
+     * samples behind the messages returned.
+     *
+     * @return the counters of the demodulator of the detection stage
+     */
+    public AdsbDemodulator.Statistics detectionStatistics() {
+        return demodulator.publishedStatistics();
+    }
+
+    /**
+     * Stops the I/O and power stages. The I/O stage may stay blocked on its stream until it is closed.
+     */
+    @Override
+    public void close() {
+        ioStage.interrupt();
+        powerStage.interrupt();
+    }
+
+    /**
+     * The I/O stage, reading full batches of bytes until the end of the stream. Whatever stops it is handed to the
+     * power stage, so that the detection stage never waits for batches which will not come.
+     *
+     * @param samplesStream the stream of the samples
+     */
+    private void readSamples(InputStream samplesStream) {
+        try {
+            int read;
+            do {
+                ByteBuffer batch = samplesRing.claim();
+                read = samplesStream.readNBytes(batch.array(), 0, batch.capacity());
+                samplesRing.publish(read);
+            } while (read == BATCH_SIZE * BYTES_PER_POWER_SAMPLE);
+            samplesRing.finish();
+        } catch (Throwable e) {
+            samplesRing.fail(e);
+        }
+    }
+
+    /**
+     * The power stage, computing the power of the batches of samples read by the I/O stage. Whatever stops it,
+     * including an error of the I/O stage, is handed to the detection stage.
+     */
+    private void computePower() {
+        FusedPowerComputer powerComputer = new FusedPowerComputer(new RingSamplesSource(), BATCH_SIZE);
+        try {
+            int read;
+            do {
+                int offset = powerRing.claim();
+                read = powerComputer.readBatch(powerSamples, offset);
+                powerRing.publish(read);
+            } while (read == BATCH_SIZE);
+            powerRing.finish();
+        } catch (Throwable e) {
+            powerRing.fail(e);
+        }
+    }
+
+    /**
+     * The power source of the detection stage, handing the next batch of the power ring over to the power window,
+     * whose ring is the one the power samples were computed in. The batch the window no longer reads, which precedes
+     * the last one it was handed, is released first.
+     *
+     * @param buffer the ring of the power window, holding the power samples
+     * @param offset the index of the first power sample of the batch in the ring
+     * @return the number of power samples of the batch
+     * @throws IOException if an I/O error occurs in a previous stage
+     */
+    private int takePowerBatch(int[] buffer, int offset) throws IOException {
+        assert buffer == powerSamples;
+        if (heldPowerBatches == WINDOW_BATCHES) {
+            powerRing.release();
+            --heldPowerBatches;
+        }
+
+        Integer batchOffset = powerRing.take();
+        if (batchOffset == null) return 0;
+        assert batchOffset == offset;
+        ++heldPowerBatches;
+
+        int size = powerRing.size();
+        // The power stage published its last batch, so that the batches can be released while the window reads them
+        if (size < BATCH_SIZE) {
+            for (; heldPowerBatches > 0; --heldPowerBatches) powerRing.release();
+        }
+        return size;
+    }
+
+    /**
+     * The samples source of the power stage, giving the batches of the samples ring one after the other.
+     */
+    private final class RingSamplesSource implements SamplesSource {
+        private boolean holdsBatch = false;
+
+        @Override
+        public ByteBuffer nextBytes(int length) throws IOException {
+            Preconditions.checkArgument(length == BATCH_SIZE * BYTES_PER_POWER_SAMPLE);
+            if (holdsBatch) samplesRing.release();
+
+            ByteBuffer batch = samplesRing.take();
+            holdsBatch = batch != null;
+            return batch == null ? ByteBuffer.allocate(0) : batch.clear().limit(samplesRing.size());
+        }
+    }
+}
@@ -24,11 +24,21 @@ public final class PowerComputer {
      * @param batchSize the size of the batch
      */
     public PowerComputer(InputStream stream, int batchSize) {
+        this(SamplesSource.of(stream), batchSize);
+    }
+
+    /**
+     * Constructor of the PowerComputer class reading from the given source.
+     *
+     * @param source    the source of the samples
+     * @param batchSize the size of the batch
+     */
+    public PowerComputer(SamplesSource source, int batchSize) {
         Preconditions.checkArgument(batchSize > 0 && batchSize % Byte.SIZE == 0);
 
         this.samples = new short[batchSize * 2];
         this.batchSize = batchSize;
-        this.samplesDecoder = new SamplesDecoder(stream, batchSize * 2);
+        this.samplesDecoder = SamplesDecoder.of(source, batchSize * 2);
     }
 
     /**
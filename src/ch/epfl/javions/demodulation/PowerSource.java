@@ -0,0 +1,23 @@
+package ch.epfl.javions.demodulation;
+
+import java.io.IOException;
+
+/**
+ * Represents a source of batches of power samples, read by a power window.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+@FunctionalInterface
+interface PowerSource {
+    /**
+     * Writes the next batch of power samples in the given array, starting at the given offset. Only the last batch
+     * of the source may be smaller than the batch size. A source sharing the array of the power window may have
+     * computed the batch there already, and then only tells its size.
+     *
+     * @param buffer the array to write the power samples in
+     * @param offset the index of the first power sample in the array
+     * @return the number of power samples written in the array
+     * @throws IOException if an I/O error occurs
+     */
+    int readBatch(int[] buffer, int offset) throws IOException;
+}
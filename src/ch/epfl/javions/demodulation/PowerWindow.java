@@ -4,21 +4,27 @@ import ch.epfl.javions.Preconditions;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Objects;
 
 /**
  * This class is used to compute the power of the radio sample.
+ * The power samples are kept in a single ring buffer made of two batches, so that moving the window never copies
+ * samples and reading one is a mask-and-load. The ring can also be made of more batches, when it is shared with the
+ * stage computing the power samples in place.
  *
  * @author Kevan Lam (356395)
  */
 public final class PowerWindow {
-    private final PowerComputer powerComputer;
-    private boolean ArrayB = false;
-    private final static int BATCH_SIZE = 1 << 16;
-    private int batch;
+    private final PowerSource powerSource;
+    final static int BATCH_SIZE = 1 << 16;
+    final static int RING_SIZE = 2 * BATCH_SIZE;
     private final int windowSize;
     private long position = 0;
-    private final int[] batchA = new int[BATCH_SIZE];
-    private final int[] batchB = new int[BATCH_SIZE];
+    private long available = 0;
+    private long batchesRead = 0;
+    private boolean endOfStream = false;
+    private final int[] ring;
+    private final int ringMask;
 
     /**
      * Constructor of the PowerWindow
@@ -27,10 +33,45 @@ public final class PowerWindow {
      * @param windowSize the size of the batch
      */
     public PowerWindow(InputStream stream, int windowSize) throws IOException {
+        this(SamplesSource.of(stream), windowSize);
+    }
+
+    /**
+     * Constructor of the PowerWindow reading from the given source.
+     *
+     * @param source     the source of the samples
+     * @param windowSize the size of the batch
+     */
+    public PowerWindow(SamplesSource source, int windowSize) throws IOException {
+        this((PowerSource) new FusedPowerComputer(source, BATCH_SIZE)::readBatch, windowSize);
+    }
+
+    /**
+     * Constructor of the PowerWindow reading batches of power samples that are already computed.
+     *
+     * @param powerSource the source of the batches of power samples, whose size is the batch size of the window
+     * @param windowSize  the size of the batch
+     */
+    PowerWindow(PowerSource powerSource, int windowSize) throws IOException {
+        this(powerSource, windowSize, new int[RING_SIZE]);
+    }
+
+    /**
+     * Constructor of the PowerWindow reading batches of power samples in the given ring, batch k being at index
+     * k * BATCH_SIZE modulo the size of the ring.
+     *
+     * @param powerSource the source of the batches of power samples, whose size is the batch size of the window
+     * @param windowSize  the size of the batch
+     * @param ring        the ring of power samples, whose size is a power of two of at least two batches
+     */
+    PowerWindow(PowerSource powerSource, int windowSize, int[] ring) throws IOException {
         Preconditions.checkArgument(windowSize > 0 && windowSize <= BATCH_SIZE);
-        this.powerComputer = new PowerComputer(stream, BATCH_SIZE);
+        Preconditions.checkArgument(ring.length >= RING_SIZE && Integer.bitCount(ring.length) == 1);
+        this.powerSource = powerSource;
         this.windowSize = windowSize;
-        batch = powerComputer.readBatch(batchA);
+        this.ring = ring;
+        this.ringMask = ring.length - 1;
+        readNextBatch();
     }
 
     /**
@@ -57,56 +98,83 @@ public final class PowerWindow {
      * @return true if the window is full, false otherwise
      */
     public boolean isFull() {
-        return position + windowSize <= batch;
+        return position + windowSize <= available;
     }
 
     /**
-     * This method reads a batch of samples and computes the power of the samples.
+     * This method returns the power sample at the given index of the window.
      *
      * @param i the index of the sample
-     * @return the number of power samples written in the batch
-     * @throws IndexOutOfBoundsException if an I/O error occurs
+     * @return the power sample at the given index of the window
+     * @throws IndexOutOfBoundsException if the index is not in the window
      */
     public int get(int i) {
-        if (i < 0 || windowSize <= i) {
-            throw new IndexOutOfBoundsException("Index invalide :" + i);
-        }
+        Objects.checkIndex(i, windowSize);
+        return ring[(int) (position + i) & ringMask];
+    }
 
-        if ((position % BATCH_SIZE + i) >= BATCH_SIZE) {
-            return batchB[(int) (position % BATCH_SIZE + i - BATCH_SIZE)];
-        } else {
-            return batchA[(int) (position % BATCH_SIZE + i)];
-        }
+    /**
+     * This method returns the ring holding the power samples of the window, the sample at position p being at index
+     * p & {@link #ringMask()}. It lets the preamble detector scan the samples without going through {@link #get(int)}.
+     *
+     * @return the ring of power samples
+     */
+    int[] ring() {
+        return ring;
+    }
+
+    /**
+     * This method returns the mask giving the index in the ring of the power sample at a position.
+     *
+     * @return the mask of the ring
+     */
+    int ringMask() {
+        return ringMask;
+    }
+
+    /**
+     * This method returns the last position at which the window is full with the power samples read so far.
+     *
+     * @return the last position at which the window is full
+     */
+    long lastFullPosition() {
+        return available - windowSize;
     }
 
     /**
-     * This method reads a batch of samples and computes the power of the samples.
+     * This method advances the window by one sample.
      *
      * @throws IOException if an I/O error occurs
      */
     public void advance() throws IOException {
-        ++position;
-        if ((position % BATCH_SIZE) + windowSize >= BATCH_SIZE && !ArrayB) {
-            batch += powerComputer.readBatch(batchB);
-            ArrayB = true;
-        } else if (position % BATCH_SIZE == 0 && position != 0) {
-            System.arraycopy(batchB, 0, batchA, 0, BATCH_SIZE);
-            ArrayB = false;
-        }
+        advanceBy(1);
     }
 
     /**
-     * This method reads a batch of samples and computes the power of the samples.
+     * This method advances the window by the given number of samples, reading new batches only when the window
+     * reaches the end of the samples already computed.
      *
      * @param offset the offset of the sample
      * @throws IOException if an I/O error occurs
      */
     public void advanceBy(int offset) throws IOException {
         Preconditions.checkArgument(offset >= 0);
-        while (offset > 0) {
-            advance();
-            --offset;
+        position += offset;
+        while (position + windowSize > available && !endOfStream) {
+            readNextBatch();
         }
     }
-}
 
+    /**
+     * This method reads the next batch of power samples into the part of the ring that holds the oldest batch.
+     * As the window is never bigger than a batch, this part never contains samples of the window.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void readNextBatch() throws IOException {
+        int read = powerSource.readBatch(ring, (int) (batchesRead * BATCH_SIZE) & ringMask);
+        ++batchesRead;
+        available += read;
+        endOfStream = read < BATCH_SIZE;
+    }
+}
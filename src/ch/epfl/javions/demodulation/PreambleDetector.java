@@ -0,0 +1,114 @@
+package ch.epfl.javions.demodulation;
+
+/**
+ * This class looks for the preambles of adsb messages in the ring of power samples of a window, scanning a whole range
+ * of positions at once so that only the positions holding a preamble go on to bit extraction and CRC.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+final class PreambleDetector {
+    // The offset of the last sample read to check a position, that of the sum p of the following position
+    private static final int LAST_OFFSET = 46;
+
+    private PreambleDetector() {
+    }
+
+    /**
+     * This method writes the positions of the given range where a preamble starts (2.3.1), in increasing order.
+     * The power samples from the one preceding the first position up to the 46th following the last position must
+     * be in the ring.
+     *
+     * @param ring       the ring of power samples, the sample at position p being at index p & mask
+     * @param mask       the mask of the ring, its size minus one
+     * @param from       the first position to check
+     * @param to         the position following the last position to check
+     * @param candidates the array to write the positions in, the scan stopping once it is full
+     * @return the number of positions written in the array
+     */
+    static int scan(int[] ring, int mask, long from, long to, long[] candidates) {
+        int count = 0;
+        long position = from;
+
+        while (position < to && count < candidates.length) {
+            int i = (int) position & mask;
+            // Away from the end of the ring the samples are contiguous and read without masks, the few positions
+            // whose samples wrap around are checked one at a time
+            if (i >= 1 && i + LAST_OFFSET < ring.length) {
+                int length = (int) Math.min(to - position, ring.length - LAST_OFFSET - i);
+                count = scanContiguous(ring, i, length, position, candidates, count);
+                position += length;
+            } else {
+                if (isPreamble(ring, mask, i)) candidates[count++] = position;
+                ++position;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method checks the given number of positions whose samples are all contiguous in the ring.
+     *
+     * @param ring       the ring of power samples
+     * @param from       the index in the ring of the first position to check
+     * @param length     the number of positions to check
+     * @param position   the first position to check
+     * @param candidates the array to write the positions in
+     * @param count      the number of positions already written in the array
+     * @return the number of positions written in the array
+     */
+    private static int scanContiguous(int[] ring, int from, int length, long position, long[] candidates, int count) {
+        int to = from + length;
+        int lastSp = ring[from - 1] + ring[from + 9] + ring[from + 34] + ring[from + 44];
+        int sp = ring[from] + ring[from + 10] + ring[from + 35] + ring[from + 45];
+
+        // Most positions are noise whose peaks are random, so the test is computed without branches: each position is
+        // written in the array, but the count only moves past it when it holds a preamble
+        for (int i = from; i < to && count < candidates.length; ++i, ++position) {
+            int nextSp = ring[i + 1] + ring[i + 11] + ring[i + 36] + ring[i + 46];
+            int twiceSv = 2 * (ring[i + 5] + ring[i + 15] + ring[i + 20] + ring[i + 25] + ring[i + 30] + ring[i + 40]);
+            candidates[count] = position;
+            count += ((lastSp - sp) & (nextSp - sp) & (twiceSv - sp - 1)) >>> 31;
+            lastSp = sp;
+            sp = nextSp;
+        }
+        return count;
+    }
+
+    /**
+     * This method checks if a preamble starts at the given index of the ring (2.3.1).
+     *
+     * @param ring the ring of power samples
+     * @param mask the mask of the ring
+     * @param i    the index in the ring of the position to check
+     * @return true if a preamble starts at the given index
+     */
+    private static boolean isPreamble(int[] ring, int mask, int i) {
+        int sp = sp(ring, mask, i);
+        return sp > sp(ring, mask, i - 1) && sp > sp(ring, mask, i + 1) && sp >= 2 * sv(ring, mask, i);
+    }
+
+    /**
+     * This method computes the sum p at the given index of the ring (2.3.1).
+     *
+     * @param ring the ring of power samples
+     * @param mask the mask of the ring
+     * @param i    the index of the first sample
+     * @return the sum of the power of the pulses of the preamble
+     */
+    private static int sp(int[] ring, int mask, int i) {
+        return ring[i & mask] + ring[(i + 10) & mask] + ring[(i + 35) & mask] + ring[(i + 45) & mask];
+    }
+
+    /**
+     * This method computes the sum v at the given index of the ring (2.3.1).
+     *
+     * @param ring the ring of power samples
+     * @param mask the mask of the ring
+     * @param i    the index of the first sample
+     * @return the sum of the power between the pulses of the preamble
+     */
+    private static int sv(int[] ring, int mask, int i) {
+        return ring[(i + 5) & mask] + ring[(i + 15) & mask] + ring[(i + 20) & mask]
+                + ring[(i + 25) & mask] + ring[(i + 30) & mask] + ring[(i + 40) & mask];
+    }
+}
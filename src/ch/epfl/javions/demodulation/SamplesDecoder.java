@@ -4,6 +4,7 @@ import ch.epfl.javions.Preconditions;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -12,9 +13,8 @@ import java.util.Objects;
  * @author Mateo Tiedra (
  */
 public final class SamplesDecoder {
-    private final InputStream stream;
+    private final SamplesSource source;
     private final int batchSize;
-    private final byte[] samplesTable;
 
     private static final int RECENTERING_NUMBER = 2048;
 
@@ -30,11 +30,34 @@ public final class SamplesDecoder {
      * @throws IllegalArgumentException if the given batch size is not positive
      */
     public SamplesDecoder(InputStream stream, int batchSize) {
+        this(SamplesSource.of(stream), batchSize);
+    }
+
+    /**
+     * Constructs a new SamplesDecoder that will read from the given source.
+     *
+     * @param source    the source to read from
+     * @param batchSize the size of the batches to read
+     */
+    private SamplesDecoder(SamplesSource source, int batchSize) {
         Preconditions.checkArgument(batchSize > 0);
 
-        this.stream = Objects.requireNonNull(stream);
+        this.source = source;
         this.batchSize = batchSize;
-        this.samplesTable = new byte[batchSize * 2];
+    }
+
+    /**
+     * Returns a new SamplesDecoder that will read from the given source, such as a memory-mapped file, and decode the
+     * samples in batches of the given size.
+     *
+     * @param source    the source to read from
+     * @param batchSize the size of the batches to read
+     * @return a new SamplesDecoder reading from the given source
+     * @throws NullPointerException     if the given source is null
+     * @throws IllegalArgumentException if the given batch size is not positive
+     */
+    public static SamplesDecoder of(SamplesSource source, int batchSize) {
+        return new SamplesDecoder(Objects.requireNonNull(source), batchSize);
     }
 
     /**
@@ -49,15 +72,14 @@ public final class SamplesDecoder {
      */
     public int readBatch(short[] batch) throws IOException {
         Preconditions.checkArgument(batch.length == batchSize);
-        int bytesRead = stream.readNBytes(samplesTable, 0, batchSize * 2);
-
-        for (int i = 0; i < bytesRead; i += 2) {
-            int msb = Byte.toUnsignedInt(samplesTable[i + 1]) << Byte.SIZE;
-            int lsb = Byte.toUnsignedInt(samplesTable[i]);
+        ByteBuffer samplesTable = source.nextBytes(batchSize * 2);
+        int start = samplesTable.position();
+        int samplesRead = samplesTable.remaining() / 2;
 
-            batch[i / 2] = (short) (((msb | lsb) & TWELVE_BITS_MASK) - RECENTERING_NUMBER);
+        for (int i = 0; i < samplesRead; ++i) {
+            batch[i] = (short) ((samplesTable.getShort(start + 2 * i) & TWELVE_BITS_MASK) - RECENTERING_NUMBER);
         }
 
-        return bytesRead / 2;
+        return samplesRead;
     }
 }
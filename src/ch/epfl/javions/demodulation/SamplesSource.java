@@ -0,0 +1,33 @@
+package ch.epfl.javions.demodulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Represents a source of raw radio samples, each sample being a 12 bits value stored on two little-endian bytes.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+public interface SamplesSource {
+    /**
+     * Returns the next bytes of the source, at most the given number of them. The bytes are the remaining ones of the
+     * returned buffer, which is little-endian and only valid until the next call.
+     *
+     * @param length the maximum number of bytes to return
+     * @return a buffer containing the next bytes of the source, with no remaining bytes at the end of the source
+     * @throws IOException if an I/O error occurs
+     */
+    ByteBuffer nextBytes(int length) throws IOException;
+
+    /**
+     * Returns a source reading the samples from the given stream.
+     *
+     * @param stream the stream to read from
+     * @return a source reading the samples from the given stream
+     * @throws NullPointerException if the given stream is null
+     */
+    static SamplesSource of(InputStream stream) {
+        return new StreamSamplesSource(stream);
+    }
+}
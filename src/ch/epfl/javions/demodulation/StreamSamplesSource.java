@@ -0,0 +1,38 @@
+package ch.epfl.javions.demodulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * A source of samples read from an input stream into a reused byte array.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+final class StreamSamplesSource implements SamplesSource {
+    private final InputStream stream;
+    private byte[] bytes = new byte[0];
+    private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    /**
+     * Constructs a source reading the samples from the given stream.
+     *
+     * @param stream the stream to read from
+     * @throws NullPointerException if the given stream is null
+     */
+    StreamSamplesSource(InputStream stream) {
+        this.stream = Objects.requireNonNull(stream);
+    }
+
+    @Override
+    public ByteBuffer nextBytes(int length) throws IOException {
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int bytesRead = stream.readNBytes(bytes, 0, length);
+        return buffer.clear().limit(bytesRead);
+    }
+}
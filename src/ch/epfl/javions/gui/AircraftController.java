@@ -211,12 +211,10 @@ public final class AircraftController {
         Text text = new Text();
 
         // Bind the label text to the aircraft data and the speed and altitude properties
-        String registration = (aircraft.getAircraftData() == null)
-                ? ""
-                : aircraft.getAircraftData().registration().string();
-
-
         text.textProperty().bind(Bindings.createStringBinding(() -> {
+                    String registration = (aircraft.getAircraftData() == null)
+                            ? ""
+                            : aircraft.getAircraftData().registration().string();
                     String identification = (!registration.isEmpty() ? registration
                             : (aircraft.getCallSign() != null) ? aircraft.getCallSign().string()
                             : aircraft.getIcaoAddress().string());
@@ -232,6 +230,7 @@ public final class AircraftController {
 
                     return String.format("%s\n%s km/h\u2002%s m", identification, velocity, altitude);
                 },
+                aircraft.aircraftDataProperty(),
                 aircraft.callSignProperty(),
                 aircraft.velocityProperty(),
                 aircraft.altitudeProperty()
@@ -263,21 +262,24 @@ public final class AircraftController {
 
         svgPath.setOnMouseClicked(e -> setSelectedAircraft(aircraft));
 
-        AircraftData data = aircraft.getAircraftData();
-
+        // The aircraft data are bound too, as they may be loaded after the aircraft is displayed
         ObjectProperty<AircraftIcon> iconProperty = new SimpleObjectProperty<>();
-        iconProperty.bind(aircraft.categoryProperty().map(
-                category -> data == null ?
-                        AircraftIcon.iconFor(
-                                new AircraftTypeDesignator(""),
-                                new AircraftDescription(""),
-                                aircraft.getCategory(),
-                                WakeTurbulenceCategory.UNKNOWN) :
-                        AircraftIcon.iconFor(
-                                data.typeDesignator(),
-                                data.description(),
-                                aircraft.getCategory(),
-                                data.wakeTurbulenceCategory())
+        iconProperty.bind(Bindings.createObjectBinding(() -> {
+                    AircraftData data = aircraft.getAircraftData();
+                    return data == null ?
+                            AircraftIcon.iconFor(
+                                    new AircraftTypeDesignator(""),
+                                    new AircraftDescription(""),
+                                    aircraft.getCategory(),
+                                    WakeTurbulenceCategory.UNKNOWN) :
+                            AircraftIcon.iconFor(
+                                    data.typeDesignator(),
+                                    data.description(),
+                                    aircraft.getCategory(),
+                                    data.wakeTurbulenceCategory());
+                },
+                aircraft.aircraftDataProperty(),
+                aircraft.categoryProperty()
         ));
 
         svgPath.contentProperty().bind(iconProperty.map(AircraftIcon::svgPath));
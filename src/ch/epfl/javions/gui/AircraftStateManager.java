@@ -1,22 +1,34 @@
 package ch.epfl.javions.gui;
 
+import ch.epfl.javions.GeoPos;
 import ch.epfl.javions.Units;
 import ch.epfl.javions.adsb.AircraftStateAccumulator;
+import ch.epfl.javions.adsb.AircraftStateEngine;
 import ch.epfl.javions.adsb.Message;
 import ch.epfl.javions.aircraft.AircraftData;
+import ch.epfl.javions.aircraft.AircraftDataLoader;
 import ch.epfl.javions.aircraft.AircraftDatabase;
 import ch.epfl.javions.aircraft.IcaoAddress;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
 
-import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class is responsible for managing the aircraft states. It is responsible for updating the states with messages
- * and purging the states that have not been updated for more than one minute.
+ * and purging the states that have not been updated for more than one minute. The states can also be updated by an
+ * {@link AircraftStateEngine} on other threads, this class then only applies the changes it hands out.
+ * The aircraft data are loaded from the database in the background: the state of a new aircraft is created at once,
+ * and its data are set by the first update following their loading. If the loading fails, the data are loaded again
+ * on the next update of the aircraft, which fails at once while the database does not try to open its index again.
  *
  * @author Mateo Tiedra (356525)
  */
@@ -29,14 +41,43 @@ public class AircraftStateManager {
     private final ObservableSet<ObservableAircraftState> unmodifiableAircraftWithKnownPositionStates
             = FXCollections.unmodifiableObservableSet(aircraftWithKnownPositionStates);
 
-    private final AircraftDatabase aircraftDatabase;
+    // The changes handed out by an AircraftStateEngine which could not be applied in the time of the frame
+    private final ArrayDeque<AircraftStateEngine.Change> pendingChanges = new ArrayDeque<>();
+
+    // The aircraft data loaded in the background, waiting to be set on the thread of the manager
+    private final Queue<Runnable> loadedAircraftData = new ConcurrentLinkedQueue<>();
+
+    // The states whose aircraft data could not be loaded, and are to be loaded again on their next update
+    private final Set<ObservableAircraftState> failedAircraftDataStates = new HashSet<>();
+
+    private final AircraftDataLoader aircraftDataLoader;
+    private final GeoPos receiverPosition;
     private long lastMessageTimeStampNs;
 
     /**
      * @param aircraftDatabase the database to use to get the aircraft data
      */
     public AircraftStateManager(AircraftDatabase aircraftDatabase) {
-        this.aircraftDatabase = aircraftDatabase;
+        this(aircraftDatabase, null);
+    }
+
+    /**
+     * @param aircraftDatabase the database to use to get the aircraft data
+     * @param receiverPosition the position of the receiver, against which the first position of the aircraft is
+     *                         checked, or null if it is unknown
+     */
+    public AircraftStateManager(AircraftDatabase aircraftDatabase, GeoPos receiverPosition) {
+        this(new AircraftDataLoader(aircraftDatabase), receiverPosition);
+    }
+
+    /**
+     * @param aircraftDataLoader the loader of the aircraft data
+     * @param receiverPosition   the position of the receiver, against which the first position of the aircraft is
+     *                           checked, or null if it is unknown
+     */
+    public AircraftStateManager(AircraftDataLoader aircraftDataLoader, GeoPos receiverPosition) {
+        this.aircraftDataLoader = aircraftDataLoader;
+        this.receiverPosition = receiverPosition;
     }
 
     /**
@@ -48,35 +89,142 @@ public class AircraftStateManager {
 
     /**
      * Updates the state of the aircraft with the given message. If the aircraft is not in the map, it is added to the
-     * map with the aircraft data from the database.
+     * map, and its aircraft data are set once they are loaded from the database.
      *
      * @param message the message to update the state with
      */
     public void updateWithMessage(Message message) {
         IcaoAddress icaoAddress = message.icaoAddress();
         lastMessageTimeStampNs = message.timeStampNs();
+        setLoadedAircraftData();
+
+        AircraftStateAccumulator<ObservableAircraftState> accumulator = aircraftStateAccumulatorMap.get(icaoAddress);
+        if (accumulator == null) accumulator = createAccumulator(icaoAddress);
+        accumulator.update(message);
+
+        ObservableAircraftState state = accumulator.stateSetter();
+        if (failedAircraftDataStates.remove(state)) loadAircraftData(state);
+
+        if (state.getPosition() != null) {
+            aircraftWithKnownPositionStates.add(state);
+        }
+    }
+
+    /**
+     * Applies the changes handed out by an {@link AircraftStateEngine}, which updates the states on other threads.
+     * The aircraft which are not in the map are added to it, their aircraft data being set once they are loaded from
+     * the database, and the removed ones are removed from it.
+     *
+     * @param changes the changes to apply, in order
+     */
+    public void applyChanges(List<AircraftStateEngine.Change> changes) {
+        setLoadedAircraftData();
+        // The changes kept by a previous call with a time budget happened before the given ones
+        while (!pendingChanges.isEmpty()) applyChange(pendingChanges.poll());
+        for (AircraftStateEngine.Change change : changes) applyChange(change);
+    }
+
+    /**
+     * Applies the changes handed out by the given {@link AircraftStateEngine} like {@link #applyChanges(List)}, but
+     * stops once the given time is elapsed. The changes which are not applied yet are kept and applied first by the
+     * next call, so that a burst of changes is spread over several frames instead of freezing the GUI. The engine is
+     * only drained once all the kept changes are applied, so that a backlog stays in the engine, where each aircraft
+     * has a single change holding the last value of each of its properties, instead of growing here. The kept changes
+     * are thus at most one per aircraft, and one per removal.
+     *
+     * @param engine   the engine whose changes are applied
+     * @param budgetNs the time allowed to apply the changes, in nanoseconds
+     * @return the number of changes which are not applied yet
+     */
+    public int applyChanges(AircraftStateEngine engine, long budgetNs) {
+        long start = System.nanoTime();
+        setLoadedAircraftData();
+        if (pendingChanges.isEmpty()) pendingChanges.addAll(engine.drainChanges());
+        while (!pendingChanges.isEmpty() && System.nanoTime() - start < budgetNs)
+            applyChange(pendingChanges.poll());
+        return pendingChanges.size();
+    }
 
-        if (aircraftStateAccumulatorMap.containsKey(icaoAddress)) {
-            aircraftStateAccumulatorMap.get(icaoAddress).update(message);
-        } else {
-            try {
-                AircraftData aircraftData = aircraftDatabase.get(icaoAddress);
-                aircraftStateAccumulatorMap.put(
-                        icaoAddress,
-                        new AircraftStateAccumulator<>(new ObservableAircraftState(icaoAddress, aircraftData))
-                );
-            } catch (IOException e) {
-                System.out.println("Database not found\n");
+    /**
+     * Applies a change handed out by an {@link AircraftStateEngine}.
+     *
+     * @param change the change to apply
+     */
+    private void applyChange(AircraftStateEngine.Change change) {
+        IcaoAddress icaoAddress = change.icaoAddress();
+        AircraftStateAccumulator<ObservableAircraftState> accumulator = aircraftStateAccumulatorMap.get(icaoAddress);
+
+        if (change.removed()) {
+            if (accumulator != null) {
+                aircraftStateAccumulatorMap.remove(icaoAddress);
+                aircraftWithKnownPositionStates.remove(accumulator.stateSetter());
+                failedAircraftDataStates.remove(accumulator.stateSetter());
             }
+            return;
         }
 
-        ObservableAircraftState state = aircraftStateAccumulatorMap.get(icaoAddress) == null
-                ? null
-                : aircraftStateAccumulatorMap.get(icaoAddress).stateSetter();
+        if (accumulator == null) accumulator = createAccumulator(icaoAddress);
 
-        if (state != null && state.getPosition() != null) {
-            aircraftWithKnownPositionStates.add(state);
+        ObservableAircraftState state = accumulator.stateSetter();
+        change.applyTo(state);
+        if (failedAircraftDataStates.remove(state)) loadAircraftData(state);
+        if (state.getPosition() != null) aircraftWithKnownPositionStates.add(state);
+    }
+
+    /**
+     * Creates the accumulator of an aircraft, adds it to the map and loads its aircraft data.
+     *
+     * @param icaoAddress the address of the aircraft
+     * @return the accumulator of the aircraft
+     */
+    private AircraftStateAccumulator<ObservableAircraftState> createAccumulator(IcaoAddress icaoAddress) {
+        ObservableAircraftState state = new ObservableAircraftState(icaoAddress, null);
+        loadAircraftData(state);
+
+        AircraftStateAccumulator<ObservableAircraftState> accumulator =
+                new AircraftStateAccumulator<>(state, receiverPosition);
+        aircraftStateAccumulatorMap.put(icaoAddress, accumulator);
+        return accumulator;
+    }
+
+    /**
+     * Loads the aircraft data of the given state. They are set at once if they are already loaded, otherwise once
+     * they are, by the first update following their loading. If the database could not be read, the state is kept
+     * without aircraft data until its next update, which loads them again.
+     *
+     * @param state the state whose aircraft data are loaded
+     */
+    private void loadAircraftData(ObservableAircraftState state) {
+        CompletableFuture<AircraftData> aircraftData = aircraftDataLoader.get(state.getIcaoAddress());
+        if (aircraftData.isDone()) {
+            if (aircraftData.isCompletedExceptionally()) failedAircraftDataStates.add(state);
+            else state.setAircraftData(aircraftData.join());
+            return;
         }
+
+        aircraftData.whenComplete((data, exception) -> {
+            if (exception != null) loadedAircraftData.add(() -> setFailedAircraftData(state));
+            else if (data != null) loadedAircraftData.add(() -> state.setAircraftData(data));
+        });
+    }
+
+    /**
+     * Marks the given state as having aircraft data which could not be loaded, unless it was removed in the meantime.
+     *
+     * @param state the state whose aircraft data could not be loaded
+     */
+    private void setFailedAircraftData(ObservableAircraftState state) {
+        AircraftStateAccumulator<ObservableAircraftState> accumulator =
+                aircraftStateAccumulatorMap.get(state.getIcaoAddress());
+        if (accumulator != null && accumulator.stateSetter() == state) failedAircraftDataStates.add(state);
+    }
+
+    /**
+     * Sets the aircraft data loaded in the background since the last call on their states.
+     */
+    private void setLoadedAircraftData() {
+        Runnable setAircraftData;
+        while ((setAircraftData = loadedAircraftData.poll()) != null) setAircraftData.run();
     }
 
     /**
@@ -90,6 +238,7 @@ public class AircraftStateManager {
         for (ObservableAircraftState aircraftToRemove : aircraftToRemoveList) {
             aircraftWithKnownPositionStates.remove(aircraftToRemove);
             aircraftStateAccumulatorMap.remove(aircraftToRemove.getIcaoAddress());
+            failedAircraftDataStates.remove(aircraftToRemove);
         }
     }
 }
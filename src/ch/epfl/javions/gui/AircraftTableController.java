@@ -2,8 +2,8 @@ package ch.epfl.javions.gui;
 
 import ch.epfl.javions.Units;
 import ch.epfl.javions.adsb.CallSign;
+import ch.epfl.javions.aircraft.AircraftData;
 import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.ObservableSet;
 import javafx.collections.SetChangeListener;
 import javafx.scene.Node;
@@ -103,9 +103,7 @@ public final class AircraftTableController {
         TableColumn<ObservableAircraftState, String> icaoCol = new TableColumn<>("OACI");
         icaoCol.setPrefWidth(60);
         icaoCol.setCellValueFactory(
-                f -> new ReadOnlyObjectWrapper<>(f.getValue().getAircraftData() == null
-                        ? ""
-                        : f.getValue().getIcaoAddress().string())
+                f -> f.getValue().aircraftDataProperty().map(data -> f.getValue().getIcaoAddress().string()).orElse("")
         );
 
         TableColumn<ObservableAircraftState, String> callsignCol = new TableColumn<>("Indicatif");
@@ -115,33 +113,25 @@ public final class AircraftTableController {
         TableColumn<ObservableAircraftState, String> immatriculationCol = new TableColumn<>("Immatriculation");
         immatriculationCol.setPrefWidth(90);
         immatriculationCol.setCellValueFactory(
-                f -> new ReadOnlyObjectWrapper<>(f.getValue().getAircraftData() == null
-                        ? ""
-                        : f.getValue().getAircraftData().registration().string())
+                f -> f.getValue().aircraftDataProperty().map(data -> data.registration().string()).orElse("")
         );
 
         TableColumn<ObservableAircraftState, String> modelCol = new TableColumn<>("Modèle");
         modelCol.setPrefWidth(230);
         modelCol.setCellValueFactory(
-                f -> new ReadOnlyObjectWrapper<>(f.getValue().getAircraftData() == null
-                        ? ""
-                        : f.getValue().getAircraftData().model())
+                f -> f.getValue().aircraftDataProperty().map(AircraftData::model).orElse("")
         );
 
         TableColumn<ObservableAircraftState, String> typeCol = new TableColumn<>("Type");
         typeCol.setPrefWidth(50);
         typeCol.setCellValueFactory(
-                f -> new ReadOnlyObjectWrapper<>(f.getValue().getAircraftData() == null
-                        ? ""
-                        : f.getValue().getAircraftData().typeDesignator().string())
+                f -> f.getValue().aircraftDataProperty().map(data -> data.typeDesignator().string()).orElse("")
         );
 
         TableColumn<ObservableAircraftState, String> descriptionCol = new TableColumn<>("Description");
         descriptionCol.setPrefWidth(70);
         descriptionCol.setCellValueFactory(
-                f -> new ReadOnlyObjectWrapper<>(f.getValue().getAircraftData() == null
-                        ? ""
-                        : f.getValue().getAircraftData().description().string())
+                f -> f.getValue().aircraftDataProperty().map(data -> data.description().string()).orElse("")
         );
 
         // Numeric columns
@@ -13,7 +13,6 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 import javafx.scene.layout.Pane;
 
-import java.io.IOException;
 import java.util.Objects;
 
 /**
@@ -28,6 +27,7 @@ public final class BaseMapController {
     private final MapParameters mp;
     private final Pane pane = new Pane();
     private final Canvas canvas = new Canvas();
+    private final TilePrefetcher tilePrefetcher = new TilePrefetcher();
 
     private boolean redrawNeeded = true;
 
@@ -40,6 +40,7 @@ public final class BaseMapController {
     public BaseMapController(TileManager tileManager, MapParameters mapParameters) {
         this.tileManager = Objects.requireNonNull(tileManager);
         this.mp = Objects.requireNonNull(mapParameters);
+        tileManager.setOnTileLoaded(() -> Platform.runLater(this::redrawOnNextPulse));
 
         canvas.widthProperty().bind(pane.widthProperty());
         canvas.heightProperty().bind(pane.heightProperty());
@@ -135,16 +136,27 @@ public final class BaseMapController {
 
         while (xPos + xShift < mp.getMinX() + pane.getWidth()) {
             while (yPos + yShift < mp.getMinY() + pane.getHeight()) {
-                try {
-                    int xTile = (int) (xPos / TileManager.TILE_SIZE);
-                    int yTile = (int) (yPos / TileManager.TILE_SIZE);
-
-                    if (TileManager.TileId.isValid(mp.getZoom(), xTile, yTile)) {
-                        Image tileImg = tileManager.imageForTileAt(new TileManager.TileId(mp.getZoom(), xTile, yTile));
-                        gc.drawImage(tileImg, xPos - mp.getMinX() + xShift, yPos - mp.getMinY() + yShift);
+                int xTile = (int) (xPos / TileManager.TILE_SIZE);
+                int yTile = (int) (yPos / TileManager.TILE_SIZE);
+
+                if (TileManager.TileId.isValid(mp.getZoom(), xTile, yTile)) {
+                    // The tiles which are not loaded yet are drawn once they are, by the redraw they request, and
+                    // until then their ancestor in memory is drawn scaled up in place of them
+                    double x = xPos - mp.getMinX() + xShift;
+                    double y = yPos - mp.getMinY() + yShift;
+                    TileManager.TileId tileId = new TileManager.TileId(mp.getZoom(), xTile, yTile);
+                    Image tileImg = tileManager.imageForTileAtIfLoaded(tileId);
+                    if (tileImg != null) {
+                        gc.drawImage(tileImg, x, y);
+                    } else {
+                        TileManager.Placeholder<Image> placeholder = tileManager.placeholderForTileAt(tileId);
+                        if (placeholder != null) {
+                            gc.drawImage(placeholder.image(), placeholder.x(), placeholder.y(), placeholder.size(),
+                                    placeholder.size(), x, y, TileManager.TILE_SIZE, TileManager.TILE_SIZE);
+                        } else {
+                            gc.clearRect(x, y, TileManager.TILE_SIZE, TileManager.TILE_SIZE);
+                        }
                     }
-                } catch (IOException e) {
-                    e.printStackTrace();
                 }
 
                 yPos += TileManager.TILE_SIZE;
@@ -152,6 +164,11 @@ public final class BaseMapController {
             yPos = mp.getMinY();
             xPos += TileManager.TILE_SIZE;
         }
+
+        // The tiles which may become visible soon are loaded after the visible ones, the redraw following each change
+        // of the map parameters cancelling the prefetches which are no longer useful
+        tileManager.prefetchTilesAt(tilePrefetcher.tilesToPrefetch(
+                mp.getZoom(), mp.getMinX(), mp.getMinY(), pane.getWidth(), pane.getHeight(), System.nanoTime()));
     }
 
 
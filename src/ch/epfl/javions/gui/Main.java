@@ -1,14 +1,20 @@
 package ch.epfl.javions.gui;
 
 import ch.epfl.javions.ByteString;
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
+import ch.epfl.javions.adsb.AircraftStateAccumulator;
+import ch.epfl.javions.adsb.AircraftStateEngine;
 import ch.epfl.javions.adsb.Message;
 import ch.epfl.javions.adsb.MessageParser;
+import ch.epfl.javions.adsb.MessageQueue;
 import ch.epfl.javions.adsb.RawMessage;
 import ch.epfl.javions.aircraft.AircraftDatabase;
-import ch.epfl.javions.demodulation.AdsbDemodulator;
+import ch.epfl.javions.demodulation.PipelinedAdsbDemodulator;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -25,8 +31,13 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public final class Main extends Application {
     private static final String TILE_SERVER_URL = "tile.openstreetmap.org";
@@ -39,6 +50,16 @@ public final class Main extends Application {
     private static final int HEIGHT = 600;
     private static final String TITLE = "Javions";
     private static final String RESOURCE = "/aircraft.zip";
+    private static final String RECEIVER_PARAMETER = "receiver";
+    private static final String RANGE_PARAMETER = "range-nm";
+    private static final String OVERFLOW_PARAMETER = "overflow";
+    private static final String FRAME_BUDGET_PARAMETER = "frame-budget-ms";
+    private static final String TILE_MEMORY_PARAMETER = "tile-memory-mb";
+    private static final String TILE_DISK_PARAMETER = "tile-disk-mb";
+    private static final long DEFAULT_FRAME_BUDGET_NS =
+            (long) Units.convert(4, Units.Time.MILLISECOND, Units.Time.NANOSECOND);
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int INGEST_BATCH_SIZE = 256;
 
     /**
      * The main method of the application.
@@ -54,27 +75,54 @@ public final class Main extends Application {
         // StatusLine
         StatusLineController slc = new StatusLineController();
 
-        long start = System.nanoTime();
-        ConcurrentLinkedQueue<RawMessage> messageQueue = new ConcurrentLinkedQueue<>();
-        // Read messages
-        Thread thread = new Thread(() -> {
-            List<String> arg = getParameters().getRaw();
-            if (arg.isEmpty()) {
-                try {
-                    readAllMessages(messageQueue);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            } else {
-                try {
-                    readAllMessages(arg.get(0), messageQueue);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        });
-        thread.setDaemon(true);
-        thread.start();
+        // The parameters are checked before anything starts, an invalid one stopping the application
+        Map<String, String> parameters = getParameters().getNamed();
+        GeoPos receiverPosition;
+        double receiverRange;
+        MessageQueue.OverflowPolicy overflowPolicy;
+        long frameBudgetNs, tileMemoryBudget, tileDiskQuota;
+        try {
+            receiverPosition = parameter(parameters, RECEIVER_PARAMETER, "<longitude>,<latitude> in degrees",
+                    Main::receiverPosition, null);
+            receiverRange = parameter(parameters, RANGE_PARAMETER, "<nautical miles, at most 180>",
+                    Main::receiverRange, AircraftStateAccumulator.MAX_RECEIVER_RANGE);
+            overflowPolicy = parameter(parameters, OVERFLOW_PARAMETER, "block, drop-newest or drop-oldest",
+                    Main::overflowPolicy, MessageQueue.OverflowPolicy.DROP_OLDEST);
+            frameBudgetNs = parameter(parameters, FRAME_BUDGET_PARAMETER, "<milliseconds>",
+                    Main::frameBudgetNs, DEFAULT_FRAME_BUDGET_NS);
+            tileMemoryBudget = parameter(parameters, TILE_MEMORY_PARAMETER, "<megabytes>",
+                    Main::bytes, TileManager.DEFAULT_MEMORY_BUDGET);
+            tileDiskQuota = parameter(parameters, TILE_DISK_PARAMETER, "<megabytes>",
+                    Main::bytes, TileManager.DEFAULT_DISK_QUOTA);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            Platform.exit();
+            return;
+        }
+
+        AircraftStateEngine engine =
+                new AircraftStateEngine(AircraftStateEngine.DEFAULT_SHARD_COUNT, receiverPosition, receiverRange);
+        LongAdder messageCount = new LongAdder();
+
+        // The messages of each receiver are read and parsed by a thread of their own, and handed through a bounded
+        // queue of their own to a thread applying them to the engine, so that the receivers are applied in parallel.
+        // The time stamps of each receiver count from the start of its own stream, so they are moved to a clock
+        // shared by all the receivers, counting from the start of the application, before the messages are applied
+        long clockOriginNs = System.nanoTime();
+        List<String> fileNames = getParameters().getUnnamed();
+        List<MessageQueue> messageQueues = new ArrayList<>();
+        for (int i = 0; i < Math.max(fileNames.size(), 1); ++i) {
+            String fileName = fileNames.isEmpty() ? null : fileNames.get(i);
+            MessageQueue messageQueue = new MessageQueue(QUEUE_CAPACITY, overflowPolicy);
+            messageQueues.add(messageQueue);
+            startDaemon(() -> {
+                Consumer<RawMessage> messageSink = receiverSink(messageQueue, clockOriginNs);
+                if (fileName == null) readAllMessages(messageSink);
+                else readAllMessages(fileName, messageSink);
+            });
+            startDaemon(() -> applyAllMessages(messageQueue, engine, messageCount));
+        }
+
         // Database creation
         URL u = getClass().getResource(RESOURCE);
         assert u != null;
@@ -84,7 +132,8 @@ public final class Main extends Application {
         AircraftStateManager asm = new AircraftStateManager(db);
         // Tile
         Path tileCache = Path.of(CACHE_FOLDER);
-        TileManager tm = new TileManager(tileCache, TILE_SERVER_URL);
+        TileManager tm = new TileManager(tileCache, TILE_SERVER_URL, TileManager.DEFAULT_MAX_PARALLEL_DOWNLOADS,
+                tileMemoryBudget, tileDiskQuota);
         MapParameters mp = new MapParameters(INITIAL_ZOOM_LEVEL, X_LEFT_TOP_CORNER, Y_LEFT_TOP_CORNER);
 
         // Controller
@@ -116,28 +165,190 @@ public final class Main extends Application {
             private long lastUpdate = 0;
 
             /**
-             * Handle method that updates the aircraft states and the tableview
+             * Handle method that applies the changes of the aircraft states, once per frame and within the time
+             * budget of a frame
              * @param now the current time in nanoseconds
              */
             @Override
             public void handle(long now) {
-                if (!messageQueue.isEmpty()) {
-                    Message message = MessageParser.parse(messageQueue.poll());
-                    if (message != null) {
-                        slc.messageCountProperty().set(slc.messageCountProperty().get() + 1);
-                        asm.updateWithMessage(message);
-                    }
-                    // Purge 1 time per second aircraft for which no message has been received for one minute
-                    if (System.nanoTime() - lastUpdate > ONE_SECOND) {
-                        asm.purge();
-                        lastUpdate = System.nanoTime();
-                    }
+                asm.applyChanges(engine, frameBudgetNs);
+                slc.messageCountProperty().set(messageCount.sum());
+                slc.droppedMessageCountProperty().set(
+                        messageQueues.stream().mapToLong(MessageQueue::droppedCount).sum());
+
+                // Purge 1 time per second aircraft for which no message has been received for one minute
+                if (now - lastUpdate > ONE_SECOND) {
+                    engine.purge();
+                    lastUpdate = now;
                 }
             }
         }.start();
     }
 
-    public void readAllMessages(String fileName, ConcurrentLinkedQueue<RawMessage> messageQueue) throws IOException {
+    /**
+     * Returns the value of a named parameter, parsed by the given function, or the given default value if the
+     * parameter was not given.
+     *
+     * @param parameters   the named parameters
+     * @param name         the name of the parameter
+     * @param format       the expected format of the parameter, reported if it is invalid
+     * @param parser       the function parsing the value of the parameter, throwing if it is invalid
+     * @param defaultValue the value if the parameter was not given
+     * @param <T>          the type of the value
+     * @return the value of the parameter
+     * @throws IllegalArgumentException if the parameter is invalid, with a message giving its expected format
+     */
+    private static <T> T parameter(Map<String, String> parameters, String name, String format,
+                                   Function<String, T> parser, T defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return parser.apply(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Invalid parameter --" + name + "=" + value + ", expected --" + name + "=" + format, e);
+        }
+    }
+
+    /**
+     * Returns the position of the receiver given as "longitude,latitude" in degrees, like --receiver=6.57,46.52.
+     *
+     * @param value the value of the parameter
+     * @return the position of the receiver
+     * @throws IllegalArgumentException if the value is not made of two coordinates in the valid ranges
+     */
+    private static GeoPos receiverPosition(String value) {
+        String[] coordinates = value.split(",", -1);
+        Preconditions.checkArgument(coordinates.length == 2);
+        double longitude = Double.parseDouble(coordinates[0].trim());
+        double latitude = Double.parseDouble(coordinates[1].trim());
+        Preconditions.checkArgument(-180 <= longitude && longitude < 180 && -90 <= latitude && latitude <= 90);
+        return new GeoPos((int) Math.rint(Units.convert(longitude, Units.Angle.DEGREE, Units.Angle.T32)),
+                (int) Math.rint(Units.convert(latitude, Units.Angle.DEGREE, Units.Angle.T32)));
+    }
+
+    /**
+     * Returns the range of the receiver given in nautical miles, like --range-nm=180, beyond which the first position
+     * of an aircraft is rejected.
+     *
+     * @param value the value of the parameter
+     * @return the range of the receiver, in meters
+     * @throws IllegalArgumentException if the range is not strictly positive or is greater than the greatest one
+     */
+    private static double receiverRange(String value) {
+        double range = Units.convertFrom(Double.parseDouble(value), Units.Length.NAUTICAL_MILE);
+        Preconditions.checkArgument(0 < range && range <= AircraftStateAccumulator.MAX_RECEIVER_RANGE);
+        return range;
+    }
+
+    /**
+     * Returns the overflow policy of the message queue given with --overflow=block, drop-newest or drop-oldest.
+     *
+     * @param value the value of the parameter
+     * @return the overflow policy
+     * @throws IllegalArgumentException if the value is not one of the policies
+     */
+    private static MessageQueue.OverflowPolicy overflowPolicy(String value) {
+        return MessageQueue.OverflowPolicy.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    /**
+     * Returns the time allowed in each frame to apply the changes of the states, given in milliseconds like
+     * --frame-budget-ms=4.
+     *
+     * @param value the value of the parameter
+     * @return the time allowed in each frame, in nanoseconds
+     * @throws IllegalArgumentException if the time is not strictly positive
+     */
+    private static long frameBudgetNs(String value) {
+        double budgetMs = Double.parseDouble(value);
+        Preconditions.checkArgument(budgetMs > 0 && Double.isFinite(budgetMs));
+        return (long) Units.convert(budgetMs, Units.Time.MILLISECOND, Units.Time.NANOSECOND);
+    }
+
+    /**
+     * Returns the number of bytes given in megabytes by a parameter, like --tile-disk-mb=1024.
+     *
+     * @param value the value of the parameter
+     * @return the number of bytes
+     * @throws IllegalArgumentException if the number of megabytes is not strictly positive or is too large
+     */
+    private static long bytes(String value) {
+        long megabytes = Long.parseLong(value);
+        Preconditions.checkArgument(0 < megabytes && megabytes <= Long.MAX_VALUE >> 20);
+        return megabytes << 20;
+    }
+
+    /**
+     * Returns the sink of the messages of a receiver starting now, which moves their time stamps, counting from the
+     * start of its stream, to the clock shared by all the receivers, then parses them and puts them in the given queue.
+     *
+     * @param messageQueue  the queue of the parsed messages of the receiver
+     * @param clockOriginNs the value of {@link System#nanoTime()} at the origin of the shared clock
+     * @return the sink of the messages of the receiver
+     */
+    private static Consumer<RawMessage> receiverSink(MessageQueue messageQueue, long clockOriginNs) {
+        long offsetNs = System.nanoTime() - clockOriginNs;
+        return rawMessage -> {
+            Message message =
+                    MessageParser.parse(new RawMessage(offsetNs + rawMessage.timeStampNs(), rawMessage.bytes()));
+            if (message != null) {
+                try {
+                    messageQueue.put(message);
+                } catch (InterruptedException e) {
+                    throw new Error(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Starts a daemon thread running the given task.
+     *
+     * @param task the task
+     */
+    private static void startDaemon(Task task) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } catch (InterruptedException e) {
+                throw new Error(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * A task of a daemon thread, which can fail with an IOException or be interrupted.
+     */
+    @FunctionalInterface
+    private interface Task {
+        void run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Applies the messages of the queue to the states, in batches, as long as the application runs.
+     *
+     * @param messageQueue the queue of the messages
+     * @param engine       the states of the aircraft
+     * @param messageCount the number of messages applied
+     * @throws InterruptedException if the thread is interrupted while waiting for messages
+     */
+    private static void applyAllMessages(MessageQueue messageQueue, AircraftStateEngine engine, LongAdder messageCount)
+            throws InterruptedException {
+        List<Message> batch = new ArrayList<>(INGEST_BATCH_SIZE);
+        while (true) {
+            messageQueue.takeBatch(batch, INGEST_BATCH_SIZE);
+            for (Message message : batch) engine.apply(message);
+            messageCount.add(batch.size());
+            batch.clear();
+        }
+    }
+
+    public void readAllMessages(String fileName, Consumer<RawMessage> messageSink) throws IOException {
         try (DataInputStream s = new DataInputStream(
                 new BufferedInputStream(
                         new FileInputStream(fileName)))) {
@@ -153,7 +364,7 @@ public final class Main extends Application {
                 ByteString message = new ByteString(bytes);
                 assert bytesRead == RawMessage.LENGTH;
                 temp = new RawMessage(timeStamp, message);
-                messageQueue.add(temp);
+                messageSink.accept(temp);
                 delta = temp.timeStampNs() - lastMessageTimeStampNs;
                 Thread.sleep((Units.convert(delta, Units.Time.NANOSECOND, Units.Time.MILLISECOND)));
                 lastMessageTimeStampNs = temp.timeStampNs();
@@ -164,11 +375,12 @@ public final class Main extends Application {
     }
 
     // Lecture des messages de la console
-    private static void readAllMessages(ConcurrentLinkedQueue<RawMessage> messagesQueue) throws IOException {
-        AdsbDemodulator demodulator = new AdsbDemodulator(System.in);
-        RawMessage temp;
-        while ((temp = demodulator.nextMessage()) != null) {
-            messagesQueue.add(temp);
+    private static void readAllMessages(Consumer<RawMessage> messageSink) throws IOException {
+        try (PipelinedAdsbDemodulator demodulator = new PipelinedAdsbDemodulator(System.in)) {
+            RawMessage temp;
+            while ((temp = demodulator.nextMessage()) != null) {
+                messageSink.accept(temp);
+            }
         }
     }
 }
\ No newline at end of file
@@ -22,7 +22,7 @@ import java.util.Objects;
  */
 public final class ObservableAircraftState implements AircraftStateSetter {
     private final IcaoAddress icaoAddress;
-    private final AircraftData aircraftData;
+    private final ObjectProperty<AircraftData> aircraftData = new SimpleObjectProperty<>();
     private long lastAirbornePositionMessageTimeStampNs;
 
     private final LongProperty lastMessageTimeStampNs = new SimpleLongProperty();
@@ -39,11 +39,11 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      * Constructor of the class ObservableAircraftState
      *
      * @param icaoAddress  the IcaoAddress of the aircraft
-     * @param aircraftData the AircraftData of the aircraft
+     * @param aircraftData the AircraftData of the aircraft, or null if they are unknown or not loaded yet
      */
     public ObservableAircraftState(IcaoAddress icaoAddress, AircraftData aircraftData) {
         this.icaoAddress = Objects.requireNonNull(icaoAddress);
-        this.aircraftData = aircraftData;
+        this.aircraftData.set(aircraftData);
     }
 
     /**
@@ -91,13 +91,31 @@ public final class ObservableAircraftState implements AircraftStateSetter {
         return icaoAddress;
     }
 
+    /**
+     * This method returns the property of the AircraftData of the aircraft, which changes once they are loaded
+     *
+     * @return the property of the AircraftData of the aircraft
+     */
+    public ReadOnlyObjectProperty<AircraftData> aircraftDataProperty() {
+        return aircraftData;
+    }
+
     /**
      * This method returns the AircraftData of the aircraft
      *
-     * @return the AircraftData of the aircraft
+     * @return the AircraftData of the aircraft, or null if they are unknown or not loaded yet
      */
     public AircraftData getAircraftData() {
-        return aircraftData;
+        return aircraftData.get();
+    }
+
+    /**
+     * This method sets the AircraftData of the aircraft, once they are loaded from the database
+     *
+     * @param aircraftData the AircraftData of the aircraft
+     */
+    public void setAircraftData(AircraftData aircraftData) {
+        this.aircraftData.set(aircraftData);
     }
 
     // LastMessageTimeStampNs
@@ -1,5 +1,6 @@
 package ch.epfl.javions.gui;
 
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.LongProperty;
 import javafx.beans.property.SimpleIntegerProperty;
@@ -17,6 +18,7 @@ public final class StatusLineController {
     private final BorderPane pane;
     private final IntegerProperty aircraftCount = new SimpleIntegerProperty();
     private final LongProperty messageCount = new SimpleLongProperty();
+    private final LongProperty droppedMessageCount = new SimpleLongProperty();
 
     /**
      * Constructs a new status line controller.
@@ -28,7 +30,11 @@ public final class StatusLineController {
         Text aircraftCountText = new Text();
         aircraftCountText.textProperty().bind(aircraftCount.map(count -> "Aéronefs visibles : " + count));
         Text messageCountText = new Text();
-        messageCountText.textProperty().bind(messageCount.map(count -> "Messages reçus : " + count));
+        // The lost messages are only shown once there are some
+        messageCountText.textProperty().bind(Bindings.createStringBinding(
+                () -> "Messages reçus : " + messageCount.get()
+                        + (droppedMessageCount.get() > 0 ? " (perdus : " + droppedMessageCount.get() + ")" : ""),
+                messageCount, droppedMessageCount));
 
         pane.setLeft(aircraftCountText);
         pane.setRight(messageCountText);
@@ -60,4 +66,13 @@ public final class StatusLineController {
     public LongProperty messageCountProperty() {
         return messageCount;
     }
+
+    /**
+     * Returns the property of the number of messages lost because they could not be applied fast enough.
+     *
+     * @return the dropped message count property
+     */
+    public LongProperty droppedMessageCountProperty() {
+        return droppedMessageCount;
+    }
 }
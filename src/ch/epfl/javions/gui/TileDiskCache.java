@@ -0,0 +1,195 @@
+package ch.epfl.javions.gui;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * The disk cache of the tiles, holding their bytes up to a quota. The modification time of a tile file is its last
+ * access, since the access time is often not kept by the file system, so that the compaction removes the least
+ * recently read tiles first, until the cache holds less than the low watermark of the quota. The compaction also
+ * removes the temporary files left by interrupted writes.
+ *
+ * @author Kevan Lam (356395)
+ */
+final class TileDiskCache {
+    private static final String TILE_EXTENSION = ".png";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    // The fraction of the quota kept by a compaction, so that the next one does not follow at once
+    private static final double LOW_WATERMARK = 0.9;
+    // The temporary files older than this are left by interrupted writes
+    private static final Duration TEMPORARY_FILE_LIFETIME = Duration.ofMinutes(1);
+
+    private final Path path;
+    private final long quota;
+    private final AtomicLong size = new AtomicLong();
+    private final Semaphore compactionRequests = new Semaphore(0);
+
+    /**
+     * Constructs the disk cache in the given directory.
+     *
+     * @param path  the directory of the cache
+     * @param quota the maximum number of bytes of the tiles in the cache
+     * @throws IllegalArgumentException if the quota is not strictly positive
+     */
+    TileDiskCache(Path path, long quota) {
+        Preconditions.checkArgument(quota > 0);
+        this.path = Objects.requireNonNull(path);
+        this.quota = quota;
+    }
+
+    /**
+     * Returns the file of the given tile.
+     *
+     * @param tileId the tile id
+     * @return the file of the tile
+     */
+    Path fileOf(TileManager.TileId tileId) {
+        return path.resolve(String.valueOf(tileId.zoom()))
+                .resolve(String.valueOf(tileId.x()))
+                .resolve(tileId.y() + TILE_EXTENSION);
+    }
+
+    /**
+     * Returns the bytes of the given tile, marking it as accessed if possible. The mark only orders the compactions,
+     * so that the bytes are returned even if the tile cannot be marked, for example if the cache is read-only or the
+     * tile was removed by a compaction in the meantime.
+     *
+     * @param tileId the tile id
+     * @return the bytes of the tile, or null if it is not in the cache
+     * @throws IOException if an I/O error occurs
+     */
+    byte[] read(TileManager.TileId tileId) throws IOException {
+        Path file = fileOf(tileId);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            // The tile is not in the cache, or was removed by a compaction
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // The tile is only removed a bit earlier by a compaction, if it is still there
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the bytes of the given tile, through a temporary file so that an incomplete tile is never read. A
+     * compaction is requested if the cache exceeds its quota.
+     *
+     * @param tileId the tile id
+     * @param bytes  the bytes of the tile
+     * @throws IOException if an I/O error occurs
+     */
+    void write(TileManager.TileId tileId, byte[] bytes) throws IOException {
+        Path file = fileOf(tileId);
+        Files.createDirectories(file.getParent());
+        Path temporaryFile = Files.createTempFile(file.getParent(), tileId.y() + "-", TEMPORARY_EXTENSION);
+        try {
+            Files.write(temporaryFile, bytes);
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        if (size.addAndGet(bytes.length) > quota) compactionRequests.release();
+    }
+
+    /**
+     * Returns the number of bytes of the tiles in the cache, as known since the last compaction.
+     *
+     * @return the number of bytes of the tiles in the cache
+     */
+    long size() {
+        return size.get();
+    }
+
+    /**
+     * Removes the temporary files left by interrupted writes, then, if the cache exceeds its quota, the least recently
+     * accessed tiles until it holds less than the low watermark of the quota.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized void compact() throws IOException {
+        if (!Files.isDirectory(path)) return;
+
+        record TileFile(Path file, long size, long lastAccess) {
+        }
+
+        List<TileFile> tileFiles = new ArrayList<>();
+        long oldestTemporaryFile = System.currentTimeMillis() - TEMPORARY_FILE_LIFETIME.toMillis();
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!attributes.isRegularFile()) continue;
+
+                String name = file.getFileName().toString();
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                if (name.endsWith(TILE_EXTENSION)) {
+                    tileFiles.add(new TileFile(file, attributes.size(), lastModified));
+                } else if (name.endsWith(TEMPORARY_EXTENSION) && lastModified < oldestTemporaryFile) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long totalSize = tileFiles.stream().mapToLong(TileFile::size).sum();
+        if (totalSize > quota) {
+            tileFiles.sort(Comparator.comparingLong(TileFile::lastAccess));
+            long targetSize = (long) (quota * LOW_WATERMARK);
+            for (int i = 0; i < tileFiles.size() && totalSize > targetSize; ++i) {
+                Files.deleteIfExists(tileFiles.get(i).file());
+                totalSize -= tileFiles.get(i).size();
+            }
+        }
+        size.set(totalSize);
+    }
+
+    /**
+     * Starts a daemon thread compacting the cache at once, then periodically and whenever it exceeds its quota.
+     *
+     * @param period the time between two compactions
+     */
+    void compactPeriodically(Duration period) {
+        Thread.ofVirtual().name("tile-cache-compaction").start(() -> {
+            try {
+                while (true) {
+                    try {
+                        compact();
+                    } catch (IOException ignored) {
+                        // The cache is compacted again by the next compaction, which is all that can be done about it
+                    }
+                    compactionRequests.tryAcquire(period.toMillis(), TimeUnit.MILLISECONDS);
+                    compactionRequests.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+}
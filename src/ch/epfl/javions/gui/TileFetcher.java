@@ -0,0 +1,253 @@
+package ch.epfl.javions.gui;
+
+import ch.epfl.javions.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SequencedSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fetches the bytes of the tiles, from the disk cache if they are in it, otherwise from the tile server, writing
+ * them to the disk cache. The tiles are fetched in the background, on virtual threads, a tile asked for again while it
+ * is being fetched sharing the same fetch. The tiles are downloaded by a given number of threads, which download the
+ * visible tiles before the prefetched ones, in the order they were asked for. The prefetched tiles waiting for their
+ * download can be cancelled once they are no longer useful.
+ *
+ * @author Kevan Lam (356395)
+ */
+final class TileFetcher {
+    private final TileDiskCache diskCache;
+    private final String serverUrl;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // The fetches, the queues and the priorities of the fetches are guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition downloadQueued = lock.newCondition();
+    private final Map<TileManager.TileId, Fetch> pendingFetches = new HashMap<>();
+    private final SequencedSet<Fetch> visibleDownloads = new LinkedHashSet<>();
+    private final SequencedSet<Fetch> prefetchDownloads = new LinkedHashSet<>();
+
+    /**
+     * The fetch of a tile, which is a prefetch as long as the tile is not asked for as a visible one.
+     */
+    private static final class Fetch {
+        private final TileManager.TileId tileId;
+        private final CompletableFuture<byte[]> bytes = new CompletableFuture<>();
+        private boolean prefetch;
+
+        private Fetch(TileManager.TileId tileId, boolean prefetch) {
+            this.tileId = tileId;
+            this.prefetch = prefetch;
+        }
+    }
+
+    /**
+     * Constructs a tile fetcher.
+     *
+     * @param diskCache            the disk cache
+     * @param server               the server to download the tiles from, by https if it does not give its protocol
+     * @param maxParallelDownloads the maximum number of tiles downloaded at once
+     * @throws IllegalArgumentException if the maximum number of downloads is not strictly positive
+     */
+    TileFetcher(TileDiskCache diskCache, String server, int maxParallelDownloads) {
+        Preconditions.checkArgument(maxParallelDownloads > 0);
+        this.diskCache = Objects.requireNonNull(diskCache);
+        this.serverUrl = server.contains("://") ? server : "https://" + server;
+        for (int i = 0; i < maxParallelDownloads; ++i)
+            Thread.ofVirtual().name("tile-download-" + i).start(this::downloadQueuedTiles);
+    }
+
+    /**
+     * Fetches the bytes of the given visible tile in the background. If the tile is being prefetched, it becomes a
+     * visible one, downloaded before the prefetched ones.
+     *
+     * @param tileId the tile id
+     * @return the future bytes of the tile, completed exceptionally if they could not be fetched
+     */
+    CompletableFuture<byte[]> fetch(TileManager.TileId tileId) {
+        return fetch(tileId, false);
+    }
+
+    /**
+     * Fetches the bytes of the given tile in the background, after the visible tiles, unless it is cancelled before.
+     *
+     * @param tileId the tile id
+     * @return the future bytes of the tile, completed exceptionally if they could not be fetched or were cancelled
+     * @see #cancelPrefetchesOtherThan(Set)
+     */
+    CompletableFuture<byte[]> prefetch(TileManager.TileId tileId) {
+        return fetch(tileId, true);
+    }
+
+    /**
+     * Cancels the prefetches of the tiles other than the given ones which are waiting for their download. Their
+     * futures are cancelled.
+     *
+     * @param tileIds the tiles whose prefetches are kept
+     */
+    void cancelPrefetchesOtherThan(Set<TileManager.TileId> tileIds) {
+        List<Fetch> cancelled = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Fetch> prefetches = prefetchDownloads.iterator();
+            while (prefetches.hasNext()) {
+                Fetch fetch = prefetches.next();
+                if (tileIds.contains(fetch.tileId)) continue;
+                prefetches.remove();
+                pendingFetches.remove(fetch.tileId);
+                cancelled.add(fetch);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // The futures are cancelled without the lock, as their actions are run by the cancellation
+        for (Fetch fetch : cancelled) fetch.bytes.cancel(false);
+    }
+
+    /**
+     * Fetches the bytes of the given tile on the calling thread.
+     *
+     * @param tileId the tile id
+     * @return the bytes of the tile
+     * @throws IOException if an I/O error occurs
+     */
+    byte[] fetchNow(TileManager.TileId tileId) throws IOException {
+        byte[] bytes = diskCache.read(tileId);
+        if (bytes != null) return bytes;
+
+        bytes = download(tileId);
+        diskCache.write(tileId, bytes);
+        return bytes;
+    }
+
+    /**
+     * Fetches the bytes of the given tile in the background, reading them from the disk cache at once, or queuing
+     * their download otherwise.
+     *
+     * @param tileId   the tile id
+     * @param prefetch true if the tile is prefetched, false if it is visible
+     * @return the future bytes of the tile
+     */
+    private CompletableFuture<byte[]> fetch(TileManager.TileId tileId, boolean prefetch) {
+        Fetch fetch;
+        lock.lock();
+        try {
+            fetch = pendingFetches.get(tileId);
+            if (fetch != null) {
+                if (fetch.prefetch && !prefetch) {
+                    fetch.prefetch = false;
+                    if (prefetchDownloads.remove(fetch)) {
+                        visibleDownloads.add(fetch);
+                        downloadQueued.signal();
+                    }
+                }
+                return fetch.bytes;
+            }
+            fetch = new Fetch(tileId, prefetch);
+            pendingFetches.put(tileId, fetch);
+        } finally {
+            lock.unlock();
+        }
+
+        Fetch newFetch = fetch;
+        executor.execute(() -> {
+            try {
+                byte[] bytes = diskCache.read(tileId);
+                if (bytes != null) complete(newFetch, bytes, null);
+                else queueDownload(newFetch);
+            } catch (IOException | RuntimeException e) {
+                complete(newFetch, null, e);
+            }
+        });
+        return fetch.bytes;
+    }
+
+    /**
+     * Queues the download of a tile which is not in the disk cache, after the ones of its priority.
+     *
+     * @param fetch the fetch of the tile
+     */
+    private void queueDownload(Fetch fetch) {
+        lock.lock();
+        try {
+            (fetch.prefetch ? prefetchDownloads : visibleDownloads).add(fetch);
+            downloadQueued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Downloads the queued tiles, the visible ones first, forever.
+     */
+    private void downloadQueuedTiles() {
+        while (true) {
+            Fetch fetch;
+            lock.lock();
+            try {
+                while (visibleDownloads.isEmpty() && prefetchDownloads.isEmpty()) downloadQueued.awaitUninterruptibly();
+                fetch = visibleDownloads.isEmpty() ? prefetchDownloads.removeFirst() : visibleDownloads.removeFirst();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                byte[] bytes = download(fetch.tileId);
+                diskCache.write(fetch.tileId, bytes);
+                complete(fetch, bytes, null);
+            } catch (IOException | RuntimeException e) {
+                complete(fetch, null, e);
+            }
+        }
+    }
+
+    /**
+     * Completes the given fetch, which stops being pending.
+     *
+     * @param fetch     the fetch
+     * @param bytes     the bytes of the tile, or null if they could not be fetched
+     * @param exception the exception which prevented the fetch, or null if it succeeded
+     */
+    private void complete(Fetch fetch, byte[] bytes, Exception exception) {
+        lock.lock();
+        try {
+            pendingFetches.remove(fetch.tileId, fetch);
+        } finally {
+            lock.unlock();
+        }
+        if (exception == null) fetch.bytes.complete(bytes);
+        else fetch.bytes.completeExceptionally(exception);
+    }
+
+    /**
+     * Downloads the bytes of the given tile from the tile server.
+     *
+     * @param tileId the tile id
+     * @return the bytes of the tile
+     * @throws IOException if an I/O error occurs
+     */
+    private byte[] download(TileManager.TileId tileId) throws IOException {
+        URL u = URI.create(serverUrl + "/" + tileId.zoom() + "/" + tileId.x() + "/" + tileId.y() + ".png").toURL();
+        URLConnection c = u.openConnection();
+        c.setRequestProperty("User-Agent", "Javions");
+        try (InputStream i = c.getInputStream()) {
+            return i.readAllBytes();
+        }
+    }
+}
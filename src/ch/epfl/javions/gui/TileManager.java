@@ -3,16 +3,23 @@ package ch.epfl.javions.gui;
 import ch.epfl.javions.Preconditions;
 import javafx.scene.image.Image;
 
-import java.io.*;
-import java.net.URL;
-import java.net.URLConnection;
-import java.nio.file.Files;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.util.LinkedHashMap;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * A tile manager.
+ * A tile manager. The images of the tiles are kept in memory, their bytes on the disk, and the missing tiles are
+ * downloaded from the tile server. The images can be asked for without blocking, the tiles which are not in memory
+ * being then loaded in the background. Both caches are bounded by a number of bytes, the memory one by the size of
+ * the decoded images, and the disk one is compacted periodically in the background.
  *
  * @author Kevan Lam (356395)
  */
@@ -20,11 +27,19 @@ public final class TileManager {
     public static final double TILE_SIZE = 256;
     public static final int MIN_VALID_ZOOM = 0;
     public static final int MAX_VALID_ZOOM = 19;
-    private final Path path;
-    private final String server;
-
-    public final static int MAX_MEMORY = 100;
-    private final Map<TileId, Image> tiles = new LinkedHashMap<>(MAX_MEMORY, 0.75f, true);
+    public static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 4;
+    // Beyond this number of levels, the area of the ancestor covering a tile is less than a pixel wide
+    static final int MAX_PLACEHOLDER_LEVELS = 8;
+    // 512 decoded tiles of 256 by 256 pixels of 4 bytes, several screens of a 4K monitor
+    public static final long DEFAULT_MEMORY_BUDGET = 128L << 20;
+    public static final long DEFAULT_DISK_QUOTA = 1L << 30;
+    private static final Duration COMPACTION_PERIOD = Duration.ofMinutes(10);
+    private static final int BYTES_PER_PIXEL = 4;
+    private final TileFetcher fetcher;
+    private final TileMemoryCache<Image> tiles;
+    // The tiles being loaded in the background, mapped to true if they are prefetched, false if they are visible
+    private final Map<TileId, Boolean> pendingTiles = new HashMap<>();
+    private volatile Runnable onTileLoaded = () -> {};
 
     /**
      * Represents a tile identifier consisting of zoom level, x-coordinate, and y-coordinate.
@@ -45,6 +60,28 @@ public final class TileManager {
         public static boolean isValid(int zoom, int x, int y) {
             return MIN_VALID_ZOOM <= zoom && zoom <= MAX_VALID_ZOOM && 0 <= x && x < (1 << zoom) && 0 <= y && y < (1 << zoom);
         }
+
+        /**
+         * Returns the tile ID of the tile of the previous zoom level containing this one.
+         *
+         * @return the tile ID of the parent tile
+         * @throws IllegalArgumentException if the tile is at the minimum zoom level
+         */
+        public TileId parent() {
+            return new TileId(zoom - 1, x >> 1, y >> 1);
+        }
+    }
+
+    /**
+     * Represents the area of an ancestor tile image covering a tile, which can be drawn scaled up in place of it.
+     *
+     * @param image the image of the ancestor tile
+     * @param x     the x-coordinate of the area in the image
+     * @param y     the y-coordinate of the area in the image
+     * @param size  the size of the area in the image
+     * @param <I>   the type of the image
+     */
+    record Placeholder<I>(I image, double x, double y, double size) {
     }
 
     /**
@@ -54,54 +91,206 @@ public final class TileManager {
      * @param server the server to download the tiles from
      */
     public TileManager(Path path, String server) {
-        this.path = path;
-        this.server = server;
+        this(path, server, DEFAULT_MAX_PARALLEL_DOWNLOADS);
     }
 
     /**
-     * Return the tile image for the given tile id.
+     * Create a new tile manager with the given path and server, downloading at most the given number of tiles at once.
+     *
+     * @param path                 the path to store the tiles
+     * @param server               the server to download the tiles from, by https if it does not give its protocol
+     * @param maxParallelDownloads the maximum number of tiles downloaded at once
+     * @throws IllegalArgumentException if the maximum number of downloads is not strictly positive
+     */
+    public TileManager(Path path, String server, int maxParallelDownloads) {
+        this(path, server, maxParallelDownloads, DEFAULT_MEMORY_BUDGET, DEFAULT_DISK_QUOTA);
+    }
+
+    /**
+     * Create a new tile manager with the given path and server, downloading at most the given number of tiles at once
+     * and keeping the tiles within the given numbers of bytes in memory and on the disk.
+     *
+     * @param path                 the path to store the tiles
+     * @param server               the server to download the tiles from, by https if it does not give its protocol
+     * @param maxParallelDownloads the maximum number of tiles downloaded at once
+     * @param memoryBudget         the maximum number of bytes of the decoded tile images kept in memory
+     * @param diskQuota            the maximum number of bytes of the tiles kept on the disk
+     * @throws IllegalArgumentException if one of the numbers is not strictly positive
+     */
+    public TileManager(Path path, String server, int maxParallelDownloads, long memoryBudget, long diskQuota) {
+        TileDiskCache diskCache = new TileDiskCache(path, diskQuota);
+        this.fetcher = new TileFetcher(diskCache, server, maxParallelDownloads);
+        this.tiles = new TileMemoryCache<>(memoryBudget, TileManager::sizeOf);
+        diskCache.compactPeriodically(COMPACTION_PERIOD);
+    }
+
+    /**
+     * Set the action called, on the thread which loaded it, each time a tile is loaded in the background.
+     *
+     * @param onTileLoaded the action called each time a tile is loaded
+     */
+    public void setOnTileLoaded(Runnable onTileLoaded) {
+        this.onTileLoaded = Objects.requireNonNull(onTileLoaded);
+    }
+
+    /**
+     * Return the tile image for the given tile id, loading it on the calling thread if it is not in memory.
      *
      * @param tileId the tile id
      * @return the tile image
      * @throws IOException if an I/O error occurs
      */
     public Image imageForTileAt(TileId tileId) throws IOException {
-        Files.createDirectories(path);
-        String filename = "/" + tileId.zoom + "/" + tileId.x + "/" + tileId.y + ".png";
-        String pathName = path + filename;
+        Image image = imageInMemory(tileId);
+        if (image != null) return image;
 
-        if (tiles.containsKey(tileId)) {
-            return tiles.get(tileId);
+        image = decode(fetcher.fetchNow(tileId));
+        putInMemory(tileId, image);
+        return image;
+    }
+
+    /**
+     * Return the tile image for the given tile id if it is in memory. Otherwise, start loading it in the background,
+     * before the prefetched tiles, unless it is already being loaded, and call the action set by
+     * {@link #setOnTileLoaded(Runnable)} once it is.
+     *
+     * @param tileId the tile id
+     * @return the tile image, or null if it is not in memory yet
+     */
+    public Image imageForTileAtIfLoaded(TileId tileId) {
+        Image image = imageInMemory(tileId);
+        if (image != null) return image;
+
+        loadInBackground(tileId, false);
+        return null;
+    }
+
+    /**
+     * Start loading the given tiles in the background, after the visible ones, unless they are in memory or already
+     * being loaded. The prefetches of other tiles which are still waiting for their download are cancelled, as they
+     * are no longer useful.
+     *
+     * @param tileIds the tile ids, by decreasing priority
+     */
+    public void prefetchTilesAt(Collection<TileId> tileIds) {
+        Set<TileId> prefetchedTiles = new LinkedHashSet<>();
+        for (TileId tileId : tileIds) {
+            if (!tiles.contains(tileId)) prefetchedTiles.add(tileId);
         }
+        fetcher.cancelPrefetchesOtherThan(prefetchedTiles);
+        for (TileId tileId : prefetchedTiles) loadInBackground(tileId, true);
+    }
 
-        Image image;
-        if (Files.exists(Path.of(pathName))) {
-            image = new Image(new FileInputStream(pathName));
-            if (tiles.size() == MAX_MEMORY) {
-                tiles.remove(tiles.keySet().iterator().next());
+    /**
+     * Start loading the given tile in the background, unless it is already being loaded. A tile being prefetched
+     * becomes a visible one if it is asked for as such.
+     *
+     * @param tileId   the tile id
+     * @param prefetch true if the tile is prefetched, false if it is visible
+     */
+    private void loadInBackground(TileId tileId, boolean prefetch) {
+        boolean promoted;
+        synchronized (pendingTiles) {
+            Boolean pendingPrefetch = pendingTiles.get(tileId);
+            if (pendingPrefetch == null) {
+                pendingTiles.put(tileId, prefetch);
+                promoted = false;
+            } else if (pendingPrefetch && !prefetch) {
+                pendingTiles.put(tileId, false);
+                promoted = true;
+            } else {
+                return;
             }
-            tiles.put(tileId, image);
-            return image;
         }
 
-        URL u = new URL("https://" + server + filename);
-        byte[] bytes;
-        URLConnection c = u.openConnection();
-        c.setRequestProperty("User-Agent", "Javions");
-        try (InputStream i = c.getInputStream()) {
-            bytes = i.readAllBytes();
-            Files.createDirectories(Path.of(path + "/" + tileId.zoom + "/" + tileId.x + "/"));
-        }
-        try (OutputStream out = new FileOutputStream(pathName)) {
-            out.write(bytes);
-        }
-        try (InputStream is = new ByteArrayInputStream(bytes)) {
-            image = new Image(is);
-        }
-        if ((tiles.size() == MAX_MEMORY)) {
-            tiles.remove(tiles.keySet().iterator().next());
+        CompletableFuture<byte[]> bytes = prefetch ? fetcher.prefetch(tileId) : fetcher.fetch(tileId);
+        // A tile which was being prefetched is only asked for again, so that its download comes before the prefetches
+        if (promoted) return;
+
+        bytes.thenApply(TileManager::decode).whenComplete((loadedImage, e) -> {
+            // The image is put in memory before the tile stops being pending, so that it is never loaded twice
+            if (loadedImage != null) putInMemory(tileId, loadedImage);
+            boolean visible;
+            synchronized (pendingTiles) {
+                visible = !pendingTiles.remove(tileId);
+            }
+            // Only the visible tiles need a redraw, the prefetched ones are drawn when they become visible
+            if (loadedImage != null && visible) onTileLoaded.run();
+        });
+    }
+
+    /**
+     * Return the area of the nearest ancestor of the given tile whose image is in memory, to be drawn in place of the
+     * tile while it is loaded. Only the images in memory are looked at, no tile is loaded.
+     *
+     * @param tileId the tile id
+     * @return the area of the ancestor tile image covering the tile, or null if no ancestor close enough is in memory
+     */
+    Placeholder<Image> placeholderForTileAt(TileId tileId) {
+        return placeholderForTileAt(tiles, tileId);
+    }
+
+    /**
+     * Return the area of the nearest ancestor of the given tile whose image is in the given cache, like
+     * {@link #placeholderForTileAt(TileId)}.
+     *
+     * @param tiles  the cache of the tile images
+     * @param tileId the tile id
+     * @param <I>    the type of the images
+     * @return the area of the ancestor tile image covering the tile, or null if no ancestor close enough is in the cache
+     */
+    static <I> Placeholder<I> placeholderForTileAt(TileMemoryCache<I> tiles, TileId tileId) {
+        TileId ancestorId = tileId;
+        for (int levels = 1; levels <= MAX_PLACEHOLDER_LEVELS && ancestorId.zoom() > MIN_VALID_ZOOM; ++levels) {
+            ancestorId = ancestorId.parent();
+            I ancestor = tiles.get(ancestorId);
+            if (ancestor != null) {
+                // The tile is one of the 2^levels by 2^levels tiles covered by its ancestor
+                double size = TILE_SIZE / (1 << levels);
+                int mask = (1 << levels) - 1;
+                return new Placeholder<>(ancestor, (tileId.x() & mask) * size, (tileId.y() & mask) * size, size);
+            }
         }
+        return null;
+    }
+
+    /**
+     * Return the tile image for the given tile id if it is in memory.
+     *
+     * @param tileId the tile id
+     * @return the tile image, or null if it is not in memory
+     */
+    private Image imageInMemory(TileId tileId) {
+        return tiles.get(tileId);
+    }
+
+    /**
+     * Put the given tile image in memory, removing the least recently used ones if the memory budget is exceeded.
+     *
+     * @param tileId the tile id
+     * @param image  the tile image
+     */
+    private void putInMemory(TileId tileId, Image image) {
         tiles.put(tileId, image);
-        return image;
     }
-}
\ No newline at end of file
+
+    /**
+     * Return the number of bytes of the given decoded tile image.
+     *
+     * @param image the tile image
+     * @return the number of bytes of the image
+     */
+    private static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Decode the image of a tile.
+     *
+     * @param bytes the bytes of the tile
+     * @return the tile image
+     */
+    private static Image decode(byte[] bytes) {
+        return new Image(new ByteArrayInputStream(bytes));
+    }
+}
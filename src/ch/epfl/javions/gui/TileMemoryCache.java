@@ -0,0 +1,94 @@
+package ch.epfl.javions.gui;
+
+import ch.epfl.javions.Preconditions;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * The memory cache of the tile images, holding images up to a budget of bytes rather than a number of images, so that
+ * it holds as many images as the budget allows whatever their size. The least recently used images are removed first
+ * once the budget is exceeded. The cache is thread-safe.
+ *
+ * @param <I> the type of the images
+ * @author Kevan Lam (356395)
+ */
+final class TileMemoryCache<I> {
+    private final long budget;
+    private final ToLongFunction<? super I> sizeOf;
+    private final Map<TileManager.TileId, I> images = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param budget the maximum number of bytes of the images in the cache
+     * @param sizeOf the function giving the number of bytes of an image
+     * @throws IllegalArgumentException if the budget is not strictly positive
+     */
+    TileMemoryCache(long budget, ToLongFunction<? super I> sizeOf) {
+        Preconditions.checkArgument(budget > 0);
+        this.budget = budget;
+        this.sizeOf = Objects.requireNonNull(sizeOf);
+    }
+
+    /**
+     * Returns the image of the given tile, which becomes the most recently used one.
+     *
+     * @param tileId the tile id
+     * @return the image of the tile, or null if it is not in the cache
+     */
+    synchronized I get(TileManager.TileId tileId) {
+        return images.get(tileId);
+    }
+
+    /**
+     * Checks if the image of the given tile is in the cache, without it becoming the most recently used one.
+     *
+     * @param tileId the tile id
+     * @return true if the image of the tile is in the cache
+     */
+    synchronized boolean contains(TileManager.TileId tileId) {
+        return images.containsKey(tileId);
+    }
+
+    /**
+     * Puts the image of the given tile in the cache, then removes the least recently used images until the budget is
+     * no longer exceeded. An image larger than the whole budget is not kept.
+     *
+     * @param tileId the tile id
+     * @param image  the image of the tile
+     */
+    synchronized void put(TileManager.TileId tileId, I image) {
+        I previous = images.put(tileId, Objects.requireNonNull(image));
+        if (previous != null) size -= sizeOf.applyAsLong(previous);
+        size += sizeOf.applyAsLong(image);
+
+        Iterator<I> leastRecentlyUsed = images.values().iterator();
+        while (size > budget) {
+            size -= sizeOf.applyAsLong(leastRecentlyUsed.next());
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the images in the cache.
+     *
+     * @return the number of bytes of the images in the cache
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of images in the cache.
+     *
+     * @return the number of images in the cache
+     */
+    synchronized int count() {
+        return images.size();
+    }
+}
@@ -0,0 +1,125 @@
+package ch.epfl.javions.gui;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chooses the tiles to prefetch around the visible part of the map, so that they are loaded before they become
+ * visible. These are, by decreasing priority, the tiles in the direction the map is moving, the ring of tiles around
+ * the visible ones, and the tiles covering the visible part of the map at the previous and next zoom levels. The speed
+ * of the map is estimated from the successive visible parts given to the prefetcher.
+ *
+ * @author Mateo Tiedra (356525)
+ */
+final class TilePrefetcher {
+    /**
+     * The maximum number of tiles to prefetch at once.
+     */
+    static final int MAX_PREFETCHED_TILES = 256;
+    // The tiles prefetched in the direction of the map are the ones which become visible within this time
+    private static final double LOOKAHEAD_NS = 1e9;
+    // The part of the map prefetched in its direction is at most this number of tiles away from the visible one
+    private static final double MAX_LOOKAHEAD_TILES = 4;
+    // The time constant of the smoothing of the speed, so that it survives redraws of a still map
+    private static final double SPEED_TIME_CONSTANT_NS = 0.25e9;
+
+    private int lastZoom = -1;
+    private double lastMinX, lastMinY;
+    private long lastTimeNs;
+    private double speedX, speedY;
+
+    /**
+     * Returns the tiles to prefetch for the given visible part of the map, by decreasing priority, without the
+     * visible tiles. The speed of the map is updated with the move since the previous call.
+     *
+     * @param zoom   the zoom level
+     * @param minX   the x-coordinate of the top left corner of the visible part of the map
+     * @param minY   the y-coordinate of the top left corner of the visible part of the map
+     * @param width  the width of the visible part of the map
+     * @param height the height of the visible part of the map
+     * @param timeNs the current time, in nanoseconds
+     * @return the tiles to prefetch, at most {@link #MAX_PREFETCHED_TILES}
+     */
+    List<TileManager.TileId> tilesToPrefetch(int zoom, double minX, double minY, double width, double height,
+                                             long timeNs) {
+        updateSpeed(zoom, minX, minY, timeNs);
+
+        int minTileX = tileIndex(minX);
+        int minTileY = tileIndex(minY);
+        int maxTileX = tileIndex(minX + width);
+        int maxTileY = tileIndex(minY + height);
+
+        Set<TileManager.TileId> visibleTiles = new LinkedHashSet<>();
+        addTiles(visibleTiles, zoom, minTileX, minTileY, maxTileX, maxTileY);
+
+        Set<TileManager.TileId> tiles = new LinkedHashSet<>();
+        double maxLookahead = MAX_LOOKAHEAD_TILES * TileManager.TILE_SIZE;
+        double lookaheadX = Math.clamp(speedX * LOOKAHEAD_NS, -maxLookahead, maxLookahead);
+        double lookaheadY = Math.clamp(speedY * LOOKAHEAD_NS, -maxLookahead, maxLookahead);
+        addTiles(tiles, zoom,
+                tileIndex(minX + Math.min(lookaheadX, 0)), tileIndex(minY + Math.min(lookaheadY, 0)),
+                tileIndex(minX + width + Math.max(lookaheadX, 0)), tileIndex(minY + height + Math.max(lookaheadY, 0)));
+        addTiles(tiles, zoom, minTileX - 1, minTileY - 1, maxTileX + 1, maxTileY + 1);
+        if (zoom > TileManager.MIN_VALID_ZOOM)
+            addTiles(tiles, zoom - 1, minTileX >> 1, minTileY >> 1, maxTileX >> 1, maxTileY >> 1);
+        if (zoom < TileManager.MAX_VALID_ZOOM)
+            addTiles(tiles, zoom + 1, 2 * minTileX, 2 * minTileY, 2 * maxTileX + 1, 2 * maxTileY + 1);
+
+        tiles.removeAll(visibleTiles);
+        return tiles.stream().limit(MAX_PREFETCHED_TILES).toList();
+    }
+
+    /**
+     * Updates the speed of the map with its move since the previous call, or resets it if the zoom level changed.
+     *
+     * @param zoom   the zoom level
+     * @param minX   the x-coordinate of the top left corner of the visible part of the map
+     * @param minY   the y-coordinate of the top left corner of the visible part of the map
+     * @param timeNs the current time, in nanoseconds
+     */
+    private void updateSpeed(int zoom, double minX, double minY, long timeNs) {
+        long elapsedNs = timeNs - lastTimeNs;
+        if (zoom != lastZoom) {
+            speedX = 0;
+            speedY = 0;
+        } else if (elapsedNs > 0) {
+            double smoothing = 1 - Math.exp(-elapsedNs / SPEED_TIME_CONSTANT_NS);
+            speedX += ((minX - lastMinX) / elapsedNs - speedX) * smoothing;
+            speedY += ((minY - lastMinY) / elapsedNs - speedY) * smoothing;
+        }
+        lastZoom = zoom;
+        lastMinX = minX;
+        lastMinY = minY;
+        lastTimeNs = timeNs;
+    }
+
+    /**
+     * Returns the index of the tile containing the given coordinate.
+     *
+     * @param coordinate the coordinate
+     * @return the index of the tile
+     */
+    private static int tileIndex(double coordinate) {
+        return (int) Math.floor(coordinate / TileManager.TILE_SIZE);
+    }
+
+    /**
+     * Adds the valid tiles of the given rectangle of tiles to the given set, row by row.
+     *
+     * @param tiles    the set of tiles
+     * @param zoom     the zoom level
+     * @param minTileX the index of the leftmost tiles
+     * @param minTileY the index of the topmost tiles
+     * @param maxTileX the index of the rightmost tiles
+     * @param maxTileY the index of the bottommost tiles
+     */
+    private static void addTiles(Set<TileManager.TileId> tiles, int zoom,
+                                 int minTileX, int minTileY, int maxTileX, int maxTileY) {
+        for (int y = minTileY; y <= maxTileY; ++y) {
+            for (int x = minTileX; x <= maxTileX; ++x) {
+                if (TileManager.TileId.isValid(zoom, x, y)) tiles.add(new TileManager.TileId(zoom, x, y));
+            }
+        }
+    }
+}
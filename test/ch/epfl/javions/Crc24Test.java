@@ -5,10 +5,14 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HexFormat;
 import java.util.List;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class Crc24Test {
 
@@ -65,4 +69,117 @@ class Crc24Test {
             assertEquals(0, crc24.crc(m));
         }
     }
-}
\ No newline at end of file
+
+    private static void flipBit(byte[] bytes, int bit) {
+        bytes[bit / 8] ^= (byte) (0x80 >>> (bit % 8));
+    }
+
+    @Test
+    void crc24CorrectFixesOneFlippedBit() {
+        var crc24 = new Crc24(Crc24.GENERATOR);
+        for (var message : ADSB_MESSAGES) {
+            var expected = HEX_FORMAT.parseHex(message);
+            for (int bit = 0; bit < 112; bit += 1) {
+                var m = expected.clone();
+                flipBit(m, bit);
+                assertEquals(1, crc24.correct(m, 1));
+                assertArrayEquals(expected, m);
+            }
+        }
+    }
+
+    @Test
+    void crc24CorrectFixesTwoFlippedBits() {
+        var crc24 = new Crc24(Crc24.GENERATOR);
+        var rng = new Random(2023);
+        for (var message : ADSB_MESSAGES) {
+            var expected = HEX_FORMAT.parseHex(message);
+            for (int i = 0; i < 100; i += 1) {
+                var bit1 = rng.nextInt(112);
+                var bit2 = (bit1 + 1 + rng.nextInt(111)) % 112;
+                var m = expected.clone();
+                flipBit(m, bit1);
+                flipBit(m, bit2);
+                assertEquals(-1, crc24.correct(m.clone(), 1));
+                assertEquals(2, crc24.correct(m, 2));
+                assertArrayEquals(expected, m);
+            }
+        }
+    }
+
+    @Test
+    void crc24CorrectLeavesValidAndUncorrectableMessages() {
+        var crc24 = new Crc24(Crc24.GENERATOR);
+        var valid = HEX_FORMAT.parseHex(ADSB_MESSAGES.get(0));
+        assertEquals(0, crc24.correct(valid, 2));
+        assertArrayEquals(HEX_FORMAT.parseHex(ADSB_MESSAGES.get(0)), valid);
+
+        var m = valid.clone();
+        flipBit(m, 3);
+        assertEquals(-1, crc24.correct(m, 0));
+        for (int bit : new int[]{10, 50, 90})
+            flipBit(m, bit);
+        var corrupted = m.clone();
+        assertEquals(-1, crc24.correct(m, 2));
+        assertArrayEquals(corrupted, m);
+    }
+
+    @Test
+    void crc24CorrectThrowsOnInvalidArguments() {
+        var crc24 = new Crc24(Crc24.GENERATOR);
+        assertThrows(IllegalArgumentException.class, () -> crc24.correct(new byte[7], 1));
+        assertThrows(IllegalArgumentException.class, () -> crc24.correct(new byte[14], 3));
+        assertThrows(UnsupportedOperationException.class, () -> new Crc24(0xFACE51).correct(new byte[14], 1));
+    }
+
+    private static int bitwiseCrc(byte[] bytes) {
+        var crc = 0;
+        for (int i = 0; i < bytes.length * 8 + 24; i += 1) {
+            var bit = i < bytes.length * 8 ? (bytes[i / 8] >>> (7 - i % 8)) & 1 : 0;
+            var top = (crc >>> 23) & 1;
+            crc = ((crc << 1) | bit) & 0xFFFFFF;
+            if (top == 1) crc ^= Crc24.GENERATOR;
+        }
+        return crc;
+    }
+
+    @Test
+    void crc24CrcWorksOnRandomMessagesOfAnyLength() {
+        var crc24 = new Crc24(Crc24.GENERATOR);
+        var rng = new Random(2023);
+        for (int length = 0; length < 40; length += 1) {
+            for (int i = 0; i < 20; i += 1) {
+                var m = new byte[length];
+                rng.nextBytes(m);
+                assertEquals(bitwiseCrc(m), crc24.crc(m));
+            }
+        }
+    }
+
+    @Test
+    void crc24CrcWorksOnLongsAndByteBuffers() {
+        var crc24 = new Crc24(Crc24.GENERATOR);
+        var rng = new Random(2024);
+        for (int i = 0; i < 1000; i += 1) {
+            var m = new byte[14];
+            rng.nextBytes(m);
+            var buffer = ByteBuffer.allocate(20).position(3).put(m).position(3).limit(17);
+            var high = buffer.getLong(1) & 0xFFFF_FFFF_FFFFL;
+            var low = buffer.getLong(9);
+            var expected = bitwiseCrc(m);
+            assertEquals(expected, crc24.crc(high, low));
+            assertEquals(expected, crc24.crc(buffer));
+            assertEquals(3, buffer.position());
+        }
+        var shortBuffer = ByteBuffer.wrap(HEX_FORMAT.parseHex("8D392AE499"));
+        assertEquals(bitwiseCrc(HEX_FORMAT.parseHex("8D392AE499")), crc24.crc(shortBuffer));
+    }
+
+    @Test
+    void crc24CrcWorksOnLongsWithDifferentGenerator() {
+        var crc24 = new Crc24(0xFACE51);
+        var m = HEX_FORMAT.parseHex(ADSB_MESSAGES.get(0));
+        var buffer = ByteBuffer.wrap(m);
+        assertEquals(3677528, crc24.crc(buffer.getLong(0) >>> 16, buffer.getLong(6)));
+    }
+}
@@ -12,6 +12,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class AirborneVelocityMessageTest {
     private static final double KNOT = 1852d / (60d * 60d);
+    private static final double FOOT = 0.3048;
+    private static final double FOOT_PER_MINUTE = FOOT / 60d;
 
     @Test
     void airbornePositionMessageConstructorThrowsWhenIcaoAddressIsNull() {
@@ -195,4 +197,39 @@ class AirborneVelocityMessageTest {
         assertEquals(4d * 375 * KNOT, supersonicAVM.speed(), 1e-5);
         assertEquals(243.98, Math.toDegrees(messageB.trackOrHeading()), 0.005);
     }
-}
\ No newline at end of file
+
+    @Test
+    void airborneVelocityMessageOfDecodesVerticalRateAndGnssBaroDifference() {
+        // Messages A and B from:
+        // https://mode-s.org/decode/content/ads-b/5-airborne-velocity.html
+        var rawMessageA = RawMessage.of(0L, HexFormat.of().parseHex("8D485020994409940838175B284F"));
+        assertNotNull(rawMessageA);
+        var messageA = AirborneVelocityMessage.of(rawMessageA);
+        assertEquals(-832 * FOOT_PER_MINUTE, messageA.verticalRate(), 1e-9);
+        assertEquals(550 * FOOT, messageA.gnssBaroDifference(), 1e-9);
+
+        var rawMessageB = RawMessage.of(0L, HexFormat.of().parseHex("8DA05F219B06B6AF189400CBC33F"));
+        assertNotNull(rawMessageB);
+        var messageB = AirborneVelocityMessage.of(rawMessageB);
+        assertEquals(-2304 * FOOT_PER_MINUTE, messageB.verticalRate(), 1e-9);
+        assertTrue(Double.isNaN(messageB.gnssBaroDifference()));
+    }
+
+    @Test
+    void airborneVelocityMessageOfReturnsNaNWhenVerticalRateIsUnknown() {
+        var baseMessage = "8D485020994409940838175B284F";
+        var payload = Long.parseLong(baseMessage.substring(8, 22), 16) & ~(0x1FFL << 10);
+        var rawMessage = RawMessage.of(0L, HexFormat.of().parseHex(messageWithNewPayload(baseMessage, payload)));
+        assertNotNull(rawMessage);
+        var message = AirborneVelocityMessage.of(rawMessage);
+        assertTrue(Double.isNaN(message.verticalRate()));
+        assertEquals(550 * FOOT, message.gnssBaroDifference(), 1e-9);
+    }
+
+    @Test
+    void airborneVelocityMessageConstructorWithoutVerticalFieldsSetsThemToNaN() {
+        var message = new AirborneVelocityMessage(0, new IcaoAddress("ABCDEF"), 1, 1);
+        assertTrue(Double.isNaN(message.verticalRate()));
+        assertTrue(Double.isNaN(message.gnssBaroDifference()));
+    }
+}
@@ -1,6 +1,7 @@
 package ch.epfl.javions.adsb;
 
 import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Units;
 import ch.epfl.javions.aircraft.IcaoAddress;
 import org.junit.jupiter.api.Test;
 
@@ -160,8 +161,9 @@ class AircraftStateAccumulatorTest {
                 new ParityXY(1, 93364, 89266)
         };
         var expectedLongitudeDeg = 6.57520;
+        // The third message is decoded alone, relative to the position decoded from the two first ones
         var expectedLatitudesDeg = new double[]{
-                Double.NaN, 46.8672, 46.8672, 46.8674
+                Double.NaN, 46.8672, 46.8674, 46.8674
         };
 
         var icao = new IcaoAddress("ABCDEF");
@@ -185,6 +187,160 @@ class AircraftStateAccumulatorTest {
         }
     }
 
+    @Test
+    void aircraftStateAccumulatorDecodesSingleMessagesAfterFirstPosition() {
+        var icao = new IcaoAddress("ABCDEF");
+        var stateSetter = new AircraftState();
+        var accumulator = new AircraftStateAccumulator<>(stateSetter);
+
+        var timeStampNs = 109L;
+        accumulator.update(new AirbornePositionMessage(timeStampNs, icao, 1000, 0, cpr(98152), cpr(98838)));
+        assertNull(stateSetter.position);
+        timeStampNs += 1000L;
+        accumulator.update(new AirbornePositionMessage(timeStampNs, icao, 1000, 1, cpr(95758), cpr(81899)));
+        var first = stateSetter.position;
+        assertNotNull(first);
+
+        // Even messages only, which could not be decoded without a previous position
+        for (int i = 0; i < 5; i += 1) {
+            timeStampNs += 1_000_000_000L;
+            stateSetter.position = null;
+            accumulator.update(new AirbornePositionMessage(timeStampNs, icao, 1000, 0, cpr(98152), cpr(98838)));
+            assertNotNull(stateSetter.position);
+            assertEquals(first.longitude(), stateSetter.position.longitude(), 1e-4);
+            assertEquals(first.latitude(), stateSetter.position.latitude(), 1e-4);
+        }
+
+        // The last position is too old to be used
+        timeStampNs += 10_000_000_001L;
+        stateSetter.position = null;
+        accumulator.update(new AirbornePositionMessage(timeStampNs, icao, 1000, 0, cpr(98152), cpr(98838)));
+        assertNull(stateSetter.position);
+        // The position is decoded again from a new pair of messages
+        timeStampNs += 1000L;
+        accumulator.update(new AirbornePositionMessage(timeStampNs, icao, 1000, 1, cpr(95758), cpr(81899)));
+        assertNotNull(stateSetter.position);
+        assertEquals(first.longitude(), stateSetter.position.longitude(), 1e-4);
+        assertEquals(first.latitude(), stateSetter.position.latitude(), 1e-4);
+    }
+
+    @Test
+    void aircraftStateAccumulatorConstructorThrowsIfReceiverRangeIsInvalid() {
+        var receiver = geoPos(6.63, 46.52);
+        assertThrows(IllegalArgumentException.class,
+                () -> new AircraftStateAccumulator<>(new AircraftState(), receiver, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AircraftStateAccumulator<>(
+                new AircraftState(), receiver, AircraftStateAccumulator.MAX_RECEIVER_RANGE + 1));
+    }
+
+    @Test
+    void aircraftStateAccumulatorChecksFirstPositionAgainstReceiver() {
+        var icao = new IcaoAddress("ABCDEF");
+        var even = new AirbornePositionMessage(109L, icao, 1000, 0, cpr(98152), cpr(98838));
+        var odd = new AirbornePositionMessage(1109L, icao, 1000, 1, cpr(95758), cpr(81899));
+
+        // Lausanne, about 15 km away from the aircraft
+        var stateSetter = new AircraftState();
+        var accumulator = new AircraftStateAccumulator<>(stateSetter, geoPos(6.63, 46.52));
+        // A single message is not enough, it could come from an aircraft beyond the range
+        accumulator.update(odd);
+        assertNull(stateSetter.position);
+        accumulator.update(even);
+        accumulator.update(odd);
+        assertNotNull(stateSetter.position);
+        assertEquals(6.57520, Math.toDegrees(stateSetter.position.longitude()), 5e-5);
+        assertEquals(46.52444, Math.toDegrees(stateSetter.position.latitude()), 5e-5);
+
+        // About 240 nautical miles away, out of the range of the receiver
+        stateSetter = new AircraftState();
+        accumulator = new AircraftStateAccumulator<>(stateSetter, geoPos(10.575, 43.624));
+        accumulator.update(even);
+        accumulator.update(odd);
+        assertNull(stateSetter.position);
+
+        // About 15 nautical miles away, out of a smaller range
+        stateSetter = new AircraftState();
+        accumulator = new AircraftStateAccumulator<>(stateSetter, geoPos(6.63, 46.27),
+                Units.convertFrom(10, Units.Length.NAUTICAL_MILE));
+        accumulator.update(even);
+        accumulator.update(odd);
+        assertNull(stateSetter.position);
+    }
+
+    @Test
+    void aircraftStateAccumulatorRejectsAircraftBeyondReceiverRange() {
+        var icao = new IcaoAddress("ABCDEF");
+        // About 200 nautical miles north of the receiver, whose messages decoded relative to the receiver give a
+        // position about 160 nautical miles south of it
+        double longitude = 6.63, latitude = 46.52 + 200 / 60.0;
+        var stateSetter = new AircraftState();
+        var accumulator = new AircraftStateAccumulator<>(stateSetter, geoPos(6.63, 46.52));
+
+        var timeStampNs = 100L;
+        for (int i = 0; i < 10; i += 1) {
+            accumulator.update(positionMessage(timeStampNs, icao, longitude, latitude, i % 2));
+            assertNull(stateSetter.position);
+            timeStampNs += 500_000_000L;
+        }
+
+        // Without a receiver, the same messages give the position of the aircraft
+        var withoutReceiver = new AircraftState();
+        accumulator = new AircraftStateAccumulator<>(withoutReceiver);
+        accumulator.update(positionMessage(100L, icao, longitude, latitude, 0));
+        accumulator.update(positionMessage(200L, icao, longitude, latitude, 1));
+        assertEquals(longitude, Math.toDegrees(withoutReceiver.position.longitude()), 1e-3);
+        assertEquals(latitude, Math.toDegrees(withoutReceiver.position.latitude()), 1e-3);
+    }
+
+    @Test
+    void aircraftStateAccumulatorRejectsPositionsTheAircraftCouldNotReach() {
+        var icao = new IcaoAddress("ABCDEF");
+        double longitude = 6.63, latitude = 46.52;
+        var stateSetter = new AircraftState();
+        var accumulator = new AircraftStateAccumulator<>(stateSetter);
+
+        var timeStampNs = 100L;
+        accumulator.update(positionMessage(timeStampNs, icao, longitude, latitude, 0));
+        accumulator.update(positionMessage(timeStampNs += 500_000_000L, icao, longitude, latitude, 1));
+        assertNotNull(stateSetter.position);
+
+        // One degree north in a second
+        stateSetter.position = null;
+        accumulator.update(positionMessage(timeStampNs += 1_000_000_000L, icao, longitude, latitude + 1, 0));
+        assertNull(stateSetter.position);
+
+        // The position is decoded again from the following messages
+        for (int i = 1; i <= 4; i += 1)
+            accumulator.update(positionMessage(timeStampNs += 500_000_000L, icao, longitude, latitude, i % 2));
+        assertEquals(longitude, Math.toDegrees(stateSetter.position.longitude()), 1e-3);
+        assertEquals(latitude, Math.toDegrees(stateSetter.position.latitude()), 1e-3);
+    }
+
+    private static GeoPos geoPos(double longitudeDeg, double latitudeDeg) {
+        return new GeoPos(
+                (int) Math.rint(Math.scalb(longitudeDeg / 360, 32)),
+                (int) Math.rint(Math.scalb(latitudeDeg / 360, 32)));
+    }
+
+    /**
+     * Returns the position message of an aircraft at the given position, encoded as described by the standard.
+     */
+    private static AirbornePositionMessage positionMessage(long timeStampNs, IcaoAddress icao,
+                                                           double longitudeDeg, double latitudeDeg, int parity) {
+        double latitudeZone = 360.0 / (60 - parity);
+        double y = Math.rint(Math.scalb(mod(latitudeDeg, latitudeZone) / latitudeZone, 17));
+        double roundedLatitude = latitudeZone * (Math.scalb(y, -17) + Math.floor(latitudeDeg / latitudeZone));
+        int longitudeZones = Math.max(CprDecoder.longitudeZones(roundedLatitude / 360) - parity, 1);
+        double longitudeZone = 360.0 / longitudeZones;
+        double x = Math.rint(Math.scalb(mod(longitudeDeg, longitudeZone) / longitudeZone, 17));
+        return new AirbornePositionMessage(timeStampNs, icao, 1000, parity,
+                Math.scalb(x % (1 << 17), -17), Math.scalb(y % (1 << 17), -17));
+    }
+
+    private static double mod(double value, double divisor) {
+        return value - divisor * Math.floor(value / divisor);
+    }
+
     private static final class AircraftState implements AircraftStateSetter {
         long lastMessageTimeStampNs = -1L;
         int category = -1;
@@ -0,0 +1,198 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.aircraft.IcaoAddress;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AircraftStateEngineTest {
+    private static double cpr(int v) {
+        return Math.scalb((double) v, -17);
+    }
+
+    @Test
+    void aircraftStateEngineConstructorThrowsIfShardCountIsNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new AircraftStateEngine(0, null));
+        assertThrows(IllegalArgumentException.class, () -> new AircraftStateEngine(12, null));
+        assertDoesNotThrow(() -> new AircraftStateEngine(1, null));
+        assertDoesNotThrow(() -> new AircraftStateEngine(64, null));
+    }
+
+    private static final IcaoAddress ICAO = new IcaoAddress("4B1814");
+    private static final List<Message> MESSAGES = List.of(
+            new AircraftIdentificationMessage(100, ICAO, 0xA3, new CallSign("SWR123")),
+            new AirbornePositionMessage(200, ICAO, 1000, 0, cpr(98152), cpr(98838)),
+            new AirborneVelocityMessage(300, ICAO, 200, 1),
+            new AirbornePositionMessage(400, ICAO, 1100, 1, cpr(95758), cpr(81899)),
+            new AirbornePositionMessage(500, ICAO, 1200, 0, cpr(98152), cpr(98838)));
+
+    @Test
+    void aircraftStateEngineChangesReplayUpdatesOfAccumulatorWhenDrainedAfterEachMessage() {
+        var expected = new RecordingState();
+        var accumulator = new AircraftStateAccumulator<>(expected);
+        MESSAGES.forEach(accumulator::update);
+
+        for (int shardCount : new int[]{1, 4}) {
+            var engine = new AircraftStateEngine(shardCount, null);
+            var actual = new RecordingState();
+            for (var message : MESSAGES) {
+                engine.apply(message);
+                var changes = engine.drainChanges();
+                assertEquals(1, changes.size());
+                assertEquals(ICAO, changes.get(0).icaoAddress());
+                assertFalse(changes.get(0).removed());
+                changes.get(0).applyTo(actual);
+            }
+            assertEquals(expected.calls, actual.calls);
+            assertTrue(engine.drainChanges().isEmpty());
+        }
+    }
+
+    @Test
+    void aircraftStateEngineChangeHoldsLastValueOfEachProperty() {
+        var expected = new RecordingState();
+        var accumulator = new AircraftStateAccumulator<>(expected);
+        MESSAGES.forEach(accumulator::update);
+
+        var engine = new AircraftStateEngine(null);
+        MESSAGES.forEach(engine::apply);
+        var changes = engine.drainChanges();
+        assertEquals(1, changes.size());
+        var change = changes.get(0);
+        assertEquals((1 << 7) - 1, change.updatedProperties());
+
+        var actual = new RecordingState();
+        change.applyTo(actual);
+        // A single call for each property, with the last value the accumulator set
+        assertEquals(List.of("category 163", "callSign CallSign[string=SWR123]", "altitude 1200.0",
+                expected.last("position "), "velocity 200.0", "track 1.0", "timeStamp 500"), actual.calls);
+    }
+
+    @Test
+    void aircraftStateEngineChangeHasFixedSizeWhateverTheNumberOfMessages() {
+        var engine = new AircraftStateEngine(null);
+        for (int m = 0; m < 10_000; ++m)
+            engine.apply(new AirborneVelocityMessage(m, ICAO, m, 1));
+        var changes = engine.drainChanges();
+        assertEquals(1, changes.size());
+
+        var actual = new RecordingState();
+        changes.get(0).applyTo(actual);
+        assertEquals(List.of("velocity 9999.0", "track 1.0", "timeStamp 9999"), actual.calls);
+    }
+
+    @Test
+    void aircraftStateEnginePurgeRemovesAircraftSilentForOneMinute() {
+        var engine = new AircraftStateEngine(null);
+        var old = new IcaoAddress("ABCDEF");
+        var recent = new IcaoAddress("123456");
+        engine.apply(new AirborneVelocityMessage(0, old, 100, 1));
+        engine.apply(new AirborneVelocityMessage(30_000_000_000L, recent, 100, 1));
+        engine.drainChanges();
+
+        engine.purge();
+        assertTrue(engine.drainChanges().isEmpty());
+        assertEquals(2, engine.size());
+
+        engine.apply(new AirborneVelocityMessage(60_000_000_001L, recent, 100, 1));
+        engine.purge();
+        var changes = engine.drainChanges();
+        assertEquals(1, engine.size());
+        assertEquals(2, changes.size());
+        var removal = changes.stream().filter(AircraftStateEngine.Change::removed).toList();
+        assertEquals(1, removal.size());
+        assertEquals(old, removal.get(0).icaoAddress());
+        assertEquals(0, removal.get(0).updatedProperties());
+    }
+
+    @Test
+    void aircraftStateEngineKeepsOrderOfMessagesOfEachAircraftWithSeveralThreads() throws InterruptedException {
+        var engine = new AircraftStateEngine(4, null);
+        var threadCount = 8;
+        var aircraftPerThread = 50;
+        var messagesPerAircraft = 200;
+        var states = new HashMap<IcaoAddress, RecordingState>();
+
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; ++t) {
+            var first = t * aircraftPerThread;
+            threads.add(new Thread(() -> {
+                for (int m = 0; m < messagesPerAircraft; ++m) {
+                    for (int a = first; a < first + aircraftPerThread; ++a)
+                        engine.apply(new AirborneVelocityMessage(m, IcaoAddress.ofInt(a), m, 1));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        // Drain while the threads are applying the messages
+        while (threads.stream().anyMatch(Thread::isAlive)) drainInto(engine, states);
+        for (var thread : threads) thread.join();
+        drainInto(engine, states);
+
+        assertEquals(threadCount * aircraftPerThread, states.size());
+        // The changes of an aircraft skip the values overwritten before being drained, but never go back
+        for (var state : states.values()) {
+            var velocities = state.calls.stream()
+                    .filter(c -> c.startsWith("velocity "))
+                    .map(c -> Double.parseDouble(c.substring("velocity ".length())))
+                    .toList();
+            for (int i = 1; i < velocities.size(); ++i)
+                assertTrue(velocities.get(i - 1) < velocities.get(i));
+            assertEquals(messagesPerAircraft - 1.0, velocities.get(velocities.size() - 1).doubleValue());
+        }
+    }
+
+    private static void drainInto(AircraftStateEngine engine, Map<IcaoAddress, RecordingState> states) {
+        for (var change : engine.drainChanges())
+            change.applyTo(states.computeIfAbsent(change.icaoAddress(), a -> new RecordingState()));
+    }
+
+    private static final class RecordingState implements AircraftStateSetter {
+        private final List<String> calls = new ArrayList<>();
+
+        private String last(String prefix) {
+            return calls.stream().filter(c -> c.startsWith(prefix)).reduce((a, b) -> b).orElseThrow();
+        }
+
+        @Override
+        public void setLastMessageTimeStampNs(long timeStampNs) {
+            calls.add("timeStamp " + timeStampNs);
+        }
+
+        @Override
+        public void setCategory(int category) {
+            calls.add("category " + category);
+        }
+
+        @Override
+        public void setCallSign(CallSign callsign) {
+            calls.add("callSign " + callsign);
+        }
+
+        @Override
+        public void setPosition(GeoPos position) {
+            calls.add("position " + position.longitudeT32() + " " + position.latitudeT32());
+        }
+
+        @Override
+        public void setAltitude(double altitude) {
+            calls.add("altitude " + altitude);
+        }
+
+        @Override
+        public void setVelocity(double velocity) {
+            calls.add("velocity " + velocity);
+        }
+
+        @Override
+        public void setTrackOrHeading(double trackOrHeading) {
+            calls.add("track " + trackOrHeading);
+        }
+    }
+}
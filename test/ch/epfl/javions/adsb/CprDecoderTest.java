@@ -4,7 +4,10 @@ import ch.epfl.javions.GeoPos;
 import ch.epfl.javions.Units;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class CprDecoderTest {
     @Test
@@ -46,4 +49,106 @@ public class CprDecoderTest {
         GeoPos pos = CprDecoder.decodePosition(0.62, 0.42, 0.6200000000000000001, 0.4200000000000000001, 0);
         System.out.println(pos);
     }
+
+    private static double turns(double degrees) {
+        return Units.convert(degrees, Units.Angle.DEGREE, Units.Angle.TURN);
+    }
+
+    @Test
+    void longitudeZonesMatchesTransitionLatitudesOfTheStandard() {
+        assertEquals(59, CprDecoder.longitudeZones(0));
+        assertEquals(59, CprDecoder.longitudeZones(turns(10.47)));
+        assertEquals(58, CprDecoder.longitudeZones(turns(10.48)));
+        assertEquals(45, CprDecoder.longitudeZones(turns(-40)));
+        assertEquals(3, CprDecoder.longitudeZones(turns(86.5)));
+        assertEquals(2, CprDecoder.longitudeZones(turns(86.54)));
+        assertEquals(2, CprDecoder.longitudeZones(turns(87)));
+        assertEquals(1, CprDecoder.longitudeZones(turns(87.01)));
+        assertEquals(1, CprDecoder.longitudeZones(turns(-89.9)));
+    }
+
+    @Test
+    void longitudeZonesMatchesTrigonometricFormula() {
+        var rng = new Random(2023);
+        var numerator = 1 - Math.cos(2 * Math.PI / 60);
+        for (int i = 0; i < 100_000; ++i) {
+            var latitude = rng.nextDouble(-0.24, 0.24);
+            var argument = 1 - numerator / Math.pow(Math.cos(Units.convertFrom(latitude, Units.Angle.TURN)), 2);
+            var expected = Double.isNaN(Math.acos(argument)) ? 1 : (int) Math.floor(2 * Math.PI / Math.acos(argument));
+            assertEquals(expected, CprDecoder.longitudeZones(latitude));
+        }
+    }
+
+    @Test
+    void decodePositionT32PacksDecodedPosition() {
+        double x0 = Math.scalb(111600d, -17);
+        double y0 = Math.scalb(94445d, -17);
+        double x1 = Math.scalb(108865d, -17);
+        double y1 = Math.scalb(77558d, -17);
+
+        for (int mostRecent = 0; mostRecent <= 1; ++mostRecent) {
+            long position = CprDecoder.decodePositionT32(x0, y0, x1, y1, mostRecent);
+            GeoPos geoPos = CprDecoder.decodePosition(x0, y0, x1, y1, mostRecent);
+            assertEquals(geoPos.longitudeT32(), CprDecoder.longitudeT32(position));
+            assertEquals(geoPos.latitudeT32(), CprDecoder.latitudeT32(position));
+            assertEquals(geoPos, CprDecoder.toGeoPos(position));
+        }
+    }
+
+    @Test
+    void decodePositionT32ReturnsNoPositionWhenZonesDiffer() {
+        // Latitudes of 10.45° (even) and 10.5° (odd), on each side of the transition from 59 to 58 zones
+        double y0 = 10.45 / (360d / 60) - 1;
+        double y1 = 10.5 / (360d / 59) - 1;
+        assertEquals(CprDecoder.NO_POSITION, CprDecoder.decodePositionT32(0, y0, 0, y1, 0));
+        assertNull(CprDecoder.decodePosition(0, y0, 0, y1, 1));
+
+        // Both at 10.45°, in the same zone
+        y1 = 10.45 / (360d / 59) - 1;
+        assertEquals(10.45, Units.convert((double) CprDecoder.latitudeT32(CprDecoder.decodePositionT32(0, y0, 0, y1, 0)),
+                Units.Angle.T32, Units.Angle.DEGREE), 1e-6);
+    }
+
+    @Test
+    void decodeLocalPositionT32MatchesGlobalDecoding() {
+        double x0 = Math.scalb(111600d, -17);
+        double y0 = Math.scalb(94445d, -17);
+        double x1 = Math.scalb(108865d, -17);
+        double y1 = Math.scalb(77558d, -17);
+        long even = CprDecoder.decodePositionT32(x0, y0, x1, y1, 0);
+        long odd = CprDecoder.decodePositionT32(x0, y0, x1, y1, 1);
+
+        // A reference about 100 km away from the aircraft
+        long reference = CprDecoder.ofGeoPos(new GeoPos(
+                CprDecoder.longitudeT32(even) + (int) Math.scalb(1d / 360, 32),
+                CprDecoder.latitudeT32(even) - (int) Math.scalb(0.5 / 360, 32)));
+        assertEquals(even, CprDecoder.decodeLocalPositionT32(x0, y0, 0, reference));
+        assertEquals(odd, CprDecoder.decodeLocalPositionT32(x1, y1, 1, reference));
+    }
+
+    @Test
+    void decodeLocalPositionT32WrapsAroundAntimeridian() {
+        // An aircraft at 179.9° of longitude, decoded relative to a reference at -179.9°
+        var rng = new Random(2023);
+        for (int i = 0; i < 1000; ++i) {
+            double latitude = rng.nextDouble(-80, 80);
+            double longitude = 179.9;
+            int parity = rng.nextInt(2);
+            double y = latitude / (360d / (60 - parity));
+            y -= Math.floor(y);
+            double phi = (360d / (60 - parity)) * (Math.floor(latitude / (360d / (60 - parity))) + y);
+            int zones = Math.max(CprDecoder.longitudeZones(phi / 360) - parity, 1);
+            double x = longitude / (360d / zones);
+            x -= Math.floor(x);
+
+            long reference = CprDecoder.ofGeoPos(new GeoPos(
+                    (int) Math.rint(Math.scalb(-179.9 / 360, 32)),
+                    (int) Math.rint(Math.scalb(latitude / 360, 32))));
+            long position = CprDecoder.decodeLocalPositionT32(x, y, parity, reference);
+            assertEquals(longitude, Units.convert((double) CprDecoder.longitudeT32(position),
+                    Units.Angle.T32, Units.Angle.DEGREE), 1e-6);
+            assertEquals(latitude, Units.convert((double) CprDecoder.latitudeT32(position),
+                    Units.Angle.T32, Units.Angle.DEGREE), 1e-6);
+        }
+    }
 }
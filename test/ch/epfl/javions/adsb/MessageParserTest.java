@@ -0,0 +1,84 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.ByteString;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageParserTest {
+    private static final List<String> MESSAGES = List.of(
+            "8D4D2228234994B7284820323B81",
+            "8D34608358B982D5B3532EE0620C",
+            "8D344645990CA093703C0ABEF91E",
+            "8DA4D3E2990C4A1B10048A8C0A95",
+            "8D392AE89B00009570AC00DDDBE5",
+            "8D300164EA0DC877733C08DEAF57");
+
+    private static final class RecordingVisitor implements MessageParser.Visitor {
+        private final List<String> fields = new ArrayList<>();
+
+        @Override
+        public void identification(long timeStampNs, int icaoAddress, int category, CallSign callSign) {
+            fields.add(List.of(timeStampNs, icaoAddress, category, callSign).toString());
+        }
+
+        @Override
+        public void position(long timeStampNs, int icaoAddress, double altitude, int parity, double x, double y) {
+            fields.add(List.of(timeStampNs, icaoAddress, altitude, parity, x, y).toString());
+        }
+
+        @Override
+        public void velocity(long timeStampNs, int icaoAddress, double speed, double trackOrHeading,
+                             double verticalRate, double gnssBaroDifference) {
+            fields.add(List.of(timeStampNs, icaoAddress, speed, trackOrHeading, verticalRate, gnssBaroDifference)
+                    .toString());
+        }
+    }
+
+    private static String fieldsOf(Message message) {
+        var icaoAddress = message.icaoAddress().value();
+        return switch (message) {
+            case AircraftIdentificationMessage m ->
+                    List.of(m.timeStampNs(), icaoAddress, m.category(), m.callSign()).toString();
+            case AirbornePositionMessage m ->
+                    List.of(m.timeStampNs(), icaoAddress, m.altitude(), m.parity(), m.x(), m.y()).toString();
+            case AirborneVelocityMessage m ->
+                    List.of(m.timeStampNs(), icaoAddress, m.speed(), m.trackOrHeading(), m.verticalRate(),
+                            m.gnssBaroDifference()).toString();
+            default -> throw new Error();
+        };
+    }
+
+    @Test
+    void messageParserVisitorReceivesFieldsOfParsedMessages() {
+        for (var hex : MESSAGES) {
+            var rawMessage = new RawMessage(1000, ByteString.ofHexadecimalString(hex));
+            var message = MessageParser.parse(rawMessage);
+
+            var visitor = new RecordingVisitor();
+            var parsed = MessageParser.parse(rawMessage.payload(), rawMessage.icaoAddress().value(),
+                    rawMessage.timeStampNs(), visitor);
+            var packedVisitor = new RecordingVisitor();
+            var packedParsed = MessageParser.parse(PackedRawMessage.of(rawMessage), packedVisitor);
+
+            assertEquals(message != null, parsed);
+            assertEquals(parsed, packedParsed);
+            assertEquals(visitor.fields, packedVisitor.fields);
+            assertEquals(message == null ? List.of() : List.of(fieldsOf(message)), visitor.fields);
+        }
+    }
+
+    @Test
+    void messageParserReturnsNullForUnknownTypeCodes() {
+        var rawMessage = new RawMessage(0, ByteString.ofHexadecimalString("8D300164EA0DC877733C08DEAF57"));
+        assertEquals(29, rawMessage.typeCode());
+        assertNull(MessageParser.parse(rawMessage));
+
+        var visitor = new RecordingVisitor();
+        assertFalse(MessageParser.parse(rawMessage.payload(), 0, 0, visitor));
+        assertTrue(visitor.fields.isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.aircraft.IcaoAddress;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageQueueTest {
+    private static Message message(long timeStampNs) {
+        return new AirborneVelocityMessage(timeStampNs, new IcaoAddress("ABCDEF"), 100, 1);
+    }
+
+    private static List<Long> timeStamps(List<Message> messages) {
+        return messages.stream().map(Message::timeStampNs).toList();
+    }
+
+    @Test
+    void messageQueueConstructorThrowsIfCapacityIsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageQueue(0, MessageQueue.OverflowPolicy.BLOCK));
+        assertThrows(NullPointerException.class, () -> new MessageQueue(1, null));
+    }
+
+    @Test
+    void messageQueueTakeBatchReturnsMessagesInOrder() throws InterruptedException {
+        var queue = new MessageQueue(10, MessageQueue.OverflowPolicy.BLOCK);
+        for (int i = 0; i < 7; ++i) queue.put(message(i));
+
+        var batch = new ArrayList<Message>();
+        assertEquals(5, queue.takeBatch(batch, 5));
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), timeStamps(batch));
+        batch.clear();
+        assertEquals(2, queue.takeBatch(batch, 5));
+        assertEquals(List.of(5L, 6L), timeStamps(batch));
+        assertEquals(0, queue.size());
+        assertEquals(7, queue.receivedCount());
+        assertEquals(0, queue.droppedCount());
+    }
+
+    @Test
+    void messageQueueDropNewestKeepsOldestMessages() throws InterruptedException {
+        var queue = new MessageQueue(3, MessageQueue.OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 5; ++i) queue.put(message(i));
+
+        var batch = new ArrayList<Message>();
+        queue.takeBatch(batch, 10);
+        assertEquals(List.of(0L, 1L, 2L), timeStamps(batch));
+        assertEquals(5, queue.receivedCount());
+        assertEquals(2, queue.droppedCount());
+    }
+
+    @Test
+    void messageQueueDropOldestKeepsNewestMessages() throws InterruptedException {
+        var queue = new MessageQueue(3, MessageQueue.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; ++i) queue.put(message(i));
+
+        var batch = new ArrayList<Message>();
+        queue.takeBatch(batch, 10);
+        assertEquals(List.of(2L, 3L, 4L), timeStamps(batch));
+        assertEquals(5, queue.receivedCount());
+        assertEquals(2, queue.droppedCount());
+    }
+
+    @Test
+    void messageQueueBlockWaitsForRoom() throws InterruptedException {
+        var queue = new MessageQueue(2, MessageQueue.OverflowPolicy.BLOCK);
+        var producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 1000; ++i) queue.put(message(i));
+            } catch (InterruptedException e) {
+                throw new Error(e);
+            }
+        });
+        producer.start();
+
+        var received = new ArrayList<Message>();
+        while (received.size() < 1000) {
+            queue.takeBatch(received, 10);
+            assertTrue(queue.size() <= 2);
+        }
+        producer.join();
+
+        for (int i = 0; i < 1000; ++i) assertEquals(i, received.get(i).timeStampNs());
+        assertEquals(0, queue.droppedCount());
+    }
+}
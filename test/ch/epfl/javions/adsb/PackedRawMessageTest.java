@@ -0,0 +1,55 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.ByteString;
+import org.junit.jupiter.api.Test;
+
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedRawMessageTest {
+    private static final List<String> MESSAGES = List.of(
+            "8D392AE499107FB5C00439035DB8",
+            "8D392AE89B00009570AC00DDDBE5",
+            "8D44095358BF06C19B95072CF116",
+            "8D4B1A5FF82300060049B8C4C7BD",
+            "8D4D2228234994B7284820323B81",
+            "8D34608358B982D5B3532EE0620C",
+            "8D300164EA0DC877733C08DEAF57",
+            "8D02009558613634BB4AFE919334");
+
+    @Test
+    void packedRawMessageAttributesAreThoseOfRawMessage() {
+        for (var message : MESSAGES) {
+            var rawMessage = new RawMessage(100, ByteString.ofHexadecimalString(message));
+            var packed = PackedRawMessage.of(rawMessage);
+            assertEquals(rawMessage.downLinkFormat(), packed.downLinkFormat());
+            assertEquals(Integer.parseInt(rawMessage.icaoAddress().string(), 16), packed.icaoAddress());
+            assertEquals(rawMessage.payload(), packed.payload());
+            assertEquals(rawMessage.typeCode(), packed.typeCode());
+            assertEquals(rawMessage, packed.toRawMessage());
+        }
+    }
+
+    @Test
+    void packedRawMessageOfBytesChecksCrc() {
+        for (var message : MESSAGES) {
+            var bytes = HexFormat.of().parseHex(message);
+            var packed = PackedRawMessage.of(1234, bytes);
+            assertNotNull(packed);
+            assertEquals(1234, packed.timeStampNs());
+            assertEquals(packed, PackedRawMessage.of(new RawMessage(1234, new ByteString(bytes))));
+
+            bytes[5] ^= 1;
+            assertNull(PackedRawMessage.of(1234, bytes));
+        }
+    }
+
+    @Test
+    void packedRawMessageConstructorThrowsOnInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new PackedRawMessage(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PackedRawMessage(0, 1L << 48, 0));
+        assertThrows(IllegalArgumentException.class, () -> PackedRawMessage.of(0, new byte[13]));
+    }
+}
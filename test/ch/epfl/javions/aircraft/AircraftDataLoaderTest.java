@@ -0,0 +1,122 @@
+package ch.epfl.javions.aircraft;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AircraftDataLoaderTest {
+    private static final IcaoAddress HB_JCN = new IcaoAddress("4B1814");
+    private static final IcaoAddress F_GZCP = new IcaoAddress("ABCDFF");
+    private static final IcaoAddress UNKNOWN = new IcaoAddress("123456");
+
+    private static AircraftDatabase database(Path directory) throws IOException {
+        var zipFile = directory.resolve("aircraft.zip");
+        try (var zip = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+            zip.putNextEntry(new ZipEntry("14.csv"));
+            zip.write("4B1814,HB-JCN,BCS3,AIRBUS A220-300,L2J,M\n".getBytes(UTF_8));
+            zip.putNextEntry(new ZipEntry("FF.csv"));
+            zip.write("ABCDFF,F-GZCP,A332,AIRBUS A330-200,L2J,H\n".getBytes(UTF_8));
+        }
+        return new AircraftDatabase(zipFile.toString(), directory.resolve("aircraft.index"));
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        var toRun = List.copyOf(tasks);
+        tasks.clear();
+        toRun.forEach(Runnable::run);
+    }
+
+    @Test
+    void aircraftDataLoaderConstructorThrowsIfCapacityIsInvalid(@TempDir Path directory) throws IOException {
+        var database = database(directory);
+        assertThrows(IllegalArgumentException.class, () -> new AircraftDataLoader(database, 0, Runnable::run));
+    }
+
+    @Test
+    void aircraftDataLoaderLooksUpInBackgroundOnce(@TempDir Path directory) throws IOException {
+        var tasks = new ArrayList<Runnable>();
+        var loader = new AircraftDataLoader(database(directory), 16, tasks::add);
+
+        var first = loader.get(HB_JCN);
+        var second = loader.get(HB_JCN);
+        assertFalse(first.isDone());
+        assertSame(first, second);
+        assertEquals(1, tasks.size());
+
+        runAll(tasks);
+        assertEquals(new AircraftRegistration("HB-JCN"), first.join().registration());
+
+        var cached = loader.get(HB_JCN);
+        assertTrue(cached.isDone());
+        assertEquals(first.join(), cached.join());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    void aircraftDataLoaderCachesUnknownAircraft(@TempDir Path directory) throws IOException {
+        var tasks = new ArrayList<Runnable>();
+        var loader = new AircraftDataLoader(database(directory), 16, tasks::add);
+
+        var lookup = loader.get(UNKNOWN);
+        runAll(tasks);
+        assertNull(lookup.join());
+
+        var cached = loader.get(UNKNOWN);
+        assertTrue(cached.isDone());
+        assertNull(cached.join());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    void aircraftDataLoaderForgetsLeastRecentlyAskedAircraft(@TempDir Path directory) throws IOException {
+        var tasks = new ArrayList<Runnable>();
+        var loader = new AircraftDataLoader(database(directory), 1, tasks::add);
+
+        loader.get(HB_JCN);
+        runAll(tasks);
+        loader.get(F_GZCP);
+        runAll(tasks);
+
+        assertTrue(loader.get(F_GZCP).isDone());
+        assertFalse(loader.get(HB_JCN).isDone());
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    void aircraftDataLoaderDoesNotCacheFailedLookups(@TempDir Path directory) {
+        var tasks = new ArrayList<Runnable>();
+        var database = new AircraftDatabase(directory.resolve("none.zip").toString());
+        var loader = new AircraftDataLoader(database, 16, tasks::add);
+
+        var lookup = loader.get(HB_JCN);
+        runAll(tasks);
+        var e = assertThrows(CompletionException.class, lookup::join);
+        assertTrue(e.getCause() instanceof IOException);
+
+        assertFalse(loader.get(HB_JCN).isDone());
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    void aircraftDataLoaderWorksWithVirtualThreads(@TempDir Path directory)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        try (var loader = new AircraftDataLoader(database(directory))) {
+            assertEquals("AIRBUS A330-200", loader.get(F_GZCP).get(10, TimeUnit.SECONDS).model());
+            assertNull(loader.get(UNKNOWN).get(10, TimeUnit.SECONDS));
+        }
+    }
+}
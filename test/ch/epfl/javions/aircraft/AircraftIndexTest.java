@@ -0,0 +1,116 @@
+package ch.epfl.javions.aircraft;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AircraftIndexTest {
+    private static final String HB_JCN = "HB-JCN,BCS3,AIRBUS A220-300,L2J,M";
+
+    private static Path writeZip(Path zipFile, Map<String, String> entries) throws IOException {
+        try (var zip = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+            for (var entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return zipFile;
+    }
+
+    private static Map<String, String> entries() {
+        var entries = new TreeMap<String, String>();
+        entries.put("00.csv", "000100,N1,C172,CESSNA 172,L1P,L\n4B1800,,,,,\nFFFF00,Z-LAST,A320,AIRBUS A320,L2J,M\n");
+        entries.put("14.csv", "4B1814," + HB_JCN + "\n4B1814,HB-XXX,A320,AIRBUS A320,L2J,M\n"
+                + "not a line\n");
+        entries.put("FF.csv", "ABCDFF,F-GZCP,A332,AIRBUS A330-200,L2J,H\n");
+        return entries;
+    }
+
+    @Test
+    void aircraftIndexFindsEveryAddressAndOnlyThem(@TempDir Path directory) throws IOException {
+        var zipFile = writeZip(directory.resolve("aircraft.zip"), entries());
+        var index = AircraftIndex.open(zipFile, directory.resolve("aircraft.index"));
+
+        assertEquals(5, index.size());
+        assertEquals("N1,C172,CESSNA 172,L1P,L", index.record(0x000100));
+        assertEquals(",,,,", index.record(0x4B1800));
+        assertEquals("Z-LAST,A320,AIRBUS A320,L2J,M", index.record(0xFFFF00));
+        assertEquals(HB_JCN, index.record(0x4B1814));
+        assertEquals("F-GZCP,A332,AIRBUS A330-200,L2J,H", index.record(0xABCDFF));
+
+        assertNull(index.record(0x000000));
+        assertNull(index.record(0x4B1815));
+        assertNull(index.record(0xFFFFFF));
+    }
+
+    @Test
+    void aircraftIndexIsReusedUntilZipFileChanges(@TempDir Path directory) throws IOException {
+        var zipFile = writeZip(directory.resolve("aircraft.zip"), entries());
+        var indexFile = directory.resolve("aircraft.index");
+        AircraftIndex.open(zipFile, indexFile);
+        var built = Files.getLastModifiedTime(indexFile);
+
+        // An old modification time shows that the index is not written again
+        var old = FileTime.fromMillis(built.toMillis() - 60_000);
+        Files.setLastModifiedTime(indexFile, old);
+        assertEquals(5, AircraftIndex.open(zipFile, indexFile).size());
+        assertEquals(old, Files.getLastModifiedTime(indexFile));
+
+        writeZip(zipFile, Map.of("14.csv", "4B1814,HB-XXX,A320,AIRBUS A320,L2J,M\n"));
+        Files.setLastModifiedTime(zipFile, FileTime.fromMillis(built.toMillis() + 60_000));
+        var index = AircraftIndex.open(zipFile, indexFile);
+        assertEquals(1, index.size());
+        assertEquals("HB-XXX,A320,AIRBUS A320,L2J,M", index.record(0x4B1814));
+    }
+
+    @Test
+    void aircraftIndexIsBuiltAgainIfIndexFileIsInvalid(@TempDir Path directory) throws IOException {
+        var zipFile = writeZip(directory.resolve("aircraft.zip"), entries());
+        var indexFile = directory.resolve("aircraft.index");
+        Files.writeString(indexFile, "garbage");
+        assertEquals(HB_JCN, AircraftIndex.open(zipFile, indexFile).record(0x4B1814));
+    }
+
+    @Test
+    void aircraftDatabaseGetUsesIndex(@TempDir Path directory) throws IOException {
+        var zipFile = writeZip(directory.resolve("aircraft.zip"), entries());
+        var database = new AircraftDatabase(zipFile.toString(), directory.resolve("aircraft.index"));
+
+        var data = database.get(new IcaoAddress("4B1814"));
+        assertEquals(new AircraftRegistration("HB-JCN"), data.registration());
+        assertEquals(new AircraftTypeDesignator("BCS3"), data.typeDesignator());
+        assertEquals("AIRBUS A220-300", data.model());
+        assertEquals(new AircraftDescription("L2J"), data.description());
+        assertEquals(WakeTurbulenceCategory.MEDIUM, data.wakeTurbulenceCategory());
+        assertNull(database.get(new IcaoAddress("123456")));
+        assertThrows(IOException.class,
+                () -> new AircraftDatabase(directory.resolve("none.zip").toString()).get(new IcaoAddress("4B1814")));
+    }
+
+    @Test
+    void aircraftDatabaseDoesNotOpenIndexAgainRightAfterFailure(@TempDir Path directory) throws Exception {
+        var zipFile = directory.resolve("aircraft.zip");
+        var database = new AircraftDatabase(zipFile.toString(), directory.resolve("aircraft.index"));
+        var address = new IcaoAddress("4B1814");
+
+        var failure = assertThrows(IOException.class, () -> database.get(address));
+        // The zip file is not looked at again before the delay, even if it appeared meanwhile
+        writeZip(zipFile, entries());
+        assertSame(failure, assertThrows(IOException.class, () -> database.get(address)).getCause());
+
+        Thread.sleep(AircraftDatabase.FIRST_RETRY_DELAY_NS / 1_000_000 + 1);
+        assertEquals(new AircraftRegistration("HB-JCN"), database.get(address).registration());
+    }
+}
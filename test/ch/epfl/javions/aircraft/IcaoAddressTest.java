@@ -2,8 +2,7 @@ package ch.epfl.javions.aircraft;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 class IcaoAddressTest {
     @Test
@@ -26,4 +25,31 @@ class IcaoAddressTest {
             new IcaoAddress("ABCDEF");
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void icaoAddressOfIntEqualsAddressOfString() {
+        var address = IcaoAddress.ofInt(0x4B1814);
+        assertEquals(new IcaoAddress("4B1814"), address);
+        assertEquals(new IcaoAddress("4B1814").hashCode(), address.hashCode());
+        assertEquals("4B1814", address.string());
+        assertEquals(0x4B1814, new IcaoAddress("4B1814").value());
+        assertNotEquals(IcaoAddress.ofInt(0x4B1815), address);
+    }
+
+    @Test
+    void icaoAddressOfIntKeepsLeadingZeros() {
+        assertEquals("00000A", IcaoAddress.ofInt(0xA).string());
+        assertEquals("IcaoAddress[string=00000A]", IcaoAddress.ofInt(0xA).toString());
+    }
+
+    @Test
+    void icaoAddressOfIntReturnsCanonicalInstances() {
+        assertSame(IcaoAddress.ofInt(0xABCDEF), IcaoAddress.ofInt(0xABCDEF));
+    }
+
+    @Test
+    void icaoAddressOfIntThrowsWithInvalidValue() {
+        assertThrows(IllegalArgumentException.class, () -> IcaoAddress.ofInt(1 << 24));
+        assertThrows(IllegalArgumentException.class, () -> IcaoAddress.ofInt(-1));
+    }
+}
@@ -3,11 +3,15 @@ package ch.epfl.javions.demodulation;
 import ch.epfl.javions.adsb.RawMessage;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AdsbDemodulatorTest {
@@ -73,4 +77,113 @@ public class AdsbDemodulatorTest {
 
     }
 
+    @Test
+    void statisticsCountTheRejectionsOfEachStage() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        try (InputStream s = new FileInputStream(url)) {
+            AdsbDemodulator d = new AdsbDemodulator(s);
+            int messageCounter = 0;
+            while (d.nextMessage() != null)
+                ++messageCounter;
+
+            AdsbDemodulator.Statistics statistics = d.statistics();
+            assertEquals(messageCounter, statistics.messages());
+            assertTrue(statistics.formatRejections() > 0);
+            assertEquals(statistics.preambles(),
+                    statistics.formatRejections() + statistics.crcRejections() + statistics.messages());
+        }
+    }
+
+    @Test
+    void acceptedFormatsSelectTheReturnedMessages() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        try (InputStream s1 = new FileInputStream(url); InputStream s2 = new FileInputStream(url)) {
+            AdsbDemodulator d1 = new AdsbDemodulator(s1);
+            AdsbDemodulator d2 = new AdsbDemodulator(SamplesSource.of(s2), Set.of(RawMessage.EXPECTED_FORMAT));
+            RawMessage m;
+            do {
+                m = d1.nextMessage();
+                assertEquals(m, d2.nextMessage());
+            } while (m != null);
+        }
+        try (InputStream s = new FileInputStream(url)) {
+            AdsbDemodulator d = new AdsbDemodulator(SamplesSource.of(s), Set.of());
+            assertEquals(null, d.nextMessage());
+            assertEquals(d.statistics().preambles(), d.statistics().formatRejections());
+        }
+    }
+
+    @Test
+    void acceptedFormatsMustBeThoseOfLongMessages() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            try (InputStream s = InputStream.nullInputStream()) {
+                new AdsbDemodulator(SamplesSource.of(s), Set.of(11));
+            }
+        });
+    }
+
+    @Test
+    void correctionKeepsMessagesOfAcceptedFormat() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        try (InputStream s = new FileInputStream(url)) {
+            AdsbDemodulator d = new AdsbDemodulator(SamplesSource.of(s), Set.of(RawMessage.EXPECTED_FORMAT), 1);
+            int messageCounter = 0;
+            RawMessage m;
+            while ((m = d.nextMessage()) != null) {
+                assertEquals(RawMessage.EXPECTED_FORMAT, m.downLinkFormat());
+                ++messageCounter;
+            }
+            AdsbDemodulator.Statistics statistics = d.statistics();
+            assertEquals(messageCounter, statistics.messages());
+            assertTrue(statistics.corrections() <= messageCounter);
+        }
+    }
+
+    @Test
+    void correctedBitsMustBeValid() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            try (InputStream s = InputStream.nullInputStream()) {
+                new AdsbDemodulator(SamplesSource.of(s), Set.of(RawMessage.EXPECTED_FORMAT), 3);
+            }
+        });
+    }
+
+    @Test
+    void packedMessagesAreTheSameAsRawOnes() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        try (InputStream s = new FileInputStream(url); InputStream p = new FileInputStream(url)) {
+            AdsbDemodulator d = new AdsbDemodulator(s);
+            AdsbDemodulator packedDemodulator = new AdsbDemodulator(p);
+            RawMessage m;
+            do {
+                m = d.nextMessage();
+                var packed = packedDemodulator.nextPackedMessage();
+                assertEquals(m, packed == null ? null : packed.toRawMessage());
+            } while (m != null);
+        }
+    }
+
+    @Test
+    void messagesAtTheFirstPositionScannedAfterEachBatchAreFound() throws IOException {
+        // The first position scanned after reading batch k is the one following the last full window of batch k
+        long firstBatchBoundary = PowerWindow.BATCH_SIZE - AdsbDemodulator.WINDOW_SIZE + 1;
+        long secondBatchBoundary = firstBatchBoundary + PowerWindow.BATCH_SIZE;
+        var capture = new SyntheticCapture(3 * PowerWindow.BATCH_SIZE)
+                .withMessage(1_000, "8D4D2228234994B7284820323B81")
+                .withMessage(firstBatchBoundary, "8D34608358B982D5B3532EE0620C")
+                .withMessage(firstBatchBoundary + AdsbDemodulator.WINDOW_SIZE + 1, "8D344645990CA093703C0ABEF91E")
+                // The end of this message is the position preceding the boundary, so that the boundary is the first
+                // position checked after it
+                .withMessage(secondBatchBoundary - AdsbDemodulator.WINDOW_SIZE - 1, "8D485020994409940838175B284F")
+                .withMessage(secondBatchBoundary, "8D392AE89B00009570AC00DDDBE5");
+
+        try (InputStream s = new ByteArrayInputStream(capture.samples())) {
+            AdsbDemodulator d = new AdsbDemodulator(s);
+            var messages = new ArrayList<RawMessage>();
+            RawMessage m;
+            while ((m = d.nextMessage()) != null)
+                messages.add(m);
+            assertEquals(capture.messages(), messages);
+        }
+    }
 }
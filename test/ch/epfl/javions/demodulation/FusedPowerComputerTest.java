@@ -0,0 +1,91 @@
+package ch.epfl.javions.demodulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FusedPowerComputerTest {
+    @Test
+    void fusedPowerComputerConstructorThrowsOnInvalidBatchSize() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            try (var s = new ByteArrayInputStream(new byte[0])) {
+                new FusedPowerComputer(s, 0);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            try (var s = new ByteArrayInputStream(new byte[0])) {
+                new FusedPowerComputer(s, 7);
+            }
+        });
+    }
+
+    @Test
+    void fusedPowerComputerReadBatchWorksOnGivenSamples() throws IOException {
+        try (var samplesStream = PowerComputerTest.getSamplesStream()) {
+            var batch = new int[1200];
+            var powerComputer = new FusedPowerComputer(samplesStream, batch.length);
+            var read = powerComputer.readBatch(batch);
+            assertEquals(batch.length, read);
+            assertArrayEquals(PowerComputerTest.POWER_SAMPLES, batch);
+        }
+    }
+
+    @Test
+    void fusedPowerComputerReadBatchWorksWithAnyBatchSize() throws IOException {
+        var maxBatchSize = 1024;
+        var expectedSamples = Arrays.copyOf(PowerComputerTest.POWER_SAMPLES, maxBatchSize);
+        for (int batchSize = 8; batchSize <= maxBatchSize; batchSize <<= 1) {
+            try (var samplesStream = PowerComputerTest.getSamplesStream()) {
+                var actualSamples = new int[maxBatchSize];
+                var batch = new int[batchSize];
+                var powerComputer = new FusedPowerComputer(samplesStream, batchSize);
+                for (int i = 0; i < maxBatchSize / batchSize; i += 1) {
+                    var read = powerComputer.readBatch(batch);
+                    assertEquals(batchSize, read);
+                    System.arraycopy(batch, 0, actualSamples, i * batchSize, batchSize);
+                }
+                assertArrayEquals(expectedSamples, actualSamples);
+            }
+        }
+    }
+
+    @Test
+    void fusedPowerComputerMatchesPowerComputerOnSampleFile() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        try (InputStream reference = new FileInputStream(url); InputStream fused = new FileInputStream(url)) {
+            assertSameOutput(reference, fused, 1 << 16);
+        }
+    }
+
+    @Test
+    void fusedPowerComputerMatchesPowerComputerOnRandomBytes() throws IOException {
+        var rng = new Random(2023);
+        var bytes = new byte[100_003];
+        rng.nextBytes(bytes);
+        for (int batchSize = 8; batchSize <= 4096; batchSize <<= 3) {
+            try (var reference = new ByteArrayInputStream(bytes); var fused = new ByteArrayInputStream(bytes)) {
+                assertSameOutput(reference, fused, batchSize);
+            }
+        }
+    }
+
+    private static void assertSameOutput(InputStream reference, InputStream fused, int batchSize) throws IOException {
+        var referenceComputer = new PowerComputer(reference, batchSize);
+        var fusedComputer = new FusedPowerComputer(fused, batchSize);
+        var expected = new int[batchSize];
+        var actual = new int[batchSize];
+        int read;
+        do {
+            read = referenceComputer.readBatch(expected);
+            assertEquals(read, fusedComputer.readBatch(actual));
+            assertArrayEquals(Arrays.copyOf(expected, read), Arrays.copyOf(actual, read));
+        } while (read == batchSize);
+    }
+}
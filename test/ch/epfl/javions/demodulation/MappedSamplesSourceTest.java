@@ -0,0 +1,99 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.adsb.RawMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSamplesSourceTest {
+    private static Path writeTempFile(byte[] bytes) throws IOException {
+        Path file = Files.createTempFile("samples", ".bin");
+        file.toFile().deleteOnExit();
+        return Files.write(file, bytes);
+    }
+
+    @Test
+    void mappedSamplesSourceReturnsAllBytesOfTheFile() throws IOException {
+        var bytes = new byte[10_001];
+        new Random(2023).nextBytes(bytes);
+        try (var source = new MappedSamplesSource(writeTempFile(bytes), 64)) {
+            var actual = new byte[bytes.length];
+            var read = 0;
+            var buffer = source.nextBytes(40);
+            while (buffer.hasRemaining()) {
+                var n = buffer.remaining();
+                buffer.get(actual, read, n);
+                read += n;
+                buffer = source.nextBytes(40);
+            }
+            assertEquals(bytes.length, read);
+            assertArrayEquals(bytes, actual);
+        }
+    }
+
+    @Test
+    void mappedSamplesSourceThrowsWhenLengthIsBiggerThanRegion() throws IOException {
+        try (var source = new MappedSamplesSource(writeTempFile(new byte[16]), 8)) {
+            assertThrows(IllegalArgumentException.class, () -> source.nextBytes(9));
+            assertThrows(IllegalArgumentException.class, () -> source.nextBytes(-1));
+        }
+    }
+
+    @Test
+    void powerComputersWorkOnMappedGivenSamples() throws IOException {
+        var file = writeTempFile(Base64.getDecoder().decode(PowerComputerTest.SAMPLES_BIN_BASE64));
+        try (var source = new MappedSamplesSource(file, 1 << 13)) {
+            var batch = new int[1200];
+            assertEquals(batch.length, new FusedPowerComputer(source, batch.length).readBatch(batch));
+            assertArrayEquals(PowerComputerTest.POWER_SAMPLES, batch);
+        }
+        try (var source = new MappedSamplesSource(file, 1 << 13)) {
+            var batch = new int[1200];
+            assertEquals(batch.length, new PowerComputer(source, batch.length).readBatch(batch));
+            assertArrayEquals(PowerComputerTest.POWER_SAMPLES, batch);
+        }
+    }
+
+    @Test
+    void powerWindowWorksOnMappedRandomSamples() throws IOException {
+        var bytes = new byte[(3 << 18) + 100];
+        new Random(2023).nextBytes(bytes);
+        try (var source = new MappedSamplesSource(writeTempFile(bytes), 1 << 20);
+             var stream = new ByteArrayInputStream(bytes)) {
+            var mappedWindow = new PowerWindow(source, 1200);
+            var streamWindow = new PowerWindow(stream, 1200);
+            while (streamWindow.isFull()) {
+                assertTrue(mappedWindow.isFull());
+                assertEquals(streamWindow.get(0), mappedWindow.get(0));
+                assertEquals(streamWindow.get(1199), mappedWindow.get(1199));
+                streamWindow.advanceBy(997);
+                mappedWindow.advanceBy(997);
+            }
+            assertFalse(mappedWindow.isFull());
+        }
+    }
+
+    @Test
+    void adsbDemodulatorFindsSameMessagesOnMappedSampleFile() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        try (InputStream s = new FileInputStream(url); var source = new MappedSamplesSource(Path.of(url))) {
+            var streamDemodulator = new AdsbDemodulator(s);
+            var mappedDemodulator = new AdsbDemodulator(source);
+            RawMessage m;
+            do {
+                m = streamDemodulator.nextMessage();
+                assertEquals(m, mappedDemodulator.nextMessage());
+            } while (m != null);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.adsb.RawMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelAdsbDemodulatorTest {
+    private static final String[] MESSAGES = {
+            "8D4D2228234994B7284820323B81",
+            "8D34608358B982D5B3532EE0620C",
+            "8D344645990CA093703C0ABEF91E",
+            "8D485020994409940838175B284F",
+            "8D392AE89B00009570AC00DDDBE5"};
+
+    private static List<RawMessage> sequentialMessages(String fileName) throws IOException {
+        List<RawMessage> messages = new ArrayList<>();
+        try (InputStream s = new FileInputStream(fileName)) {
+            AdsbDemodulator d = new AdsbDemodulator(s);
+            RawMessage m;
+            while ((m = d.nextMessage()) != null)
+                messages.add(m);
+        }
+        return messages;
+    }
+
+    @Test
+    void parallelDemodulatorGivesSameMessagesAsSequentialOne() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        List<RawMessage> expected = sequentialMessages(url);
+        assertEquals(expected, new ParallelAdsbDemodulator(Path.of(url), ForkJoinPool.commonPool()).demodulate());
+    }
+
+    @Test
+    void parallelDemodulatorGivesSameMessagesWhateverTheChunkSize() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        List<RawMessage> expected = sequentialMessages(url);
+        try (ForkJoinPool pool = new ForkJoinPool(4)) {
+            for (int chunkSize : new int[]{7, 1199, 1200, 1201, 5003, 77777}) {
+                assertEquals(expected, new ParallelAdsbDemodulator(Path.of(url), pool, chunkSize).demodulate());
+            }
+        }
+    }
+
+    @Test
+    void parallelDemodulatorWorksOnCaptureShorterThanAMessage() throws IOException {
+        Path file = Files.createTempFile("samples", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, new byte[1000]);
+        assertTrue(new ParallelAdsbDemodulator(file, ForkJoinPool.commonPool()).demodulate().isEmpty());
+    }
+
+    @Test
+    void parallelDemodulatorGivesSameMessagesAsSequentialOneAtChunkAndBatchBoundaries() throws IOException {
+        int chunkSize = 50_000;
+        long batchBoundary = PowerWindow.BATCH_SIZE - AdsbDemodulator.WINDOW_SIZE + 1;
+        // The first position scanned after the first batch of the demodulator of the second chunk
+        long chunkBatchBoundary = chunkSize + 1 - 4 + batchBoundary;
+        long[] positions = {
+                1,
+                chunkSize + 1,
+                batchBoundary,
+                // A message overlapping the start of the third chunk, then one right after it
+                2L * chunkSize + 1 - 600,
+                2L * chunkSize + 1 - 600 + AdsbDemodulator.WINDOW_SIZE + 1,
+                chunkBatchBoundary,
+                batchBoundary + PowerWindow.BATCH_SIZE,
+                3L * chunkSize + 1 - AdsbDemodulator.WINDOW_SIZE - 1,
+                3L * chunkSize + 1};
+        var capture = new SyntheticCapture(4 * PowerWindow.BATCH_SIZE);
+        for (int i = 0; i < positions.length; ++i)
+            capture.withMessage(positions[i], MESSAGES[i % MESSAGES.length]);
+
+        Path file = Files.createTempFile("samples", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, capture.samples());
+        List<RawMessage> expected = sequentialMessages(file.toString());
+        assertEquals(capture.messages(), expected);
+        try (ForkJoinPool pool = new ForkJoinPool(4)) {
+            for (int size : new int[]{1200, chunkSize, PowerWindow.BATCH_SIZE, 100_000})
+                assertEquals(expected, new ParallelAdsbDemodulator(file, pool, size).demodulate());
+        }
+    }
+}
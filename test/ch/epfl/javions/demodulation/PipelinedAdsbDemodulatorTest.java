@@ -0,0 +1,101 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.adsb.RawMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelinedAdsbDemodulatorTest {
+    @Test
+    void pipelinedDemodulatorThrowsOnInvalidRingCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PipelinedAdsbDemodulator(InputStream.nullInputStream(), 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PipelinedAdsbDemodulator(InputStream.nullInputStream(), 3));
+    }
+
+    @Test
+    void pipelinedDemodulatorGivesSameMessagesAsSequentialOne() throws IOException {
+        String url = getClass().getResource("/samples_20230304_1442.bin").getFile();
+        for (int capacity = 1; capacity <= 8; capacity <<= 1) {
+            try (InputStream s = new FileInputStream(url); InputStream p = new FileInputStream(url);
+                 PipelinedAdsbDemodulator pipelined = new PipelinedAdsbDemodulator(p, capacity)) {
+                AdsbDemodulator sequential = new AdsbDemodulator(s);
+                RawMessage m;
+                do {
+                    m = sequential.nextMessage();
+                    assertEquals(m, pipelined.nextMessage());
+                } while (m != null);
+                // The counters are published before the last scan, which found the end of the stream
+                assertEquals(sequential.statistics(), pipelined.detectionStatistics());
+
+                assertEquals(capacity, pipelined.samplesStatistics().capacity());
+                assertEquals(0, pipelined.powerStatistics().occupancy());
+            }
+        }
+    }
+
+    @Test
+    void pipelinedDemodulatorReportsConsumerStallsOnSlowStream() throws IOException {
+        InputStream slowStream = new ByteArrayInputStream(new byte[1 << 20]) {
+            @Override
+            public int readNBytes(byte[] b, int off, int len) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.readNBytes(b, off, len);
+            }
+        };
+        try (PipelinedAdsbDemodulator pipelined = new PipelinedAdsbDemodulator(slowStream)) {
+            assertNull(pipelined.nextMessage());
+            assertTrue(pipelined.powerStatistics().consumerStalls() > 0);
+            assertTrue(pipelined.samplesStatistics().consumerStalls() > 0);
+        }
+    }
+
+    // A stream of silence which fails once the given number of bytes were read
+    private static InputStream failingStream(int bytesBeforeFailure, RuntimeException failure) {
+        return new InputStream() {
+            private int bytesLeft = bytesBeforeFailure;
+
+            @Override
+            public int read() {
+                return read(new byte[1], 0, 1) < 0 ? -1 : 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (bytesLeft == 0) throw failure;
+                int read = Math.min(len, bytesLeft);
+                Arrays.fill(b, off, off + read, (byte) 0);
+                bytesLeft -= read;
+                return read;
+            }
+        };
+    }
+
+    @Test
+    void pipelinedDemodulatorRethrowsUncheckedExceptionOfAStage() {
+        var failure = new IllegalStateException();
+        // The window reads the first batch on construction, so that a failure of the first batch comes out of it
+        InputStream failingAtOnce = failingStream(0, failure);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertSame(failure,
+                assertThrows(IllegalStateException.class, () -> new PipelinedAdsbDemodulator(failingAtOnce))));
+
+        int batchBytes = PowerWindow.BATCH_SIZE * 2 * Short.BYTES;
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (var pipelined = new PipelinedAdsbDemodulator(failingStream(3 * batchBytes + 100, failure))) {
+                assertSame(failure, assertThrows(IllegalStateException.class, pipelined::nextMessage));
+            }
+        });
+    }
+}
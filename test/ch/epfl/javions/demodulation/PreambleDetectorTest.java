@@ -0,0 +1,86 @@
+package ch.epfl.javions.demodulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreambleDetectorTest {
+    private static final int RING_SIZE = 1 << 8;
+    private static final int MASK = RING_SIZE - 1;
+
+    private static int[] randomRing(Random random) {
+        var ring = new int[RING_SIZE];
+        for (int i = 0; i < ring.length; ++i)
+            ring[i] = random.nextInt(5) == 0 ? random.nextInt(1000) : random.nextInt(10);
+        return ring;
+    }
+
+    private static int sp(int[] ring, long p) {
+        return ring[(int) p & MASK] + ring[(int) (p + 10) & MASK] + ring[(int) (p + 35) & MASK]
+                + ring[(int) (p + 45) & MASK];
+    }
+
+    private static int sv(int[] ring, long p) {
+        return ring[(int) (p + 5) & MASK] + ring[(int) (p + 15) & MASK] + ring[(int) (p + 20) & MASK]
+                + ring[(int) (p + 25) & MASK] + ring[(int) (p + 30) & MASK] + ring[(int) (p + 40) & MASK];
+    }
+
+    private static long[] naiveScan(int[] ring, long from, long to) {
+        return LongStream.range(from, to)
+                .filter(p -> sp(ring, p) > sp(ring, p - 1) && sp(ring, p) > sp(ring, p + 1)
+                        && sp(ring, p) >= 2 * sv(ring, p))
+                .toArray();
+    }
+
+    @Test
+    void preambleDetectorFindsSamePositionsAsNaiveCheck() {
+        var random = new Random(2023);
+        var found = 0;
+        for (int k = 0; k < 200; ++k) {
+            var ring = randomRing(random);
+            long from = 1 + random.nextInt(3 * RING_SIZE);
+            long to = from + random.nextInt(RING_SIZE - 46);
+            var candidates = new long[RING_SIZE];
+            var count = PreambleDetector.scan(ring, MASK, from, to, candidates);
+            var expected = naiveScan(ring, from, to);
+            assertArrayEquals(expected, Arrays.copyOf(candidates, count));
+            found += count;
+        }
+        assertTrue(found > 0);
+    }
+
+    @Test
+    void preambleDetectorWorksAroundTheEndOfTheRing() {
+        var random = new Random(2024);
+        for (int k = 0; k < 100; ++k) {
+            var ring = randomRing(random);
+            long from = RING_SIZE - 60 + random.nextInt(70);
+            long to = from + 100;
+            var candidates = new long[RING_SIZE];
+            var count = PreambleDetector.scan(ring, MASK, from, to, candidates);
+            assertArrayEquals(naiveScan(ring, from, to), Arrays.copyOf(candidates, count));
+        }
+    }
+
+    @Test
+    void preambleDetectorStopsWhenCandidatesAreFull() {
+        var random = new Random(2025);
+        var ring = randomRing(random);
+        var expected = naiveScan(ring, 1, RING_SIZE - 46);
+        assertTrue(expected.length > 2);
+
+        var candidates = new long[2];
+        assertEquals(2, PreambleDetector.scan(ring, MASK, 1, RING_SIZE - 46, candidates));
+        assertArrayEquals(Arrays.copyOf(expected, 2), candidates);
+    }
+
+    @Test
+    void preambleDetectorFindsNothingInEmptyRange() {
+        var ring = randomRing(new Random(2026));
+        assertEquals(0, PreambleDetector.scan(ring, MASK, 10, 10, new long[4]));
+    }
+}
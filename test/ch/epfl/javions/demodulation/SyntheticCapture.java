@@ -0,0 +1,55 @@
+package ch.epfl.javions.demodulation;
+
+import ch.epfl.javions.ByteString;
+import ch.epfl.javions.adsb.RawMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+// A capture without noise holding messages at given positions, each pulse being a power peak at its first sample
+final class SyntheticCapture {
+    private static final int AMPLITUDE = 100;
+    private static final int[] PREAMBLE_PULSES = {0, 10, 35, 45};
+
+    // The in-phase component of each pair of samples, the power at position n being the square of the sum of the
+    // components n - 3 to n, so that the components 12 and -6 give the powers 144, 36, 36, 36, 36 (times AMPLITUDE²)
+    private final int[] components;
+    private final List<RawMessage> messages = new ArrayList<>();
+
+    SyntheticCapture(int powerSamples) {
+        components = new int[powerSamples];
+    }
+
+    SyntheticCapture withMessage(long position, String hexMessage) {
+        ByteString bytes = ByteString.ofHexadecimalString(hexMessage);
+        for (int pulse : PREAMBLE_PULSES)
+            addPulse(position + pulse);
+        for (int i = 0; i < RawMessage.LENGTH * Byte.SIZE; ++i) {
+            boolean one = (bytes.byteAt(i / Byte.SIZE) >>> (Byte.SIZE - 1 - i % Byte.SIZE) & 1) == 1;
+            addPulse(position + 80 + 10L * i + (one ? 0 : 5));
+        }
+        messages.add(new RawMessage(position * AdsbDemodulator.TENTH_OF_MICRO_TO_NANO, bytes));
+        return this;
+    }
+
+    List<RawMessage> messages() {
+        return List.copyOf(messages);
+    }
+
+    byte[] samples() {
+        ByteBuffer samples = ByteBuffer.allocate(components.length * 2 * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n = 0; n < components.length; ++n) {
+            int inPhase = (n % 2 == 0 ? 1 : -1) * components[n] * AMPLITUDE;
+            samples.putShort((short) (inPhase + 2048));
+            samples.putShort((short) 2048);
+        }
+        return samples.array();
+    }
+
+    private void addPulse(long position) {
+        components[Math.toIntExact(position)] += 12;
+        components[Math.toIntExact(position + 1)] -= 6;
+    }
+}
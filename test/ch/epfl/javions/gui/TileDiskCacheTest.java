@@ -0,0 +1,108 @@
+package ch.epfl.javions.gui;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileDiskCacheTest {
+    private static TileManager.TileId tile(int x) {
+        return new TileManager.TileId(10, x, 0);
+    }
+
+    private static void setLastAccess(TileDiskCache cache, int x, long millis) throws IOException {
+        Files.setLastModifiedTime(cache.fileOf(tile(x)), FileTime.fromMillis(millis));
+    }
+
+    @Test
+    void tileDiskCacheConstructorThrowsIfQuotaIsInvalid(@TempDir Path directory) {
+        assertThrows(IllegalArgumentException.class, () -> new TileDiskCache(directory, 0));
+    }
+
+    @Test
+    void tileDiskCacheReadsWrittenTiles(@TempDir Path directory) throws IOException {
+        var cache = new TileDiskCache(directory, 1000);
+        assertNull(cache.read(tile(0)));
+        cache.write(tile(0), new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.read(tile(0)));
+        assertEquals(directory.resolve("10/0/0.png"), cache.fileOf(tile(0)));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void tileDiskCacheReadMarksTileAsAccessed(@TempDir Path directory) throws IOException {
+        var cache = new TileDiskCache(directory, 1000);
+        cache.write(tile(0), new byte[10]);
+        setLastAccess(cache, 0, 1000);
+        cache.read(tile(0));
+        assertTrue(Files.getLastModifiedTime(cache.fileOf(tile(0))).toMillis() > 1000);
+    }
+
+    @Test
+    void tileDiskCacheReadsTilesOfReadOnlyCache(@TempDir Path directory) throws IOException {
+        var cache = new TileDiskCache(directory, 1000);
+        cache.write(tile(0), new byte[]{1, 2, 3});
+        var file = cache.fileOf(tile(0));
+        var permissions = Files.getPosixFilePermissions(file);
+        var readOnly = PosixFilePermissions.fromString("r--r--r--");
+        try {
+            Files.setPosixFilePermissions(file, readOnly);
+            Files.setPosixFilePermissions(file.getParent(), PosixFilePermissions.fromString("r-xr-xr-x"));
+            assertArrayEquals(new byte[]{1, 2, 3}, cache.read(tile(0)));
+        } finally {
+            Files.setPosixFilePermissions(file.getParent(), PosixFilePermissions.fromString("rwxr-xr-x"));
+            Files.setPosixFilePermissions(file, permissions);
+        }
+    }
+
+    @Test
+    void tileDiskCacheCompactionRemovesLeastRecentlyAccessedTiles(@TempDir Path directory) throws IOException {
+        var cache = new TileDiskCache(directory, 100);
+        for (int x = 0; x < 5; ++x) {
+            cache.write(tile(x), new byte[30]);
+            setLastAccess(cache, x, 1_000_000L * (x + 1));
+        }
+        // The tile written first is the most recently read one
+        setLastAccess(cache, 0, 10_000_000L);
+
+        cache.compact();
+        // The cache is compacted to 90 bytes, the low watermark of its quota
+        assertEquals(90, cache.size());
+        assertTrue(Files.exists(cache.fileOf(tile(0))));
+        assertFalse(Files.exists(cache.fileOf(tile(1))));
+        assertFalse(Files.exists(cache.fileOf(tile(2))));
+        assertTrue(Files.exists(cache.fileOf(tile(3))));
+        assertTrue(Files.exists(cache.fileOf(tile(4))));
+    }
+
+    @Test
+    void tileDiskCacheCompactionKeepsCacheWithinQuota(@TempDir Path directory) throws IOException {
+        var cache = new TileDiskCache(directory, 100);
+        cache.write(tile(0), new byte[30]);
+        cache.write(tile(1), new byte[30]);
+        cache.compact();
+        assertEquals(60, cache.size());
+        assertNotNull(cache.read(tile(0)));
+        assertNotNull(cache.read(tile(1)));
+    }
+
+    @Test
+    void tileDiskCacheCompactionRemovesOldTemporaryFiles(@TempDir Path directory) throws IOException {
+        var cache = new TileDiskCache(directory, 100);
+        cache.write(tile(0), new byte[30]);
+        var oldTemporaryFile = Files.createFile(cache.fileOf(tile(0)).resolveSibling("0-1.tmp"));
+        Files.setLastModifiedTime(oldTemporaryFile, FileTime.fromMillis(0));
+        var newTemporaryFile = Files.createFile(cache.fileOf(tile(0)).resolveSibling("0-2.tmp"));
+
+        cache.compact();
+        assertFalse(Files.exists(oldTemporaryFile));
+        assertTrue(Files.exists(newTemporaryFile));
+        assertEquals(30, cache.size());
+    }
+}
@@ -0,0 +1,222 @@
+package ch.epfl.javions.gui;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileFetcherTest {
+    /**
+     * A stand-in for the tile server, whose tiles are their own path, and which answers once it is released.
+     */
+    private static final class TileServer implements AutoCloseable {
+        private final HttpServer server;
+        private final CountDownLatch released;
+        private final AtomicInteger requestCount = new AtomicInteger();
+        private final AtomicInteger parallelRequestCount = new AtomicInteger();
+        private final AtomicInteger maxParallelRequestCount = new AtomicInteger();
+        private final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+
+        TileServer(boolean released) throws IOException {
+            this.released = new CountDownLatch(released ? 0 : 1);
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.start();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requestCount.incrementAndGet();
+            paths.add(exchange.getRequestURI().getPath());
+            maxParallelRequestCount.accumulateAndGet(parallelRequestCount.incrementAndGet(), Math::max);
+            try {
+                released.await();
+                Thread.sleep(10);
+                String path = exchange.getRequestURI().getPath();
+                if (path.startsWith("/19/")) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    byte[] bytes = path.getBytes(UTF_8);
+                    exchange.sendResponseHeaders(200, bytes.length);
+                    exchange.getResponseBody().write(bytes);
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                parallelRequestCount.decrementAndGet();
+                exchange.close();
+            }
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    private static TileFetcher fetcher(Path directory, String server) {
+        return fetcher(directory, server, 2);
+    }
+
+    private static TileFetcher fetcher(Path directory, String server, int maxParallelDownloads) {
+        return new TileFetcher(new TileDiskCache(directory, Long.MAX_VALUE), server, maxParallelDownloads);
+    }
+
+    /**
+     * Fetches a first tile, which the server holds until it is released, then waits for the other fetches to be
+     * queued behind it.
+     */
+    private static CompletableFuture<byte[]> blockDownloads(TileFetcher fetcher, TileServer server)
+            throws InterruptedException {
+        var first = fetcher.fetch(new TileManager.TileId(2, 0, 0));
+        while (server.requestCount.get() == 0) Thread.sleep(1);
+        return first;
+    }
+
+    private static void waitUntilQueued() throws InterruptedException {
+        Thread.sleep(200);
+    }
+
+    private static String string(CompletableFuture<byte[]> fetch) {
+        return new String(fetch.orTimeout(10, TimeUnit.SECONDS).join(), UTF_8);
+    }
+
+    @Test
+    void tileFetcherConstructorThrowsIfMaxParallelDownloadsIsInvalid(@TempDir Path directory) {
+        var diskCache = new TileDiskCache(directory, Long.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> new TileFetcher(diskCache, "localhost", 0));
+    }
+
+    @Test
+    void tileFetcherDownloadsOnceAndStoresOnDisk(@TempDir Path directory) throws IOException {
+        try (var server = new TileServer(true)) {
+            var tileId = new TileManager.TileId(17, 67927, 46357);
+            assertEquals("/17/67927/46357.png", string(fetcher(directory, server.url()).fetch(tileId)));
+            assertEquals(1, server.requestCount.get());
+            assertEquals("/17/67927/46357.png", Files.readString(directory.resolve("17/67927/46357.png")));
+
+            // Another fetcher reads the tile from the disk
+            var fetcher = fetcher(directory, server.url());
+            assertEquals("/17/67927/46357.png", string(fetcher.fetch(tileId)));
+            assertEquals("/17/67927/46357.png", new String(fetcher.fetchNow(tileId), UTF_8));
+            assertEquals(1, server.requestCount.get());
+        }
+    }
+
+    @Test
+    void tileFetcherSharesFetchesOfSameTile(@TempDir Path directory) throws IOException {
+        try (var server = new TileServer(false)) {
+            var fetcher = fetcher(directory, server.url());
+            var tileId = new TileManager.TileId(1, 1, 0);
+            var first = fetcher.fetch(tileId);
+            var second = fetcher.fetch(tileId);
+            assertSame(first, second);
+
+            server.release();
+            assertEquals("/1/1/0.png", string(first));
+            assertEquals(1, server.requestCount.get());
+        }
+    }
+
+    @Test
+    void tileFetcherBoundsParallelDownloads(@TempDir Path directory) throws IOException {
+        try (var server = new TileServer(true)) {
+            var fetcher = fetcher(directory, server.url());
+            var fetches = new ArrayList<CompletableFuture<byte[]>>();
+            for (int x = 0; x < 8; ++x) fetches.add(fetcher.fetch(new TileManager.TileId(3, x, 0)));
+
+            for (int x = 0; x < 8; ++x) assertEquals("/3/" + x + "/0.png", string(fetches.get(x)));
+            assertEquals(8, server.requestCount.get());
+            assertTrue(server.maxParallelRequestCount.get() <= 2);
+        }
+    }
+
+    @Test
+    void tileFetcherFetchesFailedTileAgain(@TempDir Path directory) throws IOException {
+        try (var server = new TileServer(true)) {
+            var fetcher = fetcher(directory, server.url());
+            var tileId = new TileManager.TileId(19, 0, 0);
+            var first = fetcher.fetch(tileId);
+            var e = assertThrows(CompletionException.class, () -> first.orTimeout(10, TimeUnit.SECONDS).join());
+            assertTrue(e.getCause() instanceof IOException);
+            assertFalse(Files.exists(directory.resolve("19/0/0.png")));
+
+            var second = fetcher.fetch(tileId);
+            assertNotSame(first, second);
+            assertThrows(CompletionException.class, () -> second.orTimeout(10, TimeUnit.SECONDS).join());
+            assertEquals(2, server.requestCount.get());
+        }
+    }
+
+    @Test
+    void tileFetcherDownloadsVisibleTilesBeforePrefetchedOnes(@TempDir Path directory)
+            throws IOException, InterruptedException {
+        try (var server = new TileServer(false)) {
+            var fetcher = fetcher(directory, server.url(), 1);
+            var first = blockDownloads(fetcher, server);
+            var prefetch = fetcher.prefetch(new TileManager.TileId(2, 1, 0));
+            fetcher.prefetch(new TileManager.TileId(2, 2, 0));
+            waitUntilQueued();
+            var visible = fetcher.fetch(new TileManager.TileId(2, 3, 0));
+            waitUntilQueued();
+            // A prefetched tile asked for as a visible one is downloaded with them
+            assertSame(fetcher.fetch(new TileManager.TileId(2, 2, 0)), fetcher.prefetch(new TileManager.TileId(2, 2, 0)));
+
+            server.release();
+            string(first);
+            string(visible);
+            string(prefetch);
+            assertEquals(List.of("/2/0/0.png", "/2/3/0.png", "/2/2/0.png", "/2/1/0.png"), server.paths);
+        }
+    }
+
+    @Test
+    void tileFetcherCancelsQueuedPrefetches(@TempDir Path directory) throws IOException, InterruptedException {
+        try (var server = new TileServer(false)) {
+            var fetcher = fetcher(directory, server.url(), 1);
+            var first = blockDownloads(fetcher, server);
+            var cancelled = fetcher.prefetch(new TileManager.TileId(2, 1, 0));
+            var kept = fetcher.prefetch(new TileManager.TileId(2, 2, 0));
+            waitUntilQueued();
+
+            fetcher.cancelPrefetchesOtherThan(Set.of(new TileManager.TileId(2, 2, 0)));
+            assertTrue(cancelled.isCancelled());
+            // The first tile is being downloaded, it is not cancelled although it is not kept
+            assertFalse(first.isDone());
+
+            server.release();
+            string(first);
+            assertEquals("/2/2/0.png", string(kept));
+            assertEquals(List.of("/2/0/0.png", "/2/2/0.png"), server.paths);
+
+            // A cancelled tile can be fetched again
+            assertEquals("/2/1/0.png", string(fetcher.prefetch(new TileManager.TileId(2, 1, 0))));
+        }
+    }
+}
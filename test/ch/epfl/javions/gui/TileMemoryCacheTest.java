@@ -0,0 +1,57 @@
+package ch.epfl.javions.gui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileMemoryCacheTest {
+    private static TileManager.TileId tile(int x) {
+        return new TileManager.TileId(10, x, 0);
+    }
+
+    @Test
+    void tileMemoryCacheConstructorThrowsIfBudgetIsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new TileMemoryCache<String>(0, String::length));
+    }
+
+    @Test
+    void tileMemoryCacheKeepsImagesWithinBudget() {
+        var cache = new TileMemoryCache<String>(10, String::length);
+        cache.put(tile(0), "aaaa");
+        cache.put(tile(1), "bbbb");
+        assertEquals(8, cache.size());
+        assertEquals(2, cache.count());
+
+        // The least recently used image is removed first
+        assertEquals("aaaa", cache.get(tile(0)));
+        cache.put(tile(2), "cccc");
+        assertEquals("aaaa", cache.get(tile(0)));
+        assertNull(cache.get(tile(1)));
+        assertEquals("cccc", cache.get(tile(2)));
+        assertEquals(8, cache.size());
+
+        // Several small images make room for a large one
+        cache.put(tile(3), "dddddddd");
+        assertEquals(1, cache.count());
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    void tileMemoryCacheReplacesImageOfSameTile() {
+        var cache = new TileMemoryCache<String>(10, String::length);
+        cache.put(tile(0), "aaaa");
+        cache.put(tile(0), "aaaaaa");
+        assertEquals(6, cache.size());
+        assertEquals(1, cache.count());
+        assertEquals("aaaaaa", cache.get(tile(0)));
+    }
+
+    @Test
+    void tileMemoryCacheDoesNotKeepImageLargerThanBudget() {
+        var cache = new TileMemoryCache<String>(10, String::length);
+        cache.put(tile(0), "aaaa");
+        cache.put(tile(1), "bbbbbbbbbbbb");
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,72 @@
+package ch.epfl.javions.gui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilePlaceholderTest {
+    private static final double SIZE = TileManager.TILE_SIZE;
+
+    private static TileMemoryCache<String> cache() {
+        return new TileMemoryCache<>(1 << 10, String::length);
+    }
+
+    private static TileManager.TileId ancestor(TileManager.TileId tileId, int levels) {
+        return new TileManager.TileId(tileId.zoom() - levels, tileId.x() >> levels, tileId.y() >> levels);
+    }
+
+    @Test
+    void tilePlaceholderIsAreaOfParent() {
+        var tiles = cache();
+        var tileId = new TileManager.TileId(10, 301, 200);
+        tiles.put(new TileManager.TileId(9, 150, 100), "parent");
+
+        var placeholder = TileManager.placeholderForTileAt(tiles, tileId);
+        assertEquals(new TileManager.Placeholder<>("parent", SIZE / 2, 0, SIZE / 2), placeholder);
+    }
+
+    @Test
+    void tilePlaceholderIsAreaOfNearestAncestor() {
+        var tiles = cache();
+        var tileId = new TileManager.TileId(10, 301, 202);
+        tiles.put(ancestor(tileId, 2), "grandparent");
+        tiles.put(ancestor(tileId, 3), "great-grandparent");
+
+        // The tile is the second column and the third row of the 4 by 4 tiles covered by its grandparent
+        var placeholder = TileManager.placeholderForTileAt(tiles, tileId);
+        assertEquals(new TileManager.Placeholder<>("grandparent", SIZE / 4, 2 * SIZE / 4, SIZE / 4), placeholder);
+    }
+
+    @Test
+    void tilePlaceholderIsAreaOfFarthestAncestorAllowed() {
+        var tiles = cache();
+        var tileId = new TileManager.TileId(12, 0b1010_1100_0011, 0b0111_0000_1111);
+        int levels = TileManager.MAX_PLACEHOLDER_LEVELS;
+        tiles.put(ancestor(tileId, levels), "ancestor");
+
+        var placeholder = TileManager.placeholderForTileAt(tiles, tileId);
+        double size = SIZE / (1 << levels);
+        assertEquals(new TileManager.Placeholder<>("ancestor", 0b1100_0011 * size, 0b0000_1111 * size, size),
+                placeholder);
+    }
+
+    @Test
+    void tilePlaceholderIsNullIfAncestorIsTooFar() {
+        var tiles = cache();
+        var tileId = new TileManager.TileId(12, 2755, 1807);
+        tiles.put(ancestor(tileId, TileManager.MAX_PLACEHOLDER_LEVELS + 1), "ancestor");
+        assertNull(TileManager.placeholderForTileAt(tiles, tileId));
+    }
+
+    @Test
+    void tilePlaceholderIsNullWithoutAncestor() {
+        var tiles = cache();
+        var tileId = new TileManager.TileId(10, 301, 200);
+        // Neither the tile itself nor the tiles next to its parent are placeholders
+        tiles.put(tileId, "tile");
+        tiles.put(new TileManager.TileId(9, 151, 100), "neighbour");
+        assertNull(TileManager.placeholderForTileAt(tiles, tileId));
+
+        assertNull(TileManager.placeholderForTileAt(tiles, new TileManager.TileId(TileManager.MIN_VALID_ZOOM, 0, 0)));
+    }
+}
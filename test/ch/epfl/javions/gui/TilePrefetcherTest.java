@@ -0,0 +1,84 @@
+package ch.epfl.javions.gui;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilePrefetcherTest {
+    private static final double SIZE = TileManager.TILE_SIZE;
+
+    @Test
+    void tilePrefetcherPrefetchesRingAndOtherZoomLevelsOfStillMap() {
+        var prefetcher = new TilePrefetcher();
+        // The visible tiles are (10, 10) and (11, 10) at zoom 5
+        var tiles = prefetcher.tilesToPrefetch(5, 10 * SIZE, 10 * SIZE, 2 * SIZE - 1, SIZE - 1, 0);
+
+        assertEquals(new HashSet<>(tiles).size(), tiles.size());
+        assertFalse(tiles.contains(new TileManager.TileId(5, 10, 10)));
+        assertFalse(tiles.contains(new TileManager.TileId(5, 11, 10)));
+
+        // The ring of 10 tiles, then the 1 tile at zoom 4, then the 8 tiles at zoom 6
+        assertEquals(19, tiles.size());
+        for (var tileId : tiles.subList(0, 10)) {
+            assertEquals(5, tileId.zoom());
+            assertTrue(9 <= tileId.x() && tileId.x() <= 12);
+            assertTrue(9 <= tileId.y() && tileId.y() <= 11);
+        }
+        assertEquals(new TileManager.TileId(4, 5, 5), tiles.get(10));
+        for (var tileId : tiles.subList(11, 19)) {
+            assertEquals(6, tileId.zoom());
+            assertTrue(20 <= tileId.x() && tileId.x() <= 23);
+            assertTrue(20 <= tileId.y() && tileId.y() <= 21);
+        }
+    }
+
+    @Test
+    void tilePrefetcherPrefetchesInDirectionOfMap() {
+        var prefetcher = new TilePrefetcher();
+        prefetcher.tilesToPrefetch(10, 100 * SIZE, 100 * SIZE, SIZE - 1, SIZE - 1, 0);
+        // The map moves right by 2 tiles per second
+        var tiles = prefetcher.tilesToPrefetch(10, 100.5 * SIZE, 100 * SIZE, SIZE - 1, SIZE - 1, 250_000_000);
+
+        assertFalse(tiles.contains(new TileManager.TileId(10, 100, 100)));
+        assertFalse(tiles.contains(new TileManager.TileId(10, 101, 100)));
+        // The tiles on the right come before the ring
+        assertEquals(new TileManager.TileId(10, 102, 100), tiles.get(0));
+        assertTrue(tiles.indexOf(new TileManager.TileId(10, 102, 100))
+                < tiles.indexOf(new TileManager.TileId(10, 99, 100)));
+    }
+
+    @Test
+    void tilePrefetcherResetsSpeedWhenZoomChanges() {
+        var prefetcher = new TilePrefetcher();
+        prefetcher.tilesToPrefetch(10, 100 * SIZE, 100 * SIZE, SIZE - 1, SIZE - 1, 0);
+        prefetcher.tilesToPrefetch(10, 104 * SIZE, 100 * SIZE, SIZE - 1, SIZE - 1, 100_000_000);
+        var tiles = prefetcher.tilesToPrefetch(11, 208 * SIZE, 200 * SIZE, SIZE - 1, SIZE - 1, 200_000_000);
+
+        assertEquals(new TileManager.TileId(11, 207, 199), tiles.get(0));
+        assertFalse(tiles.stream().anyMatch(t -> t.zoom() == 11 && t.x() > 209));
+    }
+
+    @Test
+    void tilePrefetcherKeepsValidTilesOnly() {
+        var prefetcher = new TilePrefetcher();
+        var tiles = prefetcher.tilesToPrefetch(TileManager.MIN_VALID_ZOOM, 0, 0, SIZE - 1, SIZE - 1, 0);
+        assertEquals(List.of(
+                new TileManager.TileId(TileManager.MIN_VALID_ZOOM + 1, 0, 0),
+                new TileManager.TileId(TileManager.MIN_VALID_ZOOM + 1, 1, 0),
+                new TileManager.TileId(TileManager.MIN_VALID_ZOOM + 1, 0, 1),
+                new TileManager.TileId(TileManager.MIN_VALID_ZOOM + 1, 1, 1)), tiles);
+    }
+
+    @Test
+    void tilePrefetcherPrefetchesBoundedNumberOfTiles() {
+        var prefetcher = new TilePrefetcher();
+        var tiles = prefetcher.tilesToPrefetch(12, 0, 0, 20 * SIZE, 20 * SIZE, 0);
+        assertEquals(TilePrefetcher.MAX_PREFETCHED_TILES, tiles.size());
+        // The ring and the previous zoom level come first
+        assertTrue(tiles.subList(0, 164).stream().allMatch(t -> t.zoom() == 12 || t.zoom() == 11));
+        assertTrue(tiles.subList(164, tiles.size()).stream().allMatch(t -> t.zoom() == 13));
+    }
+}